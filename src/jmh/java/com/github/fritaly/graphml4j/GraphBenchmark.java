@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.fritaly.graphml4j.datastructure.Graph;
+import com.github.fritaly.graphml4j.datastructure.Node;
+
+/**
+ * Benchmarks the generation of a GraphML document from a {@link Graph}. The
+ * graph contains groups of 10 nodes and as many (random) edges as nodes.
+ *
+ * @author francois_ritaly
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GraphBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int nodeCount;
+
+	private Graph graph;
+
+	@Setup
+	public void setUp() {
+		this.graph = new Graph();
+
+		final Random random = new Random(nodeCount);
+		final List<Node> nodes = new ArrayList<Node>(nodeCount);
+
+		Node group = null;
+
+		for (int i = 0; i < nodeCount; i++) {
+			if (i % 10 == 0) {
+				group = graph.addNode("Group #" + (i / 10));
+			}
+
+			final Node node = graph.addNode("Node #" + i);
+			node.setParent(group);
+
+			nodes.add(node);
+		}
+
+		for (int i = 0; i < nodeCount; i++) {
+			graph.addEdge("Edge #" + i, nodes.get(i), nodes.get(random.nextInt(nodeCount)));
+		}
+	}
+
+	@Benchmark
+	public void toGraphML() throws GraphMLException {
+		graph.toGraphML(new GraphMLWriterBenchmark.NullWriter());
+	}
+
+	@Benchmark
+	public void toGraphMLWithRenderer() throws GraphMLException {
+		graph.toGraphML(new GraphMLWriterBenchmark.NullWriter(), new DefaultRenderer());
+	}
+}
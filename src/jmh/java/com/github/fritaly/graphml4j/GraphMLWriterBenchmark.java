@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import java.awt.Color;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the generation of nodes, edges and groups by a
+ * {@link GraphMLWriter} for each backend (writer or UTF-8 stream) and with the
+ * default or custom styles. The markup is written into a stream discarding
+ * it.
+ *
+ * @author francois_ritaly
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GraphMLWriterBenchmark {
+
+	/**
+	 * An {@link OutputStream} discarding the data written.
+	 */
+	static final class NullOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+
+	/**
+	 * A {@link Writer} discarding the data written.
+	 */
+	static final class NullWriter extends Writer {
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+		}
+
+		@Override
+		public void write(String str, int off, int len) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@Param({ "stream", "writer" })
+	public String backend;
+
+	@Param({ "default", "custom" })
+	public String style;
+
+	private GraphMLWriter graphWriter;
+
+	private String sourceNodeId, targetNodeId;
+
+	private float x;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws GraphMLException {
+		if ("stream".equals(backend)) {
+			this.graphWriter = new GraphMLWriter(new NullOutputStream());
+		} else {
+			this.graphWriter = new GraphMLWriter(new NullWriter());
+		}
+
+		if ("custom".equals(style)) {
+			final NodeStyle nodeStyle = graphWriter.getNodeStyle();
+			nodeStyle.setFillColor(Color.ORANGE);
+			nodeStyle.setWidth(120.0f);
+			nodeStyle.setFontSize(16);
+
+			graphWriter.setNodeStyle(nodeStyle);
+
+			final GroupStyles groupStyles = graphWriter.getGroupStyles();
+			groupStyles.setFillColor(Color.LIGHT_GRAY);
+			groupStyles.setInsets(20);
+
+			graphWriter.setGroupStyles(groupStyles);
+
+			graphWriter.setEdgeStyle(EdgeStyle.builder().color(Color.BLUE).width(2.5f).build());
+		}
+
+		graphWriter.graph();
+
+		this.sourceNodeId = graphWriter.node("Source");
+		this.targetNodeId = graphWriter.node("Target");
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		graphWriter.close();
+	}
+
+	@Benchmark
+	public String node() throws GraphMLException {
+		return graphWriter.node("Node label");
+	}
+
+	@Benchmark
+	public String nodeWithLocation() throws GraphMLException {
+		x += 1.5f;
+
+		return graphWriter.node("Node label", x, -x);
+	}
+
+	@Benchmark
+	public String edge() throws GraphMLException {
+		return graphWriter.edge(sourceNodeId, targetNodeId);
+	}
+
+	@Benchmark
+	public String group() throws GraphMLException {
+		final String groupId = graphWriter.group("Group label", true);
+
+		graphWriter.closeGroup();
+
+		return groupId;
+	}
+}
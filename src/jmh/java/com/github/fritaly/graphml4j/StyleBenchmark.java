@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import javanet.staxutils.IndentingXMLStreamWriter;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the serialization of styles and the encoding of attribute
+ * values.
+ *
+ * @author francois_ritaly
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StyleBenchmark {
+
+	private final NodeStyle nodeStyle = new NodeStyle();
+
+	private XMLStreamWriter staxWriter;
+
+	private Utf8XMLStreamWriter utf8Writer;
+
+	private StyleTemplate template;
+
+	private final Color color = new Color(32, 64, 128, 192);
+
+	private final String encodedColor = "#204080C0";
+
+	private float value = 0.0f;
+
+	@Setup
+	public void setUp() throws XMLStreamException {
+		this.staxWriter = new IndentingXMLStreamWriter(XMLOutputFactory.newFactory().createXMLStreamWriter(
+				new GraphMLWriterBenchmark.NullWriter()));
+		this.staxWriter.writeStartElement("graph");
+
+		this.utf8Writer = new Utf8XMLStreamWriter(new GraphMLWriterBenchmark.NullOutputStream(), true);
+		this.utf8Writer.writeStartElement("graph");
+
+		this.template = nodeStyle.compile(true);
+	}
+
+	@Benchmark
+	public void nodeStyleWriteTo() throws XMLStreamException {
+		staxWriter.writeStartElement("y:ShapeNode");
+		nodeStyle.writeTo(staxWriter, "Node label", 10.0f, 20.0f);
+		staxWriter.writeEndElement();
+	}
+
+	@Benchmark
+	public void nodeStyleTemplate() throws XMLStreamException {
+		utf8Writer.writeStartElement("y:ShapeNode");
+		utf8Writer.writeTemplate(template, "Node label", 10.0f, 20.0f);
+		utf8Writer.writeEndElement();
+	}
+
+	@Benchmark
+	public String encodeColor() {
+		return Utils.encode(color);
+	}
+
+	@Benchmark
+	public Color decodeColor() {
+		return Utils.decode(encodedColor);
+	}
+
+	@Benchmark
+	public String formatFloat() {
+		value += 0.25f;
+
+		return Utils.format(value, 1);
+	}
+}
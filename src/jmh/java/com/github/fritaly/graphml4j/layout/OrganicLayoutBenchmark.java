@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.github.fritaly.graphml4j.datastructure.Graph;
+import com.github.fritaly.graphml4j.datastructure.Node;
+
+/**
+ * Benchmarks the {@link OrganicLayout} on synthetic graphs (a random tree plus
+ * as many random edges between close nodes) with a varying number of threads.
+ * A benchmark operation runs 5 iterations of the layout. Run with
+ * "gradlew jmh -PjmhIncludes=OrganicLayoutBenchmark" and compare the scores of
+ * the different thread counts.
+ *
+ * @author francois_ritaly
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrganicLayoutBenchmark {
+
+	@Param({ "50000", "200000", "1000000" })
+	public int nodeCount;
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	private Graph graph;
+
+	private OrganicLayout layout;
+
+	@Setup
+	public void setUp() {
+		this.graph = new Graph(false);
+
+		final Random random = new Random(nodeCount);
+		final List<Node> nodes = new ArrayList<Node>(nodeCount);
+
+		for (int i = 0; i < nodeCount; i++) {
+			final Node node = graph.addNode(null);
+
+			if (i > 0) {
+				graph.addEdge(null, nodes.get(random.nextInt(i)), node);
+			}
+
+			nodes.add(node);
+		}
+
+		for (int i = 0; i < nodeCount; i++) {
+			graph.addEdge(null, nodes.get(i), nodes.get(Math.min(nodeCount - 1, i + 1 + random.nextInt(100))));
+		}
+
+		this.layout = new OrganicLayout();
+		this.layout.setIterations(5);
+		this.layout.setPool(new ForkJoinPool(threads));
+	}
+
+	@TearDown
+	public void tearDown() {
+		layout.getPool().shutdown();
+	}
+
+	@Benchmark
+	public Graph layout() {
+		layout.apply(graph);
+
+		return graph;
+	}
+}
@@ -0,0 +1,616 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import org.apache.commons.lang.Validate;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * A writer generating a GraphML file in a background thread. Each call is
+ * turned into a command stored into a bounded ring buffer which is drained by
+ * a dedicated thread delegating to a {@link GraphMLWriter}. The XML formatting
+ * and the I/O therefore don't happen on the calling thread.
+ * </p>
+ * <p>
+ * The identifiers of nodes and edges are generated by the calling thread and
+ * returned synchronously. The errors raised when writing the graph are
+ * reported by the next call to the writer and at the latest by
+ * {@link #closeGraph()} or {@link #close()}.
+ * </p>
+ * <p>
+ * Note: This class isn't thread-safe. It must be used by a single (producer)
+ * thread.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public final class AsyncGraphMLWriter {
+
+	/**
+	 * Enumeration of the possible behaviors when the ring buffer is full.
+	 */
+	public static enum Overflow {
+		/** The calling thread waits until the buffer has room */
+		BLOCK,
+
+		/**
+		 * The call fails with a {@link GraphMLException}. Closing the graph
+		 * or the writer always waits
+		 */
+		FAIL;
+	}
+
+	/**
+	 * The default capacity of the ring buffer.
+	 */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	private static final byte GRAPH = 1;
+
+	private static final byte CLOSE_GRAPH = 2;
+
+	private static final byte NODE = 3;
+
+	private static final byte OPEN_GROUP = 4;
+
+	private static final byte CLOSED_GROUP = 5;
+
+	private static final byte CLOSE_GROUP = 6;
+
+	private static final byte EDGE = 7;
+
+	private static final byte NODE_STYLE = 8;
+
+	private static final byte GROUP_STYLES = 9;
+
+	private static final byte EDGE_STYLE = 10;
+
+	private static final byte CLOSE = 11;
+
+	private final GraphMLWriter writer;
+
+	private final Overflow overflow;
+
+	// --- Ring buffer --- //
+
+	private final int capacity;
+
+	private final int mask;
+
+	private final byte[] operations;
+
+	private final Object[] arguments;
+
+	private final Object[] targets;
+
+	private final float[] xs, ys;
+
+	/**
+	 * The number of commands published by the producer.
+	 */
+	private final AtomicLong published = new AtomicLong();
+
+	/**
+	 * The number of commands executed by the consumer.
+	 */
+	private final AtomicLong consumed = new AtomicLong();
+
+	/**
+	 * The producer's view of the number of commands published.
+	 */
+	private long head;
+
+	/**
+	 * The last value of {@link #consumed} read by the producer.
+	 */
+	private long cachedTail;
+
+	private volatile boolean consumerParked;
+
+	private volatile Thread parkedProducer;
+
+	private volatile Throwable failure;
+
+	private final Thread consumer;
+
+	// --- State of the producer --- //
+
+	private int nodeSequence, edgeSequence;
+
+	private final NodeIdRegistry nodeIds = new NodeIdRegistry();
+
+	private final ArrayDeque<String> groupIds = new ArrayDeque<String>();
+
+	private boolean graphOpened, closed;
+
+	/**
+	 * Creates a new instance of {@link AsyncGraphMLWriter} delegating to the
+	 * given writer and blocking when the buffer is full.
+	 *
+	 * @param writer
+	 *            the writer generating the graph. Must be in its initial
+	 *            state. Can't be null.
+	 */
+	public AsyncGraphMLWriter(GraphMLWriter writer) {
+		this(writer, DEFAULT_CAPACITY, Overflow.BLOCK);
+	}
+
+	/**
+	 * Creates a new instance of {@link AsyncGraphMLWriter} delegating to the
+	 * given writer.
+	 *
+	 * @param writer
+	 *            the writer generating the graph. Must be in its initial
+	 *            state (the graph can't be opened yet). Can't be null.
+	 * @param capacity
+	 *            the number of commands the ring buffer can contain. Rounded
+	 *            up to the next power of 2. Must be positive.
+	 * @param overflow
+	 *            the behavior when the ring buffer is full. Can't be null.
+	 */
+	public AsyncGraphMLWriter(GraphMLWriter writer, int capacity, Overflow overflow) {
+		Validate.notNull(writer, "The given writer is null");
+		Validate.isTrue(writer.getState() == GraphMLWriter.State.INITIAL,
+				"The given writer must be in its initial state");
+		Validate.isTrue((capacity > 0) && (capacity <= (1 << 30)), "The given capacity is invalid");
+		Validate.notNull(overflow, "The given overflow is null");
+
+		this.writer = writer;
+		this.overflow = overflow;
+		this.capacity = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		this.mask = this.capacity - 1;
+		this.operations = new byte[this.capacity];
+		this.arguments = new Object[this.capacity];
+		this.targets = new Object[this.capacity];
+		this.xs = new float[this.capacity];
+		this.ys = new float[this.capacity];
+
+		this.consumer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				consume();
+			}
+		}, "graphml-writer");
+		this.consumer.setDaemon(true);
+		this.consumer.start();
+	}
+
+	// --- Graph --- //
+
+	/**
+	 * Opens the graph. See {@link GraphMLWriter#graph()}.
+	 *
+	 * @throws GraphMLException
+	 *             if a previous command failed or if the buffer is full.
+	 */
+	public void graph() throws GraphMLException {
+		assertNotClosed();
+
+		if (graphOpened) {
+			throw new IllegalStateException("The graph is already opened");
+		}
+
+		publish(GRAPH, null, null, 0.0f, 0.0f);
+
+		this.graphOpened = true;
+	}
+
+	/**
+	 * Closes the graph and waits until all the commands have been executed.
+	 * See {@link GraphMLWriter#closeGraph()}.
+	 *
+	 * @throws GraphMLException
+	 *             if one of the commands failed.
+	 */
+	public void closeGraph() throws GraphMLException {
+		assertGraphOpened();
+
+		publish(CLOSE_GRAPH, null, null, 0.0f, 0.0f);
+
+		this.graphOpened = false;
+
+		awaitConsumed(head);
+		checkFailure();
+	}
+
+	// --- Styles --- //
+
+	/**
+	 * Sets the style applied to new nodes. The style is copied unless
+	 * immutable.
+	 */
+	public void setNodeStyle(NodeStyle style) throws GraphMLException {
+		Validate.notNull(style, "The given node style is null");
+		assertNotClosed();
+
+		// Defensive recopy, the style is applied later
+		publish(NODE_STYLE, (style instanceof ImmutableNodeStyle) ? style : new NodeStyle(style), null, 0.0f, 0.0f);
+	}
+
+	/**
+	 * Sets the styles applied to new groups. The styles are copied unless
+	 * immutable.
+	 */
+	public void setGroupStyles(GroupStyles styles) throws GraphMLException {
+		Validate.notNull(styles, "The given group styles is null");
+		assertNotClosed();
+
+		// Defensive recopy, the styles are applied later
+		publish(GROUP_STYLES, (styles instanceof ImmutableGroupStyles) ? styles : new GroupStyles(styles), null, 0.0f,
+				0.0f);
+	}
+
+	/**
+	 * Sets the style applied to new edges.
+	 */
+	public void setEdgeStyle(EdgeStyle style) throws GraphMLException {
+		Validate.notNull(style, "The given edge style is null");
+		assertNotClosed();
+
+		// The edge style is immutable
+		publish(EDGE_STYLE, style, null, 0.0f, 0.0f);
+	}
+
+	// --- Node --- //
+
+	/**
+	 * Creates a new node with the given label. See
+	 * {@link GraphMLWriter#node(String)}.
+	 *
+	 * @return a string identifying the new node. Never returns null.
+	 * @throws GraphMLException
+	 *             if a previous command failed or if the buffer is full.
+	 */
+	public String node(String label) throws GraphMLException {
+		return node(label, 0.0f, 0.0f);
+	}
+
+	public String node(String label, float x, float y) throws GraphMLException {
+		Validate.notNull(label, "The given label is null");
+		assertGraphOpened();
+
+		publish(NODE, label, null, x, y);
+
+		final int sequence = nodeSequence++;
+
+		nodeIds.addNode(sequence);
+
+		return nodeId(sequence);
+	}
+
+	// --- Edge --- //
+
+	/**
+	 * Creates a new edge between the given nodes. See
+	 * {@link GraphMLWriter#edge(String, String)}. The node ids are validated
+	 * synchronously.
+	 *
+	 * @return a string identifying the new edge. Never returns null.
+	 * @throws GraphMLException
+	 *             if a previous command failed or if the buffer is full.
+	 */
+	public String edge(String sourceNodeId, String targetNodeId) throws GraphMLException {
+		if (!nodeIds.contains(sourceNodeId)) {
+			throw new IllegalArgumentException(String.format("The (source) node with given id '%s' doesn't exist",
+					sourceNodeId));
+		}
+		if (!nodeIds.contains(targetNodeId)) {
+			throw new IllegalArgumentException(String.format("The (target) node with given id '%s' doesn't exist",
+					targetNodeId));
+		}
+
+		assertGraphOpened();
+
+		publish(EDGE, sourceNodeId, targetNodeId, 0.0f, 0.0f);
+
+		return "e" + edgeSequence++;
+	}
+
+	// --- Group --- //
+
+	/**
+	 * Opens a new group with the given label. See
+	 * {@link GraphMLWriter#group(String, boolean)}.
+	 *
+	 * @return a string identifying the new group. Never returns null.
+	 * @throws GraphMLException
+	 *             if a previous command failed or if the buffer is full.
+	 */
+	public String group(String label, boolean open) throws GraphMLException {
+		return group(label, open, 0.0f, 0.0f);
+	}
+
+	public String group(String label, boolean open, float x, float y) throws GraphMLException {
+		Validate.notNull(label, "The given label is null");
+		assertGraphOpened();
+
+		publish(open ? OPEN_GROUP : CLOSED_GROUP, label, null, x, y);
+
+		final int sequence = nodeSequence++;
+		final String groupId = nodeId(sequence);
+
+		nodeIds.openGroup(sequence);
+		groupIds.push(groupId);
+
+		return groupId;
+	}
+
+	/**
+	 * Closes the current group. See {@link GraphMLWriter#closeGroup()}.
+	 *
+	 * @throws GraphMLException
+	 *             if a previous command failed or if the buffer is full.
+	 */
+	public void closeGroup() throws GraphMLException {
+		assertGraphOpened();
+
+		if (groupIds.isEmpty()) {
+			throw new IllegalStateException("The writer isn't inside a group. Invalid method call");
+		}
+
+		publish(CLOSE_GROUP, null, null, 0.0f, 0.0f);
+
+		groupIds.pop();
+		nodeIds.closeGroup();
+	}
+
+	// --- Others --- //
+
+	/**
+	 * Waits until all the commands have been executed, then closes the
+	 * underlying writer and stops the background thread.
+	 *
+	 * @throws GraphMLException
+	 *             if one of the commands failed.
+	 */
+	public void close() throws GraphMLException {
+		assertNotClosed();
+
+		this.closed = true;
+
+		// The command is queued even after a failure so that the background
+		// thread closes the underlying writer and stops
+		enqueue(CLOSE, null, null, 0.0f, 0.0f);
+
+		boolean interrupted = false;
+
+		while (consumer.isAlive()) {
+			try {
+				consumer.join();
+			} catch (InterruptedException e) {
+				// Keep waiting, the writer must be closed
+				interrupted = true;
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		checkFailure();
+	}
+
+	private String nodeId(int sequence) {
+		if (groupIds.isEmpty()) {
+			// We're not currently in a group
+			return "n" + sequence;
+		}
+
+		// The node id looks like "<groupId>::<nodeId>"
+		return groupIds.peek() + "::n" + sequence;
+	}
+
+	private void assertNotClosed() {
+		if (closed) {
+			throw new IllegalStateException("The writer is closed");
+		}
+	}
+
+	private void assertGraphOpened() {
+		assertNotClosed();
+
+		if (!graphOpened) {
+			throw new IllegalStateException("The graph isn't opened");
+		}
+	}
+
+	private void checkFailure() throws GraphMLException {
+		final Throwable throwable = failure;
+
+		if (throwable == null) {
+			return;
+		}
+		if (throwable instanceof GraphMLException) {
+			throw (GraphMLException) throwable;
+		}
+		if (throwable instanceof RuntimeException) {
+			throw (RuntimeException) throwable;
+		}
+		if (throwable instanceof Error) {
+			throw (Error) throwable;
+		}
+
+		throw new GraphMLException(throwable);
+	}
+
+	// --- Producer side --- //
+
+	private void publish(byte operation, Object argument, Object target, float x, float y) throws GraphMLException {
+		checkFailure();
+
+		enqueue(operation, argument, target, x, y);
+	}
+
+	/**
+	 * Stores the given command into the ring buffer. The control commands
+	 * ({@link #CLOSE_GRAPH} and {@link #CLOSE}) always wait for room whatever
+	 * the overflow policy since they can't be retried.
+	 */
+	private void enqueue(byte operation, Object argument, Object target, float x, float y) throws GraphMLException {
+		if (head - cachedTail == capacity) {
+			this.cachedTail = consumed.get();
+
+			if (head - cachedTail == capacity) {
+				if ((overflow == Overflow.FAIL) && (operation != CLOSE_GRAPH) && (operation != CLOSE)) {
+					throw new GraphMLException("The command buffer is full");
+				}
+
+				this.cachedTail = awaitConsumed(head - capacity + 1);
+			}
+		}
+
+		final int index = (int) head & mask;
+
+		operations[index] = operation;
+		arguments[index] = argument;
+		targets[index] = target;
+		xs[index] = x;
+		ys[index] = y;
+
+		published.set(++head);
+
+		if (consumerParked) {
+			LockSupport.unpark(consumer);
+		}
+	}
+
+	/**
+	 * Waits until the consumer has executed the given number of commands (or
+	 * has stopped) and returns the number of commands executed.
+	 */
+	private long awaitConsumed(long count) {
+		long tail;
+
+		while (((tail = consumed.get()) < count) && consumer.isAlive()) {
+			this.parkedProducer = Thread.currentThread();
+
+			if (consumed.get() < count) {
+				// Timed to be robust against a consumer dying in between
+				LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+			}
+
+			this.parkedProducer = null;
+		}
+
+		return tail;
+	}
+
+	// --- Consumer side --- //
+
+	private void consume() {
+		long tail = consumed.get();
+
+		while (true) {
+			if (published.get() == tail) {
+				this.consumerParked = true;
+
+				if (published.get() == tail) {
+					LockSupport.park(this);
+				}
+
+				this.consumerParked = false;
+
+				continue;
+			}
+
+			final int index = (int) tail & mask;
+			final byte operation = operations[index];
+
+			if (failure == null) {
+				try {
+					execute(operation, arguments[index], targets[index], xs[index], ys[index]);
+				} catch (Throwable e) {
+					// The error is reported to the producer, the following
+					// commands are discarded
+					this.failure = e;
+				}
+			}
+
+			// Release the references
+			arguments[index] = null;
+			targets[index] = null;
+
+			if (operation == CLOSE) {
+				if (failure != null) {
+					// Release the underlying resources anyway
+					try {
+						writer.close();
+					} catch (RuntimeException e) {
+						// Close quietly
+					}
+				}
+			}
+
+			consumed.set(++tail);
+
+			final Thread producer = parkedProducer;
+
+			if (producer != null) {
+				LockSupport.unpark(producer);
+			}
+
+			if (operation == CLOSE) {
+				return;
+			}
+		}
+	}
+
+	private void execute(byte operation, Object argument, Object target, float x, float y) throws GraphMLException {
+		switch (operation) {
+		case GRAPH:
+			writer.graph();
+			break;
+		case CLOSE_GRAPH:
+			writer.closeGraph();
+			break;
+		case NODE:
+			writer.node((String) argument, x, y);
+			break;
+		case OPEN_GROUP:
+			writer.group((String) argument, true, x, y);
+			break;
+		case CLOSED_GROUP:
+			writer.group((String) argument, false, x, y);
+			break;
+		case CLOSE_GROUP:
+			writer.closeGroup();
+			break;
+		case EDGE:
+			writer.edge((String) argument, (String) target);
+			break;
+		case NODE_STYLE:
+			writer.setNodeStyle((NodeStyle) argument);
+			break;
+		case GROUP_STYLES:
+			writer.setGroupStyles((GroupStyles) argument);
+			break;
+		case EDGE_STYLE:
+			writer.setEdgeStyle((EdgeStyle) argument);
+			break;
+		case CLOSE:
+			writer.close();
+			break;
+		default:
+			throw new IllegalStateException("Unexpected operation: " + operation);
+		}
+	}
+}
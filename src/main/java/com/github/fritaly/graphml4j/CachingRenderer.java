@@ -0,0 +1,458 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.fritaly.graphml4j.datastructure.Edge;
+import com.github.fritaly.graphml4j.datastructure.Node;
+
+import lombok.Value;
+
+/**
+ * <p>
+ * A {@link Renderer} caching the styles returned by another renderer. Useful
+ * when computing a style is expensive (for instance when it's derived from the
+ * data of the node) since {@link #getNodeStyle(Node)},
+ * {@link #getGroupStyles(Node)} and {@link #getEdgeStyle(Edge)} are called
+ * once per element when exporting a graph.
+ * </p>
+ * <p>
+ * The styles are cached by key, the key of a node (resp. edge) being computed
+ * by a function. Nodes sharing the same style should share the same key (see
+ * {@link #DATA_CLASS}). A null key disables the cache for the given element.
+ * By default the key is the node (resp. edge) itself and the caches are
+ * {@link #UNBOUNDED unbounded}, which pays off when the same graph is exported
+ * several times at the cost of one entry per element.
+ * </p>
+ * <p>
+ * A bounded cache evicts the entries least recently used once full. Since an
+ * export visits the elements in the same order each time, a bounded cache
+ * keyed by element and smaller than the graph is scanned by each export and
+ * never hits: bound the caches only when the number of distinct keys is
+ * small.
+ * </p>
+ * <p>
+ * The cached node styles and group styles are stored as immutable (interned)
+ * styles so that they can be shared safely by all the nodes with the same key.
+ * The labels and the open / closed state of groups aren't cached (they're
+ * usually specific to each node) and are delegated as is.
+ * </p>
+ * <p>
+ * Thread-safe if the underlying renderer is: the instance can be used by
+ * {@link com.github.fritaly.graphml4j.datastructure.Graph#toGraphML(java.io.OutputStream, Renderer, java.util.concurrent.ForkJoinPool)}.
+ * The lookups into an unbounded cache don't lock. A bounded cache is split
+ * into stripes (each one with its own LRU order and lock) to limit the
+ * contention between threads. The styles are computed outside of the locks,
+ * hence a style missing from the cache can be computed by several threads at
+ * the same time.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public final class CachingRenderer implements Renderer {
+
+	/**
+	 * The default number of entries retained by each bounded cache.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * The capacity of a cache which never evicts its entries.
+	 */
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	/**
+	 * The maximum number of stripes of a bounded cache.
+	 */
+	private static final int STRIPE_COUNT = 16;
+
+	/**
+	 * The minimum number of entries retained by a stripe.
+	 */
+	private static final int MIN_STRIPE_CAPACITY = 64;
+
+	/**
+	 * A key function returning the class of the data associated to the node
+	 * (or edge) or null if there's no data.
+	 */
+	public static final Function<Object, Object> DATA_CLASS = new Function<Object, Object>() {
+		@Override
+		public Object apply(Object element) {
+			final Object data;
+
+			if (element instanceof Node) {
+				data = ((Node) element).getData();
+			} else if (element instanceof Edge) {
+				data = ((Edge) element).getData();
+			} else {
+				data = null;
+			}
+
+			return (data != null) ? data.getClass() : null;
+		}
+	};
+
+	private static final Function<Object, Object> IDENTITY = new Function<Object, Object>() {
+		@Override
+		public Object apply(Object element) {
+			return element;
+		}
+	};
+
+	private final Renderer delegate;
+
+	private final Function<? super Node, ?> nodeKey;
+
+	private final Function<? super Edge, ?> edgeKey;
+
+	private final Cache<NodeStyle> nodeStyles;
+
+	private final Cache<GroupStyles> groupStyles;
+
+	private final Cache<EdgeStyle> edgeStyles;
+
+	/**
+	 * Creates a new instance of {@link CachingRenderer} caching the styles of
+	 * each node and edge in unbounded caches. Call {@link #clear()} to
+	 * release the styles once the graph has been exported.
+	 *
+	 * @param delegate
+	 *            the renderer computing the styles. Can't be null.
+	 */
+	public CachingRenderer(Renderer delegate) {
+		this(delegate, IDENTITY, IDENTITY, UNBOUNDED);
+	}
+
+	/**
+	 * Creates a new instance of {@link CachingRenderer}.
+	 *
+	 * @param delegate
+	 *            the renderer computing the styles. Can't be null.
+	 * @param nodeKey
+	 *            the function returning the cache key of a node. Can't be
+	 *            null.
+	 * @param edgeKey
+	 *            the function returning the cache key of an edge. Can't be
+	 *            null.
+	 * @param capacity
+	 *            the maximum number of entries retained by each cache or
+	 *            {@link #UNBOUNDED}. Must be positive.
+	 */
+	public CachingRenderer(Renderer delegate, Function<? super Node, ?> nodeKey, Function<? super Edge, ?> edgeKey,
+			int capacity) {
+
+		Validate.notNull(delegate, "The given renderer is null");
+		Validate.notNull(nodeKey, "The given node key function is null");
+		Validate.notNull(edgeKey, "The given edge key function is null");
+		Validate.isTrue(capacity > 0, "The given capacity must be positive");
+
+		this.delegate = delegate;
+		this.nodeKey = nodeKey;
+		this.edgeKey = edgeKey;
+		this.nodeStyles = newCache(capacity);
+		this.groupStyles = newCache(capacity);
+		this.edgeStyles = newCache(capacity);
+	}
+
+	@Override
+	public String getNodeLabel(Node node) {
+		return delegate.getNodeLabel(node);
+	}
+
+	@Override
+	public NodeStyle getNodeStyle(Node node) {
+		final Object key = nodeKey.apply(node);
+
+		if (key == null) {
+			return delegate.getNodeStyle(node);
+		}
+
+		NodeStyle style = nodeStyles.get(key);
+
+		if (style == null) {
+			style = delegate.getNodeStyle(node);
+
+			if (style != null) {
+				style = ImmutableNodeStyle.of(style);
+
+				nodeStyles.put(key, style);
+			}
+		}
+
+		return style;
+	}
+
+	@Override
+	public EdgeStyle getEdgeStyle(Edge edge) {
+		final Object key = edgeKey.apply(edge);
+
+		if (key == null) {
+			return delegate.getEdgeStyle(edge);
+		}
+
+		EdgeStyle style = edgeStyles.get(key);
+
+		if (style == null) {
+			// EdgeStyle is immutable
+			style = delegate.getEdgeStyle(edge);
+
+			if (style != null) {
+				edgeStyles.put(key, style);
+			}
+		}
+
+		return style;
+	}
+
+	@Override
+	public GroupStyles getGroupStyles(Node node) {
+		final Object key = nodeKey.apply(node);
+
+		if (key == null) {
+			return delegate.getGroupStyles(node);
+		}
+
+		GroupStyles styles = groupStyles.get(key);
+
+		if (styles == null) {
+			styles = delegate.getGroupStyles(node);
+
+			if (styles != null) {
+				styles = ImmutableGroupStyles.of(styles);
+
+				groupStyles.put(key, styles);
+			}
+		}
+
+		return styles;
+	}
+
+	@Override
+	public boolean isGroupOpen(Node node) {
+		return delegate.isGroupOpen(node);
+	}
+
+	/**
+	 * Returns the statistics of the caches (summed over the node style, group
+	 * styles and edge style caches) since the creation of this renderer or
+	 * the last call to {@link #clear()}.
+	 *
+	 * @return a new {@link Stats}. Never returns null.
+	 */
+	public Stats getStats() {
+		final Stats stats1 = nodeStyles.getStats();
+		final Stats stats2 = groupStyles.getStats();
+		final Stats stats3 = edgeStyles.getStats();
+
+		return new Stats(stats1.hitCount + stats2.hitCount + stats3.hitCount,
+				stats1.missCount + stats2.missCount + stats3.missCount,
+				stats1.evictionCount + stats2.evictionCount + stats3.evictionCount);
+	}
+
+	/**
+	 * Empties the caches and resets the statistics. To be called when the
+	 * styles returned by the underlying renderer change.
+	 */
+	public void clear() {
+		nodeStyles.clear();
+		groupStyles.clear();
+		edgeStyles.clear();
+	}
+
+	/**
+	 * The statistics of a {@link CachingRenderer}.
+	 */
+	@Value
+	public static class Stats {
+
+		/**
+		 * The number of styles found in the caches.
+		 */
+		private final long hitCount;
+
+		/**
+		 * The number of styles computed by the underlying renderer.
+		 */
+		private final long missCount;
+
+		/**
+		 * The number of styles evicted from the caches.
+		 */
+		private final long evictionCount;
+
+		/**
+		 * Returns the ratio of requests served by the caches (between 0 and 1)
+		 * or 0 if there was no request.
+		 */
+		public double getHitRate() {
+			final long count = hitCount + missCount;
+
+			return (count == 0) ? 0.0d : (double) hitCount / count;
+		}
+	}
+
+	private static <V> Cache<V> newCache(int capacity) {
+		return (capacity == UNBOUNDED) ? new UnboundedCache<V>() : new StripedCache<V>(capacity);
+	}
+
+	/**
+	 * A cache of styles counting its hits, misses and evictions. Thread-safe.
+	 */
+	private static abstract class Cache<V> {
+
+		final LongAdder hitCount = new LongAdder();
+
+		final LongAdder missCount = new LongAdder();
+
+		final LongAdder evictionCount = new LongAdder();
+
+		final V get(Object key) {
+			final V value = lookup(key);
+
+			if (value != null) {
+				hitCount.increment();
+			} else {
+				missCount.increment();
+			}
+
+			return value;
+		}
+
+		abstract V lookup(Object key);
+
+		abstract void put(Object key, V value);
+
+		abstract void clearEntries();
+
+		final Stats getStats() {
+			return new Stats(hitCount.sum(), missCount.sum(), evictionCount.sum());
+		}
+
+		final void clear() {
+			clearEntries();
+
+			hitCount.reset();
+			missCount.reset();
+			evictionCount.reset();
+		}
+	}
+
+	/**
+	 * A cache never evicting its entries. The lookups don't lock.
+	 */
+	private static final class UnboundedCache<V> extends Cache<V> {
+
+		private final ConcurrentMap<Object, V> entries = new ConcurrentHashMap<Object, V>();
+
+		@Override
+		V lookup(Object key) {
+			return entries.get(key);
+		}
+
+		@Override
+		void put(Object key, V value) {
+			entries.put(key, value);
+		}
+
+		@Override
+		void clearEntries() {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * A bounded cache split into stripes, each stripe being an LRU cache with
+	 * its own lock. A lookup into an access-ordered {@link LinkedHashMap}
+	 * modifies the map, hence the locks.
+	 */
+	private static final class StripedCache<V> extends Cache<V> {
+
+		private final List<Map<Object, V>> stripes;
+
+		StripedCache(int capacity) {
+			// Small caches aren't striped to keep an exact LRU order
+			final int count = Math.max(1, Math.min(capacity / MIN_STRIPE_CAPACITY, STRIPE_COUNT));
+
+			this.stripes = new ArrayList<Map<Object, V>>(count);
+
+			for (int i = 0; i < count; i++) {
+				// Spread the remainder over the first stripes
+				final int stripeCapacity = capacity / count + ((i < capacity % count) ? 1 : 0);
+
+				stripes.add(new LinkedHashMap<Object, V>(Math.min(stripeCapacity, 1024) * 2, 0.75f, true) {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<Object, V> eldest) {
+						if (size() > stripeCapacity) {
+							evictionCount.increment();
+
+							return true;
+						}
+
+						return false;
+					}
+				});
+			}
+		}
+
+		private Map<Object, V> stripe(Object key) {
+			// Spread the bits since the low ones of some hash codes are poor
+			final int h = key.hashCode() * 0x9E3779B9;
+
+			return stripes.get(((h ^ (h >>> 16)) & Integer.MAX_VALUE) % stripes.size());
+		}
+
+		@Override
+		V lookup(Object key) {
+			final Map<Object, V> stripe = stripe(key);
+
+			synchronized (stripe) {
+				return stripe.get(key);
+			}
+		}
+
+		@Override
+		void put(Object key, V value) {
+			final Map<Object, V> stripe = stripe(key);
+
+			synchronized (stripe) {
+				stripe.put(key, value);
+			}
+		}
+
+		@Override
+		void clearEntries() {
+			for (Map<Object, V> stripe : stripes) {
+				synchronized (stripe) {
+					stripe.clear();
+				}
+			}
+		}
+	}
+}
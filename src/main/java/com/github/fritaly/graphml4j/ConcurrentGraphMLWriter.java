@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import org.apache.commons.lang.Validate;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * A writer generating a GraphML file from several threads at the same time.
+ * </p>
+ * <p>
+ * Each thread writes its nodes, groups and edges into its own buffer with its
+ * own (fragment) {@link GraphMLWriter}. The buffer is merged into the document
+ * when it exceeds a given size and the thread is at the top level of the
+ * graph (that is, not inside a group). Hence the lock on the document is only
+ * taken once per buffer, not once per element. The node and edge identifiers
+ * are generated from sequences shared by all the threads.
+ * </p>
+ * <p>
+ * The groups and the styles are scoped per thread: a group opened by a thread
+ * only contains the nodes created by this thread and the styles set by a
+ * thread only apply to the elements created by this thread.
+ * </p>
+ * <p>
+ * Note: The graph must be opened with {@link #graph()} before starting the
+ * threads and closed with {@link #closeGraph()} once all of them have
+ * completed. An edge can be written before the node it references since the
+ * buffers are merged in no particular order.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public final class ConcurrentGraphMLWriter implements Closeable {
+
+	/**
+	 * The default size (in bytes) above which the buffer of a thread is
+	 * merged into the document.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The writer generating the document.
+	 */
+	private final GraphMLWriter writer;
+
+	private final boolean indent;
+
+	private final int bufferSize;
+
+	private final AtomicInteger nodeSequence = new AtomicInteger();
+
+	private final AtomicInteger edgeSequence = new AtomicInteger();
+
+	private final ConcurrentNodeIdRegistry nodeIds = new ConcurrentNodeIdRegistry();
+
+	/**
+	 * All the fragments created so far (one per thread).
+	 */
+	private final Queue<Fragment> fragments = new ConcurrentLinkedQueue<Fragment>();
+
+	private final ThreadLocal<Fragment> currentFragment = new ThreadLocal<Fragment>() {
+		@Override
+		protected Fragment initialValue() {
+			final Fragment fragment = new Fragment();
+
+			fragments.add(fragment);
+
+			return fragment;
+		}
+	};
+
+	private volatile boolean graphOpened;
+
+	/**
+	 * Creates a new instance of {@link ConcurrentGraphMLWriter} encoding the
+	 * (indented) GraphML markup language in UTF-8 into the given stream.
+	 *
+	 * @param stream
+	 *            an {@link OutputStream} where the GraphML markup language will
+	 *            be written. Can't be null.
+	 */
+	public ConcurrentGraphMLWriter(OutputStream stream) {
+		this(stream, true, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of {@link ConcurrentGraphMLWriter} encoding the
+	 * GraphML markup language in UTF-8 into the given stream.
+	 *
+	 * @param stream
+	 *            an {@link OutputStream} where the GraphML markup language will
+	 *            be written. Can't be null.
+	 * @param indent
+	 *            whether the generated markup should be indented.
+	 * @param bufferSize
+	 *            the size (in bytes) above which the buffer of a thread is
+	 *            merged into the document. Must be positive.
+	 */
+	public ConcurrentGraphMLWriter(OutputStream stream, boolean indent, int bufferSize) {
+		Validate.isTrue(bufferSize > 0, "The given buffer size must be positive");
+
+		this.writer = new GraphMLWriter(stream, indent);
+		this.indent = indent;
+		this.bufferSize = bufferSize;
+	}
+
+	// --- Graph --- //
+
+	/**
+	 * Opens the graph. Must be called before any thread starts creating
+	 * nodes.
+	 *
+	 * @throws GraphMLException
+	 *             if an error occurs when opening the graph.
+	 */
+	public synchronized void graph() throws GraphMLException {
+		writer.graph();
+
+		this.graphOpened = true;
+	}
+
+	/**
+	 * Merges the buffers of all the threads into the document and closes the
+	 * graph. Must be called once all the threads have completed. All the
+	 * groups must have been closed.
+	 *
+	 * @throws GraphMLException
+	 *             if an error occurs when closing the graph.
+	 */
+	public synchronized void closeGraph() throws GraphMLException {
+		assertGraphOpened();
+
+		for (Fragment fragment : fragments) {
+			if (fragment.writer.insideGroup()) {
+				throw new IllegalStateException("A thread is still inside a group. Close the group(s) first");
+			}
+		}
+
+		this.graphOpened = false;
+
+		for (Fragment fragment : fragments) {
+			fragment.merge();
+		}
+
+		writer.closeGraph();
+	}
+
+	// --- Styles --- //
+
+	/**
+	 * Sets the style applied to the nodes created by the calling thread.
+	 */
+	public void setNodeStyle(NodeStyle style) {
+		getFragment().writer.setNodeStyle(style);
+	}
+
+	/**
+	 * Sets the styles applied to the groups created by the calling thread.
+	 */
+	public void setGroupStyles(GroupStyles styles) {
+		getFragment().writer.setGroupStyles(styles);
+	}
+
+	/**
+	 * Sets the style applied to the edges created by the calling thread.
+	 */
+	public void setEdgeStyle(EdgeStyle style) {
+		getFragment().writer.setEdgeStyle(style);
+	}
+
+	// --- Node --- //
+
+	/**
+	 * Creates a new node with the given label inside the current group of the
+	 * calling thread. See {@link GraphMLWriter#node(String)}.
+	 *
+	 * @return a string identifying the new node. Never returns null.
+	 * @throws GraphMLException
+	 *             if an error occurs when creating the node.
+	 */
+	public String node(String label) throws GraphMLException {
+		return node(label, 0.0f, 0.0f);
+	}
+
+	public String node(String label, float x, float y) throws GraphMLException {
+		final Fragment fragment = getFragment();
+		final String nodeId = fragment.writer.node(label, x, y);
+
+		fragment.mergeIfFull();
+
+		return nodeId;
+	}
+
+	// --- Edge --- //
+
+	/**
+	 * Creates a new edge between the given nodes, possibly created by other
+	 * threads. See {@link GraphMLWriter#edge(String, String)}.
+	 *
+	 * @return a string identifying the new edge. Never returns null.
+	 * @throws GraphMLException
+	 *             if an error occurs when creating the edge.
+	 */
+	public String edge(String sourceNodeId, String targetNodeId) throws GraphMLException {
+		final Fragment fragment = getFragment();
+		final String edgeId = fragment.writer.edge(sourceNodeId, targetNodeId);
+
+		fragment.mergeIfFull();
+
+		return edgeId;
+	}
+
+	// --- Group --- //
+
+	/**
+	 * Opens a new group inside the current group of the calling thread. See
+	 * {@link GraphMLWriter#group(String, boolean)}.
+	 *
+	 * @return a string identifying the new group. Never returns null.
+	 * @throws GraphMLException
+	 *             if an error occurs when creating the group.
+	 */
+	public String group(String label, boolean open) throws GraphMLException {
+		return group(label, open, 0.0f, 0.0f);
+	}
+
+	public String group(String label, boolean open, float x, float y) throws GraphMLException {
+		return getFragment().writer.group(label, open, x, y);
+	}
+
+	/**
+	 * Closes the current group of the calling thread. See
+	 * {@link GraphMLWriter#closeGroup()}.
+	 *
+	 * @throws GraphMLException
+	 *             if an error occurs when closing the group.
+	 */
+	public void closeGroup() throws GraphMLException {
+		final Fragment fragment = getFragment();
+
+		fragment.writer.closeGroup();
+		fragment.mergeIfFull();
+	}
+
+	// --- Others --- //
+
+	/**
+	 * Closes the writer and the underlying stream.
+	 */
+	@Override
+	public synchronized void close() {
+		writer.close();
+	}
+
+	private Fragment getFragment() {
+		assertGraphOpened();
+
+		return currentFragment.get();
+	}
+
+	private void assertGraphOpened() {
+		if (!graphOpened) {
+			throw new IllegalStateException("The graph isn't opened");
+		}
+	}
+
+	/**
+	 * The buffer where a thread writes its part of the graph.
+	 */
+	private final class Fragment {
+
+		private final FragmentBuffer buffer = new FragmentBuffer(bufferSize + 1024);
+
+		private final GraphMLWriter writer;
+
+		private Fragment() {
+			this.writer = new GraphMLWriter(buffer, indent, nodeSequence, edgeSequence, nodeIds.newScope());
+		}
+
+		/**
+		 * Merges the buffer into the document if it's full and the thread is
+		 * at the top level of the graph.
+		 */
+		void mergeIfFull() throws GraphMLException {
+			if (!writer.insideGroup() && (buffer.size() >= bufferSize)) {
+				merge();
+			}
+		}
+
+		void merge() throws GraphMLException {
+			// Push the markup buffered by the fragment writer into the buffer
+			writer.flushBuffer();
+
+			if (buffer.size() == 0) {
+				return;
+			}
+
+			synchronized (ConcurrentGraphMLWriter.this) {
+				buffer.writeTo(ConcurrentGraphMLWriter.this.writer);
+			}
+
+			buffer.reset();
+		}
+	}
+}
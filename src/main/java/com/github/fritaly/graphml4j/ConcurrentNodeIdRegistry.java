@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import org.apache.commons.lang.Validate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * Thread-safe registry of the node identifiers written by several threads
+ * sharing the same node sequence.
+ * </p>
+ * <p>
+ * Since the sequences assigned inside a group are interleaved with the ones
+ * assigned by other threads, the registry stores the sequence of the parent
+ * group of each node (4 bytes per node) in segments allocated on demand. Each
+ * thread registers its nodes through its own {@link Scope} which tracks the
+ * groups opened by the thread.
+ * </p>
+ * <p>
+ * The identifiers supplied by the caller which look like "n&lt;seq&gt;" are
+ * stored as one bit per sequence, the other ones in a concurrent set.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+final class ConcurrentNodeIdRegistry {
+
+	private static final int SEGMENT_BITS = 16;
+
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+	private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	/**
+	 * Value stored for a node without parent. The value 0 means that the
+	 * sequence isn't registered, the parent's sequence is otherwise stored
+	 * with an offset of 2.
+	 */
+	private static final int ROOT = 1;
+
+	/**
+	 * The identifiers which aren't generated from a sequence.
+	 */
+	private final Set<String> otherIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Bit sets storing the sequences of the supplied identifiers looking like
+	 * "n&lt;seq&gt;" (one bit per sequence).
+	 */
+	private final AtomicReferenceArray<AtomicLongArray> suppliedSegments = new AtomicReferenceArray<AtomicLongArray>(
+			1 << (31 - SEGMENT_BITS));
+
+	/**
+	 * Whether identifiers were registered with {@link #add(String)}.
+	 */
+	private volatile boolean suppliedIds;
+
+	private final AtomicReferenceArray<AtomicIntegerArray> segments = new AtomicReferenceArray<AtomicIntegerArray>(
+			1 << (31 - SEGMENT_BITS));
+
+	/**
+	 * Returns a new scope for registering the nodes created by the calling
+	 * thread.
+	 *
+	 * @return a new instance of {@link Scope}. Never returns null.
+	 */
+	Scope newScope() {
+		return new Scope();
+	}
+
+	/**
+	 * Tells whether the node with the given identifier was registered (by any
+	 * thread).
+	 *
+	 * @param id
+	 *            the identifier to look for. Can be null.
+	 * @return whether the identifier was registered.
+	 */
+	boolean contains(String id) {
+		if (id == null) {
+			return false;
+		}
+
+		return isGenerated(id) || isSupplied(id) || otherIds.contains(id);
+	}
+
+	/**
+	 * Registers the given identifier as is. Used for identifiers which aren't
+	 * generated from a sequence.
+	 *
+	 * @param id
+	 *            the identifier to register. Can't be null.
+	 * @return whether the identifier was added (that is, whether it wasn't
+	 *         already registered).
+	 */
+	boolean add(String id) {
+		Validate.notNull(id, "The given id is null");
+
+		if (isGenerated(id)) {
+			return false;
+		}
+
+		this.suppliedIds = true;
+
+		final int sequence = NodeIdRegistry.parseSequence(id, 0, id.length());
+
+		return (sequence >= 0) ? addSupplied(sequence) : otherIds.add(id);
+	}
+
+	private boolean addSupplied(int sequence) {
+		final int index = sequence >>> SEGMENT_BITS;
+
+		AtomicLongArray segment = suppliedSegments.get(index);
+
+		if (segment == null) {
+			suppliedSegments.compareAndSet(index, null, new AtomicLongArray(SEGMENT_SIZE >>> 6));
+
+			segment = suppliedSegments.get(index);
+		}
+
+		final int offset = (sequence & SEGMENT_MASK) >>> 6;
+		final long mask = 1L << sequence;
+
+		while (true) {
+			final long bits = segment.get(offset);
+
+			if ((bits & mask) != 0) {
+				return false;
+			}
+			if (segment.compareAndSet(offset, bits, bits | mask)) {
+				return true;
+			}
+		}
+	}
+
+	private boolean isSupplied(String id) {
+		final int sequence = NodeIdRegistry.parseSequence(id, 0, id.length());
+
+		if (sequence < 0) {
+			return false;
+		}
+
+		final AtomicLongArray segment = suppliedSegments.get(sequence >>> SEGMENT_BITS);
+
+		return (segment != null) && ((segment.get((sequence & SEGMENT_MASK) >>> 6) & (1L << sequence)) != 0);
+	}
+
+	private boolean isGenerated(String id) {
+		int end = id.length();
+		int value = 0;
+
+		// Parse the segments from right to left
+		while (true) {
+			final int separator = (end >= 2) ? id.lastIndexOf("::", end - 2) : -1;
+			final int sequence = NodeIdRegistry.parseSequence(id, (separator < 0) ? 0 : separator + 2, end);
+
+			if (sequence < 0) {
+				return false;
+			}
+
+			if ((value != 0) && (value - 2 != sequence)) {
+				// This isn't the node's parent
+				return false;
+			}
+
+			value = get(sequence);
+
+			if (value == 0) {
+				return false;
+			}
+
+			if (separator < 0) {
+				// All the enclosing groups must have been matched
+				return value == ROOT;
+			}
+			if (value == ROOT) {
+				return false;
+			}
+
+			end = separator;
+		}
+	}
+
+	private int get(int sequence) {
+		final AtomicIntegerArray segment = segments.get(sequence >>> SEGMENT_BITS);
+
+		return (segment != null) ? segment.get(sequence & SEGMENT_MASK) : 0;
+	}
+
+	private void register(int sequence, int parent) {
+		final int index = sequence >>> SEGMENT_BITS;
+
+		AtomicIntegerArray segment = segments.get(index);
+
+		if (segment == null) {
+			segments.compareAndSet(index, null, new AtomicIntegerArray(SEGMENT_SIZE));
+
+			segment = segments.get(index);
+		}
+
+		segment.set(sequence & SEGMENT_MASK, (parent < 0) ? ROOT : parent + 2);
+	}
+
+	/**
+	 * The nodes registered by a given thread. Not thread-safe.
+	 */
+	final class Scope implements NodeRegistry {
+
+		/**
+		 * The sequences of the groups opened by the thread.
+		 */
+		private int[] groups = new int[16];
+
+		private int depth;
+
+		private Scope() {
+		}
+
+		int getDepth() {
+			return depth;
+		}
+
+		@Override
+		public void addNode(int sequence) {
+			register(sequence, (depth == 0) ? -1 : groups[depth - 1]);
+		}
+
+		@Override
+		public void openGroup(int sequence) {
+			addNode(sequence);
+
+			if (depth == groups.length) {
+				groups = Arrays.copyOf(groups, depth * 2);
+			}
+
+			groups[depth++] = sequence;
+		}
+
+		@Override
+		public void closeGroup() {
+			if (depth == 0) {
+				throw new IllegalStateException("No group is currently open");
+			}
+
+			depth--;
+		}
+
+		@Override
+		public boolean add(String id) {
+			return ConcurrentNodeIdRegistry.this.add(id);
+		}
+
+		@Override
+		public boolean contains(String id) {
+			return ConcurrentNodeIdRegistry.this.contains(id);
+		}
+
+		@Override
+		public boolean hasSuppliedIds() {
+			return suppliedIds;
+		}
+	}
+}
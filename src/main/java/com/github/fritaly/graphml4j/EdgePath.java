@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * <p>
+ * The route of an edge, written as the <code>&lt;y:Path&gt;</code> element of
+ * the edge: the position of the ports (where the edge leaves the source node
+ * and enters the target node, relative to the center of the node) and the
+ * bend points (in absolute coordinates) between them.
+ * </p>
+ * <p>
+ * Instances of this class are immutable.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public final class EdgePath {
+
+	/**
+	 * The path without bend and with the ports at the center of the nodes.
+	 */
+	public static final EdgePath STRAIGHT = new EdgePath(0.0f, 0.0f, 0.0f, 0.0f);
+
+	private final float sourceX, sourceY, targetX, targetY;
+
+	/**
+	 * The coordinates of the bend points (x1, y1, x2, y2, etc).
+	 */
+	private final float[] points;
+
+	/**
+	 * Creates a new path.
+	 *
+	 * @param sourceX
+	 *            the abscissa of the source port relative to the center of the
+	 *            source node.
+	 * @param sourceY
+	 *            the ordinate of the source port relative to the center of the
+	 *            source node.
+	 * @param targetX
+	 *            the abscissa of the target port relative to the center of the
+	 *            target node.
+	 * @param targetY
+	 *            the ordinate of the target port relative to the center of the
+	 *            target node.
+	 * @param points
+	 *            the coordinates of the bend points (x1, y1, x2, y2, etc).
+	 *            Can't be null.
+	 */
+	public EdgePath(float sourceX, float sourceY, float targetX, float targetY, float... points) {
+		Validate.notNull(points, "The given points are null");
+		Validate.isTrue(points.length % 2 == 0, "The given points must be pairs of coordinates");
+
+		this.sourceX = sourceX;
+		this.sourceY = sourceY;
+		this.targetX = targetX;
+		this.targetY = targetY;
+		this.points = points.clone();
+	}
+
+	public float getSourceX() {
+		return sourceX;
+	}
+
+	public float getSourceY() {
+		return sourceY;
+	}
+
+	public float getTargetX() {
+		return targetX;
+	}
+
+	public float getTargetY() {
+		return targetY;
+	}
+
+	public int getPointCount() {
+		return points.length / 2;
+	}
+
+	public float getPointX(int index) {
+		return points[2 * index];
+	}
+
+	public float getPointY(int index) {
+		return points[2 * index + 1];
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof EdgePath)) {
+			return false;
+		}
+
+		final EdgePath other = (EdgePath) obj;
+
+		return (Float.compare(sourceX, other.sourceX) == 0) && (Float.compare(sourceY, other.sourceY) == 0)
+				&& (Float.compare(targetX, other.targetX) == 0) && (Float.compare(targetY, other.targetY) == 0)
+				&& Arrays.equals(points, other.points);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = Float.floatToIntBits(sourceX);
+
+		result = 31 * result + Float.floatToIntBits(sourceY);
+		result = 31 * result + Float.floatToIntBits(targetX);
+		result = 31 * result + Float.floatToIntBits(targetY);
+
+		return 31 * result + Arrays.hashCode(points);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("EdgePath(");
+
+		builder.append(sourceX).append(", ").append(sourceY).append(" -> ");
+
+		for (int i = 0; i < getPointCount(); i++) {
+			builder.append('(').append(getPointX(i)).append(", ").append(getPointY(i)).append(") -> ");
+		}
+
+		return builder.append(targetX).append(", ").append(targetY).append(')').toString();
+	}
+}
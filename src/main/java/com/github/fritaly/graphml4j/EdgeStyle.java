@@ -82,23 +82,49 @@ public class EdgeStyle {
 	private boolean smoothed = false;
 
 	void writeTo(XMLStreamWriter writer) throws XMLStreamException {
-		Validate.notNull(writer, "The given stream writer is null");
-
-		// What is the path used for ?
-		// TODO Create properties for sx, sy, tx and ty
+		writeTo(writer, EdgePath.STRAIGHT);
+	}
 
-		// y:Path
-		writer.writeEmptyElement("y:Path");
-		writer.writeAttribute("sx", String.format("%.1f", 0.0f));
-		writer.writeAttribute("sy", String.format("%.1f", 0.0f));
-		writer.writeAttribute("tx", String.format("%.1f", 0.0f));
-		writer.writeAttribute("ty", String.format("%.1f", 0.0f));
+	/**
+	 * Writes the markup of an edge following the given path.
+	 *
+	 * @param writer
+	 *            the stream writer to use. Can't be null.
+	 * @param path
+	 *            the path of the edge. Can't be null.
+	 */
+	void writeTo(XMLStreamWriter writer, EdgePath path) throws XMLStreamException {
+		Validate.notNull(writer, "The given stream writer is null");
+		Validate.notNull(path, "The given path is null");
+
+		// y:Path (the ports are relative to the center of the nodes)
+		if (path.getPointCount() == 0) {
+			writer.writeEmptyElement("y:Path");
+		} else {
+			writer.writeStartElement("y:Path");
+		}
+
+		Utils.writeAttribute(writer, "sx", path.getSourceX(), 1);
+		Utils.writeAttribute(writer, "sy", path.getSourceY(), 1);
+		Utils.writeAttribute(writer, "tx", path.getTargetX(), 1);
+		Utils.writeAttribute(writer, "ty", path.getTargetY(), 1);
+
+		if (path.getPointCount() > 0) {
+			for (int i = 0; i < path.getPointCount(); i++) {
+				// y:Point
+				writer.writeEmptyElement("y:Point");
+				Utils.writeAttribute(writer, "x", path.getPointX(i), 1);
+				Utils.writeAttribute(writer, "y", path.getPointY(i), 1);
+			}
+
+			writer.writeEndElement(); // </y:Path>
+		}
 
 		// y:LineStyle
 		writer.writeEmptyElement("y:LineStyle");
 		writer.writeAttribute("color", Utils.encode(color));
 		writer.writeAttribute("type", type.getValue());
-		writer.writeAttribute("width", String.format("%.1f", width));
+		Utils.writeAttribute(writer, "width", width, 1);
 
 		// y:Arrows
 		writer.writeEmptyElement("y:Arrows");
@@ -109,4 +135,20 @@ public class EdgeStyle {
 		writer.writeEmptyElement("y:BendStyle");
 		writer.writeAttribute("smoothed", Boolean.toString(smoothed));
 	}
+
+	/**
+	 * Compiles this style into a template (without any slot).
+	 *
+	 * @param indent
+	 *            whether the markup generated by the template is indented.
+	 * @return a new {@link StyleTemplate}. Never returns null.
+	 */
+	StyleTemplate compile(boolean indent) {
+		return new StyleTemplate(new StyleTemplate.Source() {
+			@Override
+			public void writeTo(XMLStreamWriter writer, StyleTemplate.Slots slots) throws XMLStreamException {
+				EdgeStyle.this.writeTo(writer);
+			}
+		}, indent);
+	}
 }
\ No newline at end of file
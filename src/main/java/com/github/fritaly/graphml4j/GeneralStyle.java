@@ -17,6 +17,7 @@
 package com.github.fritaly.graphml4j;
 
 import com.github.fritaly.graphml4j.yed.LineType;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
@@ -32,6 +33,7 @@ import java.awt.*;
  *
  * @author francois_ritaly
  */
+@EqualsAndHashCode
 final class GeneralStyle {
 
 	// The properties x & y aren't defined here because they're not style
@@ -117,23 +119,24 @@ final class GeneralStyle {
 		this.borderWidth = borderWidth;
 	}
 
-	void writeTo(XMLStreamWriter writer, float x, float y) throws XMLStreamException {
+	void writeTo(XMLStreamWriter writer, StyleTemplate.Slots slots) throws XMLStreamException {
 		Validate.notNull(writer, "The given stream writer is null");
 
-		writeGeometry(writer, x, y);
+		writeGeometry(writer, slots);
 		writeFill(writer);
 		writeBorderStyle(writer);
 	}
 
-	private void writeGeometry(XMLStreamWriter writer, float x, float y) throws XMLStreamException {
+	private void writeGeometry(XMLStreamWriter writer, StyleTemplate.Slots slots) throws XMLStreamException {
 		Validate.notNull(writer, "The given stream writer is null");
+		Validate.notNull(slots, "The given slots are null");
 
 		// y:Geometry (the x & y attributes are computed when laying out the graph in yEd)
 		writer.writeEmptyElement("y:Geometry");
-		writer.writeAttribute("height", String.format("%.1f", height));
-		writer.writeAttribute("width", String.format("%.1f", width));
-		writer.writeAttribute("x", String.format("%.1f", x));
-		writer.writeAttribute("y", String.format("%.1f", y));
+		Utils.writeAttribute(writer, "height", height, 1);
+		Utils.writeAttribute(writer, "width", width, 1);
+
+		slots.writeLocation(writer);
 	}
 
 	private void writeFill(XMLStreamWriter writer) throws XMLStreamException {
@@ -159,6 +162,6 @@ final class GeneralStyle {
         writer.writeEmptyElement("y:BorderStyle");
         writer.writeAttribute("color", Utils.encode(borderColor));
         writer.writeAttribute("type", borderType.getValue());
-        writer.writeAttribute("width", String.format("%.1f", borderWidth));
+        Utils.writeAttribute(writer, "width", borderWidth, 1);
 	}
 }
\ No newline at end of file
@@ -25,11 +25,12 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.EnumSet;
-import java.util.Set;
 import java.util.Stack;
-import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -53,6 +54,12 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <li>Close the graph</li>
  * <li>Close the graph writer</li>
  * </ul>
+ * <p>
+ * The writer can either generate the markup into a {@link Writer} (via the JDK
+ * Stax implementation) or directly encode it in UTF-8 into an
+ * {@link OutputStream} or a {@link WritableByteChannel}. The latter is faster
+ * and generates the same document.
+ * </p>
  *
  * @author francois_ritaly
  */
@@ -113,10 +120,21 @@ public final class GraphMLWriter implements Closeable {
 		}
 	}
 
-	private final Writer writer;
+	/**
+	 * The underlying output (a {@link Writer}, an {@link OutputStream} or a
+	 * {@link WritableByteChannel}) closed when closing the graph writer.
+	 */
+	private final Closeable output;
 
 	private final XMLStreamWriter streamWriter;
 
+	/**
+	 * The same instance as {@link #streamWriter} when the markup is encoded by
+	 * a {@link Utf8XMLStreamWriter}, null otherwise. The styles are then
+	 * written with templates.
+	 */
+	private final Utf8XMLStreamWriter utf8Writer;
+
 	/**
 	 * The writer's current state. Use for validating the sequence of method
 	 * calls. All state changes must be done by method {@link #setState(State)}.
@@ -126,17 +144,17 @@ public final class GraphMLWriter implements Closeable {
 	/**
 	 * Sequence used for generating node identifiers.
 	 */
-	private final AtomicInteger nodeSequence = new AtomicInteger();
+	private final AtomicInteger nodeSequence;
 
 	/**
 	 * Sequence used for generating edge identifiers.
 	 */
-	private final AtomicInteger edgeSequence = new AtomicInteger();
+	private final AtomicInteger edgeSequence;
 
 	/**
-	 * Set containing the identifiers of nodes added to the graph.
+	 * Registry containing the identifiers of nodes added to the graph.
 	 */
-	private final Set<String> nodeIds = new TreeSet<String>();
+	private final NodeRegistry nodeIds;
 
 	/**
 	 * Stack containing the identifiers of groups.
@@ -144,16 +162,67 @@ public final class GraphMLWriter implements Closeable {
 	private final Stack<String> groupIds = new Stack<String>();
 
 	/**
-	 * The style applied to nodes.
+	 * The number of groups (at the top of the stack) whose identifier was
+	 * supplied by the caller or derived from such an identifier. These
+	 * groups and the nodes inside them are registered by identifier instead
+	 * of by sequence.
+	 */
+	private int explicitGroupCount;
+
+	/**
+	 * The styles recently used along with their templates. The templates are
+	 * only used when the markup is encoded by a {@link Utf8XMLStreamWriter}
+	 * and are compiled lazily. The palettes are keyed by immutable styles
+	 * since the mutable ones are compared by identity and can be modified
+	 * once set.
+	 */
+	private final StylePalette<ImmutableNodeStyle> nodePalette = new StylePalette<ImmutableNodeStyle>();
+
+	private final StylePalette<ImmutableGroupStyles> groupPalette = new StylePalette<ImmutableGroupStyles>();
+
+	private final StylePalette<EdgeStyle> edgePalette = new StylePalette<EdgeStyle>();
+
+	/**
+	 * The entries of the palettes for the current styles.
 	 */
-	private final NodeStyle nodeStyle = new NodeStyle();
+	private StylePalette.Entry<ImmutableNodeStyle> nodeEntry = nodePalette.add(ImmutableNodeStyle.DEFAULT);
+
+	private StylePalette.Entry<ImmutableGroupStyles> groupEntry = groupPalette.add(ImmutableGroupStyles.DEFAULT);
+
+	private StylePalette.Entry<EdgeStyle> edgeEntry = edgePalette.add(EdgeStyle.DEFAULT);
+
+	/**
+	 * The style applied to nodes (a snapshot never modified).
+	 */
+	private ImmutableNodeStyle nodeStyle = nodeEntry.style;
 
 	/**
 	 * The style applied to edges.
 	 */
-	private EdgeStyle edgeStyle = EdgeStyle.DEFAULT;
+	private EdgeStyle edgeStyle = edgeEntry.style;
+
+	/**
+	 * The styles applied to groups (a snapshot never modified).
+	 */
+	private ImmutableGroupStyles groupStyles = groupEntry.style;
 
-	private final GroupStyles groupStyles = new GroupStyles();
+	/**
+	 * Whether the edge style set when opening the graph should be declared as
+	 * the default value of the edge graphics key.
+	 */
+	private boolean keyDefaultsEnabled;
+
+	/**
+	 * The edge style declared as the default value of the edge graphics key.
+	 * Null when the key defaults are disabled.
+	 */
+	private EdgeStyle defaultEdgeStyle;
+
+	/**
+	 * Whether the current edge style is the default one, in which case the
+	 * edges are generated without their graphics data.
+	 */
+	private boolean defaultEdgeStyleActive;
 
 	/**
 	 * Creates a new instance of {@link GraphMLWriter} using the given writer to
@@ -168,11 +237,16 @@ public final class GraphMLWriter implements Closeable {
 	public GraphMLWriter(Writer writer) throws GraphMLException {
 		Validate.notNull(writer, "The given writer is null");
 
+		this.nodeSequence = new AtomicInteger();
+		this.edgeSequence = new AtomicInteger();
+		this.nodeIds = new NodeIdRegistry();
+
 		try {
-			this.writer = writer;
+			this.output = writer;
 
 			// Indent the XML generated
 			this.streamWriter = new IndentingXMLStreamWriter(XMLOutputFactory.newFactory().createXMLStreamWriter(writer));
+			this.utf8Writer = null;
 		} catch (XMLStreamException e) {
 			throw new GraphMLException(e);
 		} catch (FactoryConfigurationError e) {
@@ -180,6 +254,108 @@ public final class GraphMLWriter implements Closeable {
 		}
 	}
 
+	/**
+	 * Creates a new instance of {@link GraphMLWriter} encoding the (indented)
+	 * GraphML markup language in UTF-8 into the given stream.
+	 *
+	 * @param stream
+	 *            an {@link OutputStream} where the GraphML markup language will
+	 *            be written. Can't be null.
+	 */
+	public GraphMLWriter(OutputStream stream) {
+		this(stream, true);
+	}
+
+	/**
+	 * Creates a new instance of {@link GraphMLWriter} encoding the GraphML
+	 * markup language in UTF-8 into the given stream.
+	 *
+	 * @param stream
+	 *            an {@link OutputStream} where the GraphML markup language will
+	 *            be written. Can't be null.
+	 * @param indent
+	 *            whether the generated markup should be indented.
+	 */
+	public GraphMLWriter(OutputStream stream, boolean indent) {
+		Validate.notNull(stream, "The given output stream is null");
+
+		this.output = stream;
+		this.streamWriter = this.utf8Writer = new Utf8XMLStreamWriter(stream, indent);
+		this.nodeSequence = new AtomicInteger();
+		this.edgeSequence = new AtomicInteger();
+		this.nodeIds = new NodeIdRegistry();
+	}
+
+	/**
+	 * Creates a new instance of {@link GraphMLWriter} encoding the (indented)
+	 * GraphML markup language in UTF-8 into the given channel.
+	 *
+	 * @param channel
+	 *            a {@link WritableByteChannel} where the GraphML markup
+	 *            language will be written. Can't be null.
+	 */
+	public GraphMLWriter(WritableByteChannel channel) {
+		this(channel, true);
+	}
+
+	/**
+	 * Creates a new instance of {@link GraphMLWriter} encoding the GraphML
+	 * markup language in UTF-8 into the given channel.
+	 *
+	 * @param channel
+	 *            a {@link WritableByteChannel} where the GraphML markup
+	 *            language will be written. Can't be null.
+	 * @param indent
+	 *            whether the generated markup should be indented.
+	 */
+	public GraphMLWriter(WritableByteChannel channel, boolean indent) {
+		Validate.notNull(channel, "The given channel is null");
+
+		this.output = channel;
+		this.streamWriter = this.utf8Writer = new Utf8XMLStreamWriter(Channels.newOutputStream(channel), indent);
+		this.nodeSequence = new AtomicInteger();
+		this.edgeSequence = new AtomicInteger();
+		this.nodeIds = new NodeIdRegistry();
+	}
+
+	/**
+	 * Creates a new instance of {@link GraphMLWriter} generating a fragment of
+	 * a graph, that is, the markup of nodes, groups and edges to be inserted
+	 * inside an open graph with {@link #writeFragment(byte[], int, int)}. The
+	 * writer is created with its graph open.
+	 *
+	 * @param stream
+	 *            the stream where the fragment is written. Can't be null.
+	 * @param indent
+	 *            whether the generated markup should be indented.
+	 * @param nodeSequence
+	 *            the sequence used for generating node identifiers. Can't be
+	 *            null.
+	 * @param edgeSequence
+	 *            the sequence used for generating edge identifiers. Can't be
+	 *            null.
+	 * @param nodeIds
+	 *            the registry of node identifiers. Can't be null.
+	 */
+	GraphMLWriter(OutputStream stream, boolean indent, AtomicInteger nodeSequence, AtomicInteger edgeSequence,
+			NodeRegistry nodeIds) {
+
+		Validate.notNull(stream, "The given output stream is null");
+		Validate.notNull(nodeSequence, "The given node sequence is null");
+		Validate.notNull(edgeSequence, "The given edge sequence is null");
+		Validate.notNull(nodeIds, "The given node registry is null");
+
+		this.output = stream;
+		this.streamWriter = this.utf8Writer = new Utf8XMLStreamWriter(stream, indent);
+		this.nodeSequence = nodeSequence;
+		this.edgeSequence = edgeSequence;
+		this.nodeIds = nodeIds;
+
+		// Position the writer inside <graphml><graph>
+		this.utf8Writer.enter(2);
+		this.state = State.GRAPH_OPENED;
+	}
+
 	State getState() {
 		// Getter mainly for unit tests
 		return state;
@@ -210,8 +386,27 @@ public final class GraphMLWriter implements Closeable {
 	public void setGroupStyles(GroupStyles styles) {
 		Validate.notNull(styles, "The given groups styles is null");
 
-		// Defensive recopy
-		this.groupStyles.apply(styles);
+		if (styles == this.groupStyles) {
+			// Same styles, nothing to do
+			return;
+		}
+
+		// Defensive recopy (unless immutable)
+		final ImmutableGroupStyles snapshot = ImmutableGroupStyles.of(styles);
+
+		if (snapshot == this.groupStyles) {
+			// The snapshots are interned, same properties as the current styles
+			return;
+		}
+
+		StylePalette.Entry<ImmutableGroupStyles> entry = groupPalette.get(snapshot);
+
+		if (entry == null) {
+			entry = groupPalette.add(snapshot);
+		}
+
+		this.groupEntry = entry;
+		this.groupStyles = entry.style;
 	}
 
 	/**
@@ -239,8 +434,27 @@ public final class GraphMLWriter implements Closeable {
 	public void setNodeStyle(NodeStyle style) {
 		Validate.notNull(style, "The given style is null");
 
-		// Defensive recopy
-		this.nodeStyle.apply(style);
+		if (style == this.nodeStyle) {
+			// Same style, nothing to do
+			return;
+		}
+
+		// Defensive recopy (unless immutable)
+		final ImmutableNodeStyle snapshot = ImmutableNodeStyle.of(style);
+
+		if (snapshot == this.nodeStyle) {
+			// The snapshots are interned, same properties as the current style
+			return;
+		}
+
+		StylePalette.Entry<ImmutableNodeStyle> entry = nodePalette.get(snapshot);
+
+		if (entry == null) {
+			entry = nodePalette.add(snapshot);
+		}
+
+		this.nodeEntry = entry;
+		this.nodeStyle = entry.style;
 	}
 
 	/**
@@ -267,7 +481,57 @@ public final class GraphMLWriter implements Closeable {
 	public void setEdgeStyle(EdgeStyle style) {
 		Validate.notNull(style, "The given style is null");
 
-		this.edgeStyle = style;
+		if ((style == this.edgeStyle) || this.edgeStyle.equals(style)) {
+			// Same style, nothing to do
+			return;
+		}
+
+		StylePalette.Entry<EdgeStyle> entry = edgePalette.get(style);
+
+		if (entry == null) {
+			// The edge styles are immutable, no need to copy them
+			entry = edgePalette.add(style);
+		}
+
+		this.edgeEntry = entry;
+		this.edgeStyle = entry.style;
+		this.defaultEdgeStyleActive = (edgeStyle == defaultEdgeStyle) || edgeStyle.equals(defaultEdgeStyle);
+	}
+
+	/**
+	 * Tells whether the key defaults are enabled.
+	 *
+	 * @return whether the key defaults are enabled.
+	 * @see #setKeyDefaultsEnabled(boolean)
+	 */
+	public boolean isKeyDefaultsEnabled() {
+		return keyDefaultsEnabled;
+	}
+
+	/**
+	 * <p>
+	 * Sets whether the edge style set when opening the graph should be
+	 * declared as the default value of the edge graphics key. The edges
+	 * rendered with this style are then generated without their graphics data
+	 * (the GraphML readers resolve it from the key default), which greatly
+	 * reduces the size of the generated file when most edges share the same
+	 * style. Set the dominant edge style before opening the graph.
+	 * </p>
+	 * <p>
+	 * Note: The nodes always embed their graphics data since it also contains
+	 * their label and location.
+	 * </p>
+	 * <p>
+	 * This method will fail if the graph has already been opened.
+	 * </p>
+	 *
+	 * @param enabled
+	 *            whether the key defaults are enabled.
+	 */
+	public void setKeyDefaultsEnabled(boolean enabled) {
+		assertState(State.INITIAL);
+
+		this.keyDefaultsEnabled = enabled;
 	}
 
 	/**
@@ -281,7 +545,7 @@ public final class GraphMLWriter implements Closeable {
 		return groupIds.size();
 	}
 
-	private boolean insideGroup() {
+	boolean insideGroup() {
 		return (getDepth() > 0);
 	}
 
@@ -371,11 +635,30 @@ public final class GraphMLWriter implements Closeable {
 			this.streamWriter.writeAttribute("id", ID_EDGE_DESCRIPTION);
 
 			// Define the type 'edge'
-			this.streamWriter.writeEmptyElement("key");
+			if (keyDefaultsEnabled) {
+				this.streamWriter.writeStartElement("key");
+			} else {
+				this.streamWriter.writeEmptyElement("key");
+			}
 			this.streamWriter.writeAttribute("for", "edge");
 			this.streamWriter.writeAttribute("id", ID_EDGE_GRAPHICS);
 			this.streamWriter.writeAttribute("yfiles.type", "edgegraphics");
 
+			if (keyDefaultsEnabled) {
+				// Declare the current edge style as the default value
+				this.streamWriter.writeStartElement("default");
+				this.streamWriter.writeStartElement("y:PolyLineEdge");
+
+				edgeStyle.writeTo(streamWriter);
+
+				this.streamWriter.writeEndElement(); // </y:PolyLineEdge>
+				this.streamWriter.writeEndElement(); // </default>
+				this.streamWriter.writeEndElement(); // </key>
+
+				this.defaultEdgeStyle = edgeStyle;
+				this.defaultEdgeStyleActive = true;
+			}
+
 			setState(State.DOCUMENT_OPENED);
 		} catch (XMLStreamException e) {
 			throw new GraphMLException(e);
@@ -476,12 +759,41 @@ public final class GraphMLWriter implements Closeable {
 	}
 
 	public String node(String label, float x, float y) throws GraphMLException {
+		return node(null, label, x, y);
+	}
+
+	/**
+	 * <p>
+	 * Creates a new node with the given identifier and label. Unlike the
+	 * generated identifiers, the given identifier doesn't depend on the groups
+	 * enclosing the node.
+	 * </p>
+	 * <p>
+	 * The identifiers generated afterwards skip the given identifier: when
+	 * "n3" is supplied, the node which would have been identified by "n3" is
+	 * identified by "n4".
+	 * </p>
+	 *
+	 * @param id
+	 *            the identifier of the node. Must be unique in the graph. Can
+	 *            be null to generate the identifier.
+	 * @param label
+	 *            a string representing the node label. Can't be null.
+	 * @return the identifier of the node. Never returns null.
+	 * @throws GraphMLException
+	 *             if an error occurs when creating the node.
+	 */
+	public String node(String id, String label) throws GraphMLException {
+		return node(id, label, 0.0f, 0.0f);
+	}
+
+	public String node(String id, String label, float x, float y) throws GraphMLException {
 		Validate.notNull(label, "The given label is null");
 
 		assertState(State.GRAPH_OPENED);
 
 		try {
-			final String nodeId = nextNodeId();
+			final String nodeId = registerNode(id, false);
 
 			this.streamWriter.writeStartElement("node");
 			this.streamWriter.writeAttribute("id", nodeId);
@@ -494,21 +806,37 @@ public final class GraphMLWriter implements Closeable {
 
 			this.streamWriter.writeStartElement("y:ShapeNode");
 
-			nodeStyle.writeTo(streamWriter, label, x, y);
+			if (utf8Writer != null) {
+				if (nodeEntry.template == null) {
+					nodeEntry.template = nodeStyle.compile(utf8Writer.isIndenting());
+				}
+
+				utf8Writer.writeTemplate(nodeEntry.template, label, x, y);
+			} else {
+				nodeStyle.writeTo(streamWriter, label, x, y);
+			}
 
 			this.streamWriter.writeEndElement(); // </y:ShapeNode>
 			this.streamWriter.writeEndElement(); // </data>
 			this.streamWriter.writeEndElement(); // </node>
 
-			// Store the node id
-			this.nodeIds.add(nodeId);
-
 			return nodeId;
 		} catch (XMLStreamException e) {
 			throw new GraphMLException(e);
 		}
 	}
 
+	/**
+	 * Tells whether a node (or group) with the given identifier was created.
+	 *
+	 * @param id
+	 *            the identifier to look for. Can be null.
+	 * @return whether a node with the given identifier was created.
+	 */
+	public boolean hasNode(String id) {
+		return nodeIds.contains(id);
+	}
+
 	// --- Edge --- //
 
 	/**
@@ -528,16 +856,53 @@ public final class GraphMLWriter implements Closeable {
 	 *             if an error occurs when creating the edge.
 	 */
 	public String edge(String sourceNodeId, String targetNodeId) throws GraphMLException {
-		Validate.isTrue(nodeIds.contains(sourceNodeId),
-				String.format("The (source) node with given id '%s' doesn't exist", sourceNodeId));
-		Validate.isTrue(nodeIds.contains(targetNodeId),
-				String.format("The (target) node with given id '%s' doesn't exist", targetNodeId));
+		return edge(sourceNodeId, targetNodeId, null);
+	}
+
+	/**
+	 * <p>
+	 * Creates a new edge between the 2 given nodes following the given path
+	 * (typically computed by an edge router) and returns the identifier
+	 * assigned to the edge.
+	 * </p>
+	 *
+	 * @param sourceNodeId
+	 *            the identifier of the source node. Can't be null.
+	 * @param targetNodeId
+	 *            the identifier of the target node. Can't be null.
+	 * @param path
+	 *            the path of the edge (ports and bend points). Can be null to
+	 *            let yEd route the edge.
+	 * @return a string identifying the new edge. Never returns null.
+	 * @throws GraphMLException
+	 *             if an error occurs when creating the edge.
+	 */
+	public String edge(String sourceNodeId, String targetNodeId, EdgePath path) throws GraphMLException {
+		// Only format the error messages when the validation fails
+		if (!nodeIds.contains(sourceNodeId)) {
+			throw new IllegalArgumentException(String.format("The (source) node with given id '%s' doesn't exist",
+					sourceNodeId));
+		}
+		if (!nodeIds.contains(targetNodeId)) {
+			throw new IllegalArgumentException(String.format("The (target) node with given id '%s' doesn't exist",
+					targetNodeId));
+		}
 
 		assertState(State.GRAPH_OPENED);
 
 		try {
 			final String edgeId = nextEdgeId();
 
+			if (defaultEdgeStyleActive && (path == null)) {
+				// The graphics data is resolved from the key default
+				this.streamWriter.writeEmptyElement("edge");
+				this.streamWriter.writeAttribute("id", edgeId);
+				this.streamWriter.writeAttribute("source", sourceNodeId);
+				this.streamWriter.writeAttribute("target", targetNodeId);
+
+				return edgeId;
+			}
+
 			this.streamWriter.writeStartElement("edge");
 			this.streamWriter.writeAttribute("id", edgeId);
 			this.streamWriter.writeAttribute("source", sourceNodeId);
@@ -551,7 +916,18 @@ public final class GraphMLWriter implements Closeable {
 
 			this.streamWriter.writeStartElement("y:PolyLineEdge");
 
-			edgeStyle.writeTo(streamWriter);
+			if (path != null) {
+				// The template only covers the straight path
+				edgeStyle.writeTo(streamWriter, path);
+			} else if (utf8Writer != null) {
+				if (edgeEntry.template == null) {
+					edgeEntry.template = edgeStyle.compile(utf8Writer.isIndenting());
+				}
+
+				utf8Writer.writeTemplate(edgeEntry.template, null, 0.0f, 0.0f);
+			} else {
+				edgeStyle.writeTo(streamWriter);
+			}
 
 			this.streamWriter.writeEndElement(); // </y:PolyLineEdge>
 			this.streamWriter.writeEndElement(); // </data>
@@ -586,13 +962,39 @@ public final class GraphMLWriter implements Closeable {
 	}
 
 	public String group(String label, boolean open, float x, float y) throws GraphMLException {
+		return group(null, label, open, x, y);
+	}
+
+	/**
+	 * <p>
+	 * Creates a new group with the given identifier and label. See
+	 * {@link #node(String, String)} for the identifier.
+	 * </p>
+	 *
+	 * @param id
+	 *            the identifier of the group. Must be unique in the graph. Can
+	 *            be null to generate the identifier.
+	 * @param label
+	 *            a string representing the group label. Can't be null.
+	 * @param open
+	 *            whether the group should be rendered as open or closed.
+	 * @return the identifier of the group. Never returns null.
+	 * @throws GraphMLException
+	 *             if an error occurs when creating the group.
+	 * @see #closeGroup()
+	 */
+	public String group(String id, String label, boolean open) throws GraphMLException {
+		return group(id, label, open, 0.0f, 0.0f);
+	}
+
+	public String group(String id, String label, boolean open, float x, float y) throws GraphMLException {
 		Validate.notNull(label, "The given label is null");
 
 		assertState(State.GRAPH_OPENED);
 
 		try {
 			// A group is also a node
-			final String groupId = nextNodeId();
+			final String groupId = registerNode(id, true);
 
 			this.streamWriter.writeStartElement("node");
 			this.streamWriter.writeAttribute("id", groupId);
@@ -615,14 +1017,30 @@ public final class GraphMLWriter implements Closeable {
 			// Define the group node when open
 			this.streamWriter.writeStartElement("y:GroupNode");
 
-			groupStyles.getOpenStyle().writeTo(streamWriter, label, false, x, y);
+			if (utf8Writer != null) {
+				if (groupEntry.template == null) {
+					groupEntry.template = groupStyles.compile(utf8Writer.isIndenting(), false);
+				}
+
+				utf8Writer.writeTemplate(groupEntry.template, label, x, y);
+			} else {
+				groupStyles.writeTo(streamWriter, label, false, x, y);
+			}
 
 			this.streamWriter.writeEndElement(); // </y:GroupNode>
 
 			// Define the group node when closed
 			this.streamWriter.writeStartElement("y:GroupNode");
 
-			groupStyles.getClosedStyle().writeTo(streamWriter, label, true, x, y);
+			if (utf8Writer != null) {
+				if (groupEntry.closedTemplate == null) {
+					groupEntry.closedTemplate = groupStyles.compile(utf8Writer.isIndenting(), true);
+				}
+
+				utf8Writer.writeTemplate(groupEntry.closedTemplate, label, x, y);
+			} else {
+				groupStyles.writeTo(streamWriter, label, true, x, y);
+			}
 
 			this.streamWriter.writeEndElement(); // </y:GroupNode>
 
@@ -637,9 +1055,6 @@ public final class GraphMLWriter implements Closeable {
 			// Store the current group id in a stack
 			this.groupIds.push(groupId);
 
-			// Store the group node id
-			this.nodeIds.add(groupId);
-
 			return groupId;
 		} catch (XMLStreamException e) {
 			throw new GraphMLException(e);
@@ -673,6 +1088,64 @@ public final class GraphMLWriter implements Closeable {
 
 			// Pop the id of the closed group
 			this.groupIds.pop();
+
+			if (explicitGroupCount > 0) {
+				explicitGroupCount--;
+			} else {
+				this.nodeIds.closeGroup();
+			}
+		} catch (XMLStreamException e) {
+			throw new GraphMLException(e);
+		}
+	}
+
+	// --- Fragments --- //
+
+	/**
+	 * Writes the given markup generated by a fragment writer (see
+	 * {@link #GraphMLWriter(OutputStream, boolean, AtomicInteger, AtomicInteger, NodeRegistry)})
+	 * into the graph. The writer must be encoding UTF-8 and can't be inside a
+	 * group.
+	 *
+	 * @param bytes
+	 *            an array containing the UTF-8 encoded markup to write.
+	 * @param offset
+	 *            the offset of the markup in the array.
+	 * @param length
+	 *            the length of the markup.
+	 * @throws GraphMLException
+	 *             if an error occurs when writing the markup.
+	 */
+	void writeFragment(byte[] bytes, int offset, int length) throws GraphMLException {
+		Validate.notNull(bytes, "The given byte array is null");
+		Validate.isTrue(utf8Writer != null, "The writer doesn't support fragments");
+
+		assertState(State.GRAPH_OPENED);
+		if (insideGroup()) {
+			throw new IllegalStateException("The writer is inside a group. Close the group(s) first");
+		}
+
+		try {
+			utf8Writer.writeFragment(bytes, offset, length);
+		} catch (XMLStreamException e) {
+			throw new GraphMLException(e);
+		}
+	}
+
+	/**
+	 * Flushes the markup buffered by this writer into its stream without
+	 * flushing the stream.
+	 *
+	 * @throws GraphMLException
+	 *             if an error occurs when flushing the markup.
+	 */
+	void flushBuffer() throws GraphMLException {
+		try {
+			if (utf8Writer != null) {
+				utf8Writer.flushBuffer();
+			} else {
+				streamWriter.flush();
+			}
 		} catch (XMLStreamException e) {
 			throw new GraphMLException(e);
 		}
@@ -680,21 +1153,78 @@ public final class GraphMLWriter implements Closeable {
 
 	// --- Others --- //
 
-	private String nextNodeId() {
+	private String nodeId(int sequence) {
 		if (groupIds.isEmpty()) {
 			// We're not currently in a group
-			return String.format("n%d", nodeSequence.getAndIncrement());
+			return "n" + sequence;
 		}
 
 		// What's the id of the current group ?
 		final String groupId = groupIds.peek();
 
 		// The node id looks like "<groupId>::<nodeId>"
-		return String.format("%s::n%d", groupId, nodeSequence.getAndIncrement());
+		return groupId + "::n" + sequence;
+	}
+
+	/**
+	 * Registers a new node (or group) and returns its identifier.
+	 *
+	 * @param id
+	 *            the identifier supplied by the caller or null to generate it.
+	 * @param group
+	 *            whether the node is a group.
+	 */
+	private String registerNode(String id, boolean group) {
+		if (id != null) {
+			Validate.isTrue(id.length() > 0, "The given id is empty");
+
+			// Only format the error message when the validation fails
+			if (!nodeIds.add(id)) {
+				throw new IllegalArgumentException(String.format("The given id '%s' is already used", id));
+			}
+
+			if (group) {
+				explicitGroupCount++;
+			}
+
+			return id;
+		}
+
+		while (true) {
+			final int sequence = nodeSequence.getAndIncrement();
+			final String nodeId = nodeId(sequence);
+
+			if (explicitGroupCount > 0) {
+				// The identifier derives from a given one, register it as is
+				if (!nodeIds.add(nodeId)) {
+					// Already supplied by the caller, skip the sequence
+					continue;
+				}
+
+				if (group) {
+					explicitGroupCount++;
+				}
+
+				return nodeId;
+			}
+
+			if (nodeIds.hasSuppliedIds() && nodeIds.contains(nodeId)) {
+				// Already supplied by the caller, skip the sequence
+				continue;
+			}
+
+			if (group) {
+				this.nodeIds.openGroup(sequence);
+			} else {
+				this.nodeIds.addNode(sequence);
+			}
+
+			return nodeId;
+		}
 	}
 
 	private String nextEdgeId() {
-		return String.format("e%d", edgeSequence.getAndIncrement());
+		return "e" + edgeSequence.getAndIncrement();
 	}
 
 	private void assertState(State expected) {
@@ -724,9 +1254,9 @@ public final class GraphMLWriter implements Closeable {
 				// Close quietly
 			}
 		}
-		if (writer != null) {
+		if (output != null) {
 			try {
-				writer.close();
+				output.close();
 			} catch (IOException e) {
 				// Close quietly
 			}
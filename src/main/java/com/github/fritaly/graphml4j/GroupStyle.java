@@ -83,14 +83,14 @@ public class GroupStyle extends NodeStyle {
 		Validate.notNull(writer, "The given stream writer is null");
 
 		writer.writeEmptyElement("y:BorderInsets");
-		writer.writeAttribute("bottom", String.format("%.0f", insets));
-		writer.writeAttribute("bottomF", String.format("%.1f", insets));
-		writer.writeAttribute("left", String.format("%.0f", insets));
-		writer.writeAttribute("leftF", String.format("%.1f", insets));
-		writer.writeAttribute("right", String.format("%.0f", insets));
-		writer.writeAttribute("rightF", String.format("%.1f", insets));
-		writer.writeAttribute("top", String.format("%.0f", insets));
-		writer.writeAttribute("topF", String.format("%.1f", insets));
+		Utils.writeAttribute(writer, "bottom", insets, 0);
+		Utils.writeAttribute(writer, "bottomF", insets, 1);
+		Utils.writeAttribute(writer, "left", insets, 0);
+		Utils.writeAttribute(writer, "leftF", insets, 1);
+		Utils.writeAttribute(writer, "right", insets, 0);
+		Utils.writeAttribute(writer, "rightF", insets, 1);
+		Utils.writeAttribute(writer, "top", insets, 0);
+		Utils.writeAttribute(writer, "topF", insets, 1);
 	}
 
 	private void writeState(XMLStreamWriter writer, boolean closed) throws XMLStreamException {
@@ -98,21 +98,46 @@ public class GroupStyle extends NodeStyle {
 
 		writer.writeEmptyElement("y:State");
 		writer.writeAttribute("closed", Boolean.toString(closed));
-		writer.writeAttribute("closedHeight", String.format("%.1f", 50.0f)); // TODO Create property for closedHeight
-		writer.writeAttribute("closedWidth", String.format("%.1f", 50.0f)); // TODO Create property for closedWidth
+		Utils.writeAttribute(writer, "closedHeight", 50.0f, 1); // TODO Create property for closedHeight
+		Utils.writeAttribute(writer, "closedWidth", 50.0f, 1); // TODO Create property for closedWidth
 
 		// Infer the property innerGraphDisplayEnabled from the closed flag
 		writer.writeAttribute("innerGraphDisplayEnabled", Boolean.toString(!closed));
 	}
 
 	void writeTo(XMLStreamWriter writer, String label, boolean closed, float x, float y) throws XMLStreamException {
+		writeTo(writer, StyleTemplate.values(label, x, y), closed);
+	}
+
+	void writeTo(XMLStreamWriter writer, StyleTemplate.Slots slots, boolean closed) throws XMLStreamException {
 		Validate.notNull(writer, "The given stream writer is null");
 
 		// Write the node elements
-		writeTo(writer, label, x, y);
+		writeTo(writer, slots);
 
 		// ... and the group-specific ones
 		writeState(writer, closed);
 		writeInsets(writer);
 	}
+
+	/**
+	 * Compiles this style into a template.
+	 *
+	 * @param indent
+	 *            whether the markup generated by the template is indented.
+	 * @param closed
+	 *            whether the template renders the group as closed.
+	 * @return a new {@link StyleTemplate}. Never returns null.
+	 */
+	StyleTemplate compile(boolean indent, final boolean closed) {
+		// The template is compiled lazily, work on a snapshot of this style
+		final GroupStyle style = new GroupStyle(this);
+
+		return new StyleTemplate(new StyleTemplate.Source() {
+			@Override
+			public void writeTo(XMLStreamWriter writer, StyleTemplate.Slots slots) throws XMLStreamException {
+				style.writeTo(writer, slots, closed);
+			}
+		}, indent);
+	}
 }
\ No newline at end of file
@@ -18,6 +18,9 @@ package com.github.fritaly.graphml4j;
 
 import java.awt.Color;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.apache.commons.lang.Validate;
 
 import com.github.fritaly.graphml4j.yed.Alignment;
@@ -61,6 +64,67 @@ public class GroupStyles {
 		this.closedStyle.apply(styles.closedStyle);
 	}
 
+	/**
+	 * Tells whether these styles have the same property values as the given
+	 * ones. Unlike {@link #equals(Object)}, which compares the (mutable)
+	 * styles by identity.
+	 *
+	 * @param styles
+	 *            the styles to compare with. Can't be null.
+	 * @return whether all the properties of both styles are equal.
+	 * @see ImmutableGroupStyles
+	 */
+	boolean hasSameValues(GroupStyles styles) {
+		return hasSameValues(openStyle, styles.openStyle) && hasSameValues(closedStyle, styles.closedStyle);
+	}
+
+	/**
+	 * Returns a hash code of the property values, consistent with
+	 * {@link #hasSameValues(GroupStyles)}.
+	 */
+	int valuesHashCode() {
+		return 31 * valuesHashCode(openStyle) + valuesHashCode(closedStyle);
+	}
+
+	private static boolean hasSameValues(GroupStyle style1, GroupStyle style2) {
+		return style1.hasSameValues(style2) && (Float.compare(style1.getInsets(), style2.getInsets()) == 0);
+	}
+
+	private static int valuesHashCode(GroupStyle style) {
+		return 31 * style.valuesHashCode() + Float.floatToIntBits(style.getInsets());
+	}
+
+	/**
+	 * Writes the markup of a group rendered with the open or closed style.
+	 *
+	 * @param writer
+	 *            the stream writer to use. Can't be null.
+	 * @param label
+	 *            the label of the group. Can't be null.
+	 * @param closed
+	 *            whether to write the closed or open style.
+	 * @param x
+	 *            the group's abscissa.
+	 * @param y
+	 *            the group's ordinate.
+	 */
+	void writeTo(XMLStreamWriter writer, String label, boolean closed, float x, float y) throws XMLStreamException {
+		(closed ? closedStyle : openStyle).writeTo(writer, label, closed, x, y);
+	}
+
+	/**
+	 * Compiles the open or closed style into a template.
+	 *
+	 * @param indent
+	 *            whether the markup generated by the template is indented.
+	 * @param closed
+	 *            whether to compile the closed or open style.
+	 * @return a new {@link StyleTemplate}. Never returns null.
+	 */
+	StyleTemplate compile(boolean indent, boolean closed) {
+		return (closed ? closedStyle : openStyle).compile(indent, closed);
+	}
+
 	public GroupStyle getClosedStyle() {
 		// Defensive recopy
 		return new GroupStyle(closedStyle);
@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import java.awt.Color;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.fritaly.graphml4j.yed.Alignment;
+import com.github.fritaly.graphml4j.yed.FontStyle;
+import com.github.fritaly.graphml4j.yed.LineType;
+import com.github.fritaly.graphml4j.yed.Placement;
+import com.github.fritaly.graphml4j.yed.Position;
+import com.github.fritaly.graphml4j.yed.Shape;
+import com.github.fritaly.graphml4j.yed.SizePolicy;
+
+/**
+ * <p>
+ * Immutable {@link GroupStyles}. The instances are interned: 2 equal
+ * immutable styles are always the same instance and can therefore be compared
+ * by identity. Since immutable styles can be shared, a {@link Renderer} can
+ * return the same instance for all the groups rendered alike instead of
+ * allocating styles per group, and the writers don't need to copy them.
+ * </p>
+ * <p>
+ * 2 immutable styles are equal when all their properties are. (Mutable)
+ * {@link GroupStyles} are only equal to themselves, hence never equal to
+ * immutable styles.
+ * </p>
+ * <p>
+ * Immutable styles are created from (mutable) styles with
+ * {@link #of(GroupStyles)} or with a {@link Builder}:
+ *
+ * <pre>
+ * final ImmutableGroupStyles.Builder builder = ImmutableGroupStyles.builder();
+ * builder.setFillColor(Color.RED);
+ *
+ * final ImmutableGroupStyles styles = builder.build();
+ * </pre>
+ *
+ * </p>
+ * <p>
+ * All the setters throw an {@link UnsupportedOperationException}. Use
+ * {@link GroupStyles#GroupStyles(GroupStyles)} to get a mutable copy.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public final class ImmutableGroupStyles extends GroupStyles {
+
+	/**
+	 * The interned styles. The styles no longer used are garbage collected.
+	 */
+	private static final Interner<GroupStyles, ImmutableGroupStyles> POOL = new Interner<GroupStyles, ImmutableGroupStyles>(new Interner.Equivalence<GroupStyles>() {
+		@Override
+		public int hash(GroupStyles value) {
+			return value.valuesHashCode();
+		}
+
+		@Override
+		public boolean equivalent(GroupStyles value1, GroupStyles value2) {
+			return value1.hasSameValues(value2);
+		}
+	});
+
+	/**
+	 * The default group styles.
+	 */
+	public static final ImmutableGroupStyles DEFAULT = of(new GroupStyles());
+
+	/**
+	 * The hash code (computed once).
+	 */
+	private final int hashCode;
+
+	private ImmutableGroupStyles(GroupStyles styles) {
+		super(styles);
+
+		this.hashCode = valuesHashCode();
+	}
+
+	/**
+	 * Returns the immutable styles having the same properties as the given styles.
+	 *
+	 * @param styles
+	 *            the styles to convert. Can't be null.
+	 * @return interned {@link ImmutableGroupStyles}. Never returns null.
+	 */
+	public static ImmutableGroupStyles of(GroupStyles styles) {
+		Validate.notNull(styles, "The given group styles is null");
+
+		if (styles instanceof ImmutableGroupStyles) {
+			return (ImmutableGroupStyles) styles;
+		}
+
+		final ImmutableGroupStyles result = POOL.get(styles);
+
+		return (result != null) ? result : POOL.add(new ImmutableGroupStyles(styles));
+	}
+
+	/**
+	 * Returns a new builder initialized with the default styles.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns a new builder initialized with the given styles.
+	 */
+	public static Builder builder(GroupStyles styles) {
+		return new Builder(styles);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof ImmutableGroupStyles)) {
+			// the mutable styles are only equal to themselves
+			return false;
+		}
+
+		final ImmutableGroupStyles other = (ImmutableGroupStyles) obj;
+
+		// the hash codes are cached, compare them first
+		return (other.hashCode == hashCode) && hasSameValues(other);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	private static UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException("The styles are immutable");
+	}
+
+	@Override
+	public void setClosedStyle(GroupStyle closedStyle) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setOpenStyle(GroupStyle openStyle) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setShape(Shape shape) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setShadowColor(Color shadowColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setInsets(float insets) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setShadowOffsetX(int shadowOffsetX) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setShadowOffsetY(int shadowOffsetY) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setHeight(float height) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setWidth(float width) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFillColor(Color fillColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFillColor2(Color fillColor2) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBorderColor(Color borderColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBorderType(LineType borderType) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setTransparentFill(boolean transparentFill) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBorderWidth(float borderWidth) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setUnderlinedText(boolean underlinedText) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setVisible(boolean visible) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setTextColor(Color textColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFontSize(int fontSize) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFontFamily(String fontFamily) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setTextAlignment(Alignment textAlignment) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFontStyle(FontStyle fontStyle) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBackgroundColor(Color backgroundColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setLineColor(Color lineColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setPlacement(Placement placement) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setPosition(Position position) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBottomInset(int bottomInset) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setLeftInset(int leftInset) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRightInset(int rightInset) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setTopInset(int topInset) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setInsets(int insets) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setSizePolicy(SizePolicy sizePolicy) {
+		throw unsupported();
+	}
+
+	/**
+	 * Builder of {@link ImmutableGroupStyles}. The properties are set with
+	 * the setters of {@link GroupStyles}.
+	 */
+	public static final class Builder extends GroupStyles {
+
+		private Builder() {
+		}
+
+		private Builder(GroupStyles styles) {
+			super(styles);
+		}
+
+		/**
+		 * Returns the (interned) immutable styles with the same properties as
+		 * this builder. The builder can be reused afterwards.
+		 *
+		 * @return an {@link ImmutableGroupStyles}. Never returns null.
+		 */
+		public ImmutableGroupStyles build() {
+			return of(this);
+		}
+	}
+}
@@ -0,0 +1,332 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import java.awt.Color;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.fritaly.graphml4j.yed.Alignment;
+import com.github.fritaly.graphml4j.yed.FontStyle;
+import com.github.fritaly.graphml4j.yed.LineType;
+import com.github.fritaly.graphml4j.yed.Placement;
+import com.github.fritaly.graphml4j.yed.Position;
+import com.github.fritaly.graphml4j.yed.Shape;
+import com.github.fritaly.graphml4j.yed.SizePolicy;
+
+/**
+ * <p>
+ * An immutable {@link NodeStyle}. The instances are interned: 2 equal
+ * immutable styles are always the same instance and can therefore be compared
+ * by identity. Since an immutable style can be shared, a {@link Renderer} can
+ * return the same instance for all the nodes rendered alike instead of
+ * allocating a style per node, and the writers don't need to copy it.
+ * </p>
+ * <p>
+ * 2 immutable styles are equal when all their properties are. A (mutable)
+ * {@link NodeStyle} is only equal to itself, hence never equal to an
+ * immutable style.
+ * </p>
+ * <p>
+ * An immutable style is created from a (mutable) style with
+ * {@link #of(NodeStyle)} or with a {@link Builder}:
+ *
+ * <pre>
+ * final ImmutableNodeStyle.Builder builder = ImmutableNodeStyle.builder();
+ * builder.setFillColor(Color.RED);
+ *
+ * final ImmutableNodeStyle style = builder.build();
+ * </pre>
+ *
+ * </p>
+ * <p>
+ * All the setters throw an {@link UnsupportedOperationException}. Use
+ * {@link NodeStyle#NodeStyle(NodeStyle)} to get a mutable copy.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public final class ImmutableNodeStyle extends NodeStyle {
+
+	/**
+	 * The interned styles. The styles no longer used are garbage collected.
+	 */
+	private static final Interner<NodeStyle, ImmutableNodeStyle> POOL = new Interner<NodeStyle, ImmutableNodeStyle>(new Interner.Equivalence<NodeStyle>() {
+		@Override
+		public int hash(NodeStyle value) {
+			return value.valuesHashCode();
+		}
+
+		@Override
+		public boolean equivalent(NodeStyle value1, NodeStyle value2) {
+			return value1.hasSameValues(value2);
+		}
+	});
+
+	/**
+	 * The default node style.
+	 */
+	public static final ImmutableNodeStyle DEFAULT = of(new NodeStyle());
+
+	/**
+	 * The hash code (computed once).
+	 */
+	private final int hashCode;
+
+	private ImmutableNodeStyle(NodeStyle style) {
+		super(style);
+
+		this.hashCode = valuesHashCode();
+	}
+
+	/**
+	 * Returns the immutable style having the same properties as the given style.
+	 *
+	 * @param style
+	 *            the style to convert. Can't be null.
+	 * @return an interned {@link ImmutableNodeStyle}. Never returns null.
+	 */
+	public static ImmutableNodeStyle of(NodeStyle style) {
+		Validate.notNull(style, "The given style is null");
+
+		if (style instanceof ImmutableNodeStyle) {
+			return (ImmutableNodeStyle) style;
+		}
+
+		final ImmutableNodeStyle result = POOL.get(style);
+
+		return (result != null) ? result : POOL.add(new ImmutableNodeStyle(style));
+	}
+
+	/**
+	 * Returns a new builder initialized with the default style.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns a new builder initialized with the given style.
+	 */
+	public static Builder builder(NodeStyle style) {
+		return new Builder(style);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
+		if (!(obj instanceof ImmutableNodeStyle)) {
+			// the mutable styles are only equal to themselves
+			return false;
+		}
+
+		final ImmutableNodeStyle other = (ImmutableNodeStyle) obj;
+
+		// the hash codes are cached, compare them first
+		return (other.hashCode == hashCode) && hasSameValues(other);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	private static UnsupportedOperationException unsupported() {
+		return new UnsupportedOperationException("The style is immutable");
+	}
+
+	@Override
+	public void setHeight(float height) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setWidth(float width) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBorderWidth(float borderWidth) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFillColor(Color fillColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFillColor2(Color fillColor2) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBorderColor(Color borderColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBorderType(LineType borderType) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setTransparentFill(boolean transparentFill) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setShape(Shape shape) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setShadowColor(Color shadowColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setShadowOffsetX(int shadowOffsetX) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setShadowOffsetY(int shadowOffsetY) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setInsets(int insets) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setPlacement(Placement placement) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setPosition(Position position) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFontSize(int fontSize) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setVisible(boolean visible) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setTextColor(Color textColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBackgroundColor(Color backgroundColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setLineColor(Color lineColor) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setTextAlignment(Alignment textAlignment) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFontStyle(FontStyle fontStyle) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setFontFamily(String fontFamily) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBorderDistance(float borderDistance) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRotationAngle(float rotationAngle) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setUnderlinedText(boolean underlinedText) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setLeftInset(int leftInset) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setRightInset(int rightInset) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setTopInset(int topInset) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setBottomInset(int bottomInset) {
+		throw unsupported();
+	}
+
+	@Override
+	public void setSizePolicy(SizePolicy sizePolicy) {
+		throw unsupported();
+	}
+
+	/**
+	 * Builder of {@link ImmutableNodeStyle}. The properties are set with the
+	 * setters of {@link NodeStyle}.
+	 */
+	public static final class Builder extends NodeStyle {
+
+		private Builder() {
+		}
+
+		private Builder(NodeStyle style) {
+			super(style);
+		}
+
+		/**
+		 * Returns the (interned) immutable style with the same properties as
+		 * this builder. The builder can be reused afterwards.
+		 *
+		 * @return an {@link ImmutableNodeStyle}. Never returns null.
+		 */
+		public ImmutableNodeStyle build() {
+			return of(this);
+		}
+	}
+}
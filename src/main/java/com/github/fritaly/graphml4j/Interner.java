@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * <p>
+ * A pool of canonical (immutable) instances weakly referenced: the instances
+ * no longer used elsewhere are garbage collected and their entries removed
+ * from the pool.
+ * </p>
+ * <p>
+ * Thread-safe. The lookups don't lock since the pool is backed by a
+ * {@link ConcurrentHashMap}. The instances are compared with an
+ * {@link Equivalence} instead of their equals() method. Therefore they can be
+ * looked up with any value having the same properties (for instance a mutable
+ * style, which is only equal to itself).
+ * </p>
+ *
+ * @author francois_ritaly
+ *
+ * @param <S>
+ *            the type of the values compared by the equivalence.
+ * @param <T>
+ *            the type of the interned instances.
+ */
+final class Interner<S, T extends S> {
+
+	/**
+	 * Compares the interned instances and the values looked up.
+	 */
+	interface Equivalence<S> {
+
+		int hash(S value);
+
+		boolean equivalent(S value1, S value2);
+	}
+
+	private final Equivalence<S> equivalence;
+
+	private final ConcurrentMap<Key, Key> entries = new ConcurrentHashMap<Key, Key>();
+
+	/**
+	 * The references cleared by the garbage collector, polled to remove the
+	 * matching entries.
+	 */
+	private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+	Interner(Equivalence<S> equivalence) {
+		Validate.notNull(equivalence, "The given equivalence is null");
+
+		this.equivalence = equivalence;
+	}
+
+	/**
+	 * Returns the interned instance equivalent to the given value.
+	 *
+	 * @param value
+	 *            the value to look for. Can't be null.
+	 * @return the interned instance or null if there's none.
+	 */
+	@SuppressWarnings("unchecked")
+	T get(S value) {
+		expunge();
+
+		final Key key = entries.get(new Key(value));
+
+		return (key != null) ? (T) key.get() : null;
+	}
+
+	/**
+	 * Interns the given instance unless an equivalent one already is.
+	 *
+	 * @param instance
+	 *            the instance to intern. Can't be null and must not be
+	 *            modified once interned.
+	 * @return the interned instance equivalent to the given one. Never returns
+	 *         null.
+	 */
+	@SuppressWarnings("unchecked")
+	T add(T instance) {
+		expunge();
+
+		final Key key = new Key(instance, queue);
+
+		while (true) {
+			final Key previous = entries.putIfAbsent(key, key);
+
+			if (previous == null) {
+				return instance;
+			}
+
+			final Object existing = previous.get();
+
+			if (existing != null) {
+				return (T) existing;
+			}
+
+			// The previous instance was garbage collected in between
+			entries.remove(previous, previous);
+		}
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	private void expunge() {
+		Reference<?> reference;
+
+		while ((reference = queue.poll()) != null) {
+			// A cleared key is only equal to itself
+			entries.remove(reference, reference);
+		}
+	}
+
+	/**
+	 * The key of an entry weakly referencing its instance. The keys used for
+	 * the lookups strongly reference the value looked up.
+	 */
+	private final class Key extends WeakReference<Object> {
+
+		private final int hash;
+
+		private final S value;
+
+		Key(S value) {
+			super(null);
+
+			this.hash = equivalence.hash(value);
+			this.value = value;
+		}
+
+		Key(T instance, ReferenceQueue<Object> queue) {
+			super(instance, queue);
+
+			this.hash = equivalence.hash(instance);
+			this.value = null;
+		}
+
+		@SuppressWarnings("unchecked")
+		private S value() {
+			return (value != null) ? value : (S) get();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof Interner.Key)) {
+				return false;
+			}
+
+			@SuppressWarnings("unchecked")
+			final S other = ((Key) obj).value();
+			final S value = value();
+
+			return (value != null) && (other != null) && equivalence.equivalent(value, other);
+		}
+	}
+}
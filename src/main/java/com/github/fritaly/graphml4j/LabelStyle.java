@@ -17,6 +17,7 @@
 package com.github.fritaly.graphml4j;
 
 import com.github.fritaly.graphml4j.yed.*;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
@@ -32,6 +33,7 @@ import java.awt.*;
  *
  * @author francois_ritaly
  */
+@EqualsAndHashCode
 final class LabelStyle {
 
 	@Getter
@@ -165,8 +167,9 @@ final class LabelStyle {
 		this.fontSize = fontSize;
 	}
 
-	void writeTo(XMLStreamWriter writer, String label) throws XMLStreamException {
+	void writeTo(XMLStreamWriter writer, StyleTemplate.Slots slots) throws XMLStreamException {
 		Validate.notNull(writer, "The given stream writer is null");
+		Validate.notNull(slots, "The given slots are null");
 
 		// y:NodeLabel
 		writer.writeStartElement("y:NodeLabel");
@@ -179,10 +182,10 @@ final class LabelStyle {
 		writer.writeAttribute("modelPosition", position.getValue());
 
 		if (borderDistance != 0.0f) {
-			writer.writeAttribute("borderDistance", String.format("%.1f", borderDistance));
+			Utils.writeAttribute(writer, "borderDistance", borderDistance, 1);
 		}
 		if (rotationAngle != 0.0f) {
-			writer.writeAttribute("rotationAngle", String.format("%.1f", rotationAngle));
+			Utils.writeAttribute(writer, "rotationAngle", rotationAngle, 1);
 		}
 
 		if (backgroundColor != null) {
@@ -209,7 +212,7 @@ final class LabelStyle {
 			writer.writeAttribute("underlinedText", Boolean.toString(underlinedText));
 		}
 
-		writer.writeCharacters(label);
+		slots.writeLabel(writer);
 		writer.writeEndElement(); // </y:NodeLabel>
 	}
 }
@@ -0,0 +1,421 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import org.apache.commons.lang.Validate;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Registry of the node identifiers written by a {@link GraphMLWriter}.
+ * </p>
+ * <p>
+ * The generated identifiers look like "n&lt;seq&gt;" or
+ * "&lt;groupId&gt;::n&lt;seq&gt;" and are therefore entirely determined by
+ * the sequence of the node and by the groups enclosing it. Instead of storing
+ * the strings, the registry stores one bit per sequence and, for each group,
+ * the range of sequences assigned while the group was open.
+ * </p>
+ * <p>
+ * The identifiers supplied by the caller which look like "n&lt;seq&gt;"
+ * (typically derived from the index of a node) are stored as one bit per
+ * sequence in a second bit set since they can be supplied in any order and
+ * inside any group. The other identifiers are stored in a (compact)
+ * open-addressing hash set.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+final class NodeIdRegistry implements NodeRegistry {
+
+	private static final int NO_GROUP = -1;
+
+	/**
+	 * Bit set storing the registered sequences.
+	 */
+	private long[] sequences = new long[16];
+
+	/**
+	 * The highest sequence registered so far (or -1).
+	 */
+	private int lastSequence = -1;
+
+	/**
+	 * The sequences of the groups, sorted in ascending order.
+	 */
+	private int[] groupStarts = new int[16];
+
+	/**
+	 * The (exclusive) upper bound of the sequences assigned inside each group.
+	 * Set to {@link Integer#MAX_VALUE} while the group is open.
+	 */
+	private int[] groupEnds = new int[16];
+
+	/**
+	 * The index of the parent of each group or {@link #NO_GROUP}.
+	 */
+	private int[] groupParents = new int[16];
+
+	private int groupCount;
+
+	/**
+	 * The index of the group currently open or {@link #NO_GROUP}.
+	 */
+	private int currentGroup = NO_GROUP;
+
+	/**
+	 * The number of sequences per segment of {@link #suppliedSegments} (as a
+	 * power of 2).
+	 */
+	private static final int SEGMENT_BITS = 16;
+
+	/**
+	 * Bit sets storing the sequences of the supplied identifiers looking like
+	 * "n&lt;seq&gt;", split into segments allocated on demand since the
+	 * supplied sequences can be sparse (for instance "n2147483647"). Allocated
+	 * when the first one is registered.
+	 */
+	private long[][] suppliedSegments;
+
+	/**
+	 * Open-addressing hash set (with linear probing) storing the identifiers
+	 * which don't follow the pattern of generated identifiers.
+	 */
+	private String[] otherIds;
+
+	private int otherIdCount;
+
+	/**
+	 * Registers the node with the given sequence inside the current group.
+	 *
+	 * @param sequence
+	 *            the node's sequence. Must be greater than the sequences
+	 *            registered so far.
+	 */
+	@Override
+	public void addNode(int sequence) {
+		Validate.isTrue(sequence > lastSequence, "The given sequence must be greater than the last one");
+
+		final int index = sequence >>> 6;
+
+		if (index >= sequences.length) {
+			sequences = Arrays.copyOf(sequences, Math.max(index + 1, sequences.length * 2));
+		}
+
+		sequences[index] |= 1L << sequence;
+
+		this.lastSequence = sequence;
+	}
+
+	/**
+	 * Registers the group with the given sequence inside the current group
+	 * and makes it the current group.
+	 *
+	 * @param sequence
+	 *            the group's sequence. Must be greater than the sequences
+	 *            registered so far.
+	 */
+	@Override
+	public void openGroup(int sequence) {
+		addNode(sequence);
+
+		if (groupCount == groupStarts.length) {
+			final int capacity = groupCount * 2;
+
+			groupStarts = Arrays.copyOf(groupStarts, capacity);
+			groupEnds = Arrays.copyOf(groupEnds, capacity);
+			groupParents = Arrays.copyOf(groupParents, capacity);
+		}
+
+		groupStarts[groupCount] = sequence;
+		groupEnds[groupCount] = Integer.MAX_VALUE;
+		groupParents[groupCount] = currentGroup;
+
+		this.currentGroup = groupCount++;
+	}
+
+	/**
+	 * Closes the current group.
+	 */
+	@Override
+	public void closeGroup() {
+		if (currentGroup == NO_GROUP) {
+			throw new IllegalStateException("No group is currently open");
+		}
+
+		groupEnds[currentGroup] = lastSequence + 1;
+
+		this.currentGroup = groupParents[currentGroup];
+	}
+
+	/**
+	 * Registers the given identifier as is. Used for identifiers which aren't
+	 * generated from a sequence (or which are generated inside a group whose
+	 * identifier isn't).
+	 *
+	 * @param id
+	 *            the identifier to register. Can't be null.
+	 * @return whether the identifier was added (that is, whether it wasn't
+	 *         already registered).
+	 */
+	@Override
+	public boolean add(String id) {
+		Validate.notNull(id, "The given id is null");
+
+		if (isGenerated(id)) {
+			return false;
+		}
+
+		final int sequence = parseSequence(id, 0, id.length());
+
+		if (sequence >= 0) {
+			return addSupplied(sequence);
+		}
+
+		if (otherIds == null) {
+			otherIds = new String[16];
+		} else if ((otherIdCount + 1) * 2 > otherIds.length) {
+			rehash(otherIds.length * 2);
+		}
+
+		final int mask = otherIds.length - 1;
+
+		for (int i = mix(id.hashCode()) & mask; ; i = (i + 1) & mask) {
+			if (otherIds[i] == null) {
+				otherIds[i] = id;
+				otherIdCount++;
+
+				return true;
+			}
+			if (otherIds[i].equals(id)) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Tells whether the given identifier was registered.
+	 *
+	 * @param id
+	 *            the identifier to look for. Can be null.
+	 * @return whether the identifier was registered.
+	 */
+	@Override
+	public boolean contains(String id) {
+		if (id == null) {
+			return false;
+		}
+
+		return isGenerated(id) || isSupplied(id) || containsOther(id);
+	}
+
+	@Override
+	public boolean hasSuppliedIds() {
+		return (suppliedSegments != null) || (otherIds != null);
+	}
+
+	/**
+	 * Returns the number of groups registered.
+	 */
+	int getGroupCount() {
+		return groupCount;
+	}
+
+	private boolean isGenerated(String id) {
+		int end = id.length();
+		int group = NO_GROUP;
+		boolean last = true;
+
+		// Parse the segments from right to left
+		while (true) {
+			final int separator = (end >= 2) ? id.lastIndexOf("::", end - 2) : -1;
+			final int sequence = parseSequence(id, (separator < 0) ? 0 : separator + 2, end);
+
+			if (sequence < 0) {
+				return false;
+			}
+
+			if (last) {
+				// The node itself
+				if (!isRegistered(sequence)) {
+					return false;
+				}
+
+				group = findGroup(sequence);
+				last = false;
+			} else {
+				// One of the groups enclosing the node
+				if ((group == NO_GROUP) || (groupStarts[group] != sequence)) {
+					return false;
+				}
+
+				group = groupParents[group];
+			}
+
+			if (separator < 0) {
+				// All the enclosing groups must have been matched
+				return group == NO_GROUP;
+			}
+
+			end = separator;
+		}
+	}
+
+	private boolean addSupplied(int sequence) {
+		final int index = sequence >>> SEGMENT_BITS;
+
+		if (suppliedSegments == null) {
+			suppliedSegments = new long[index + 1][];
+		} else if (index >= suppliedSegments.length) {
+			suppliedSegments = Arrays.copyOf(suppliedSegments, Math.max(index + 1, suppliedSegments.length * 2));
+		}
+
+		long[] segment = suppliedSegments[index];
+
+		if (segment == null) {
+			segment = suppliedSegments[index] = new long[1 << (SEGMENT_BITS - 6)];
+		}
+
+		final int offset = (sequence & ((1 << SEGMENT_BITS) - 1)) >>> 6;
+		final long mask = 1L << sequence;
+
+		if ((segment[offset] & mask) != 0) {
+			return false;
+		}
+
+		segment[offset] |= mask;
+
+		return true;
+	}
+
+	private boolean isSupplied(String id) {
+		if (suppliedSegments == null) {
+			return false;
+		}
+
+		final int sequence = parseSequence(id, 0, id.length());
+
+		if (sequence < 0) {
+			return false;
+		}
+
+		final int index = sequence >>> SEGMENT_BITS;
+
+		if ((index >= suppliedSegments.length) || (suppliedSegments[index] == null)) {
+			return false;
+		}
+
+		return (suppliedSegments[index][(sequence & ((1 << SEGMENT_BITS) - 1)) >>> 6] & (1L << sequence)) != 0;
+	}
+
+	private boolean isRegistered(int sequence) {
+		final int index = sequence >>> 6;
+
+		return (index < sequences.length) && ((sequences[index] & (1L << sequence)) != 0);
+	}
+
+	/**
+	 * Returns the index of the innermost group containing the node with the
+	 * given sequence or {@link #NO_GROUP}.
+	 */
+	private int findGroup(int sequence) {
+		// Find the last group opened before the node
+		int group = Arrays.binarySearch(groupStarts, 0, groupCount, sequence);
+
+		group = (group >= 0) ? group - 1 : -group - 2;
+
+		// The group ranges are nested, walk up until one contains the node
+		while ((group != NO_GROUP) && (groupEnds[group] <= sequence)) {
+			group = groupParents[group];
+		}
+
+		return group;
+	}
+
+	/**
+	 * Parses the segment "n&lt;seq&gt;" located between the given indices
+	 * and returns the sequence or -1 if the segment isn't a generated one.
+	 */
+	static int parseSequence(String id, int start, int end) {
+		final int length = end - start;
+
+		if ((length < 2) || (length > 11) || (id.charAt(start) != 'n')) {
+			return -1;
+		}
+		if ((length > 2) && (id.charAt(start + 1) == '0')) {
+			// Leading zeros are never generated
+			return -1;
+		}
+
+		long value = 0;
+
+		for (int i = start + 1; i < end; i++) {
+			final char c = id.charAt(i);
+
+			if ((c < '0') || (c > '9')) {
+				return -1;
+			}
+
+			value = value * 10 + (c - '0');
+		}
+
+		return (value > Integer.MAX_VALUE) ? -1 : (int) value;
+	}
+
+	private boolean containsOther(String id) {
+		if (otherIds == null) {
+			return false;
+		}
+
+		final int mask = otherIds.length - 1;
+
+		for (int i = mix(id.hashCode()) & mask; otherIds[i] != null; i = (i + 1) & mask) {
+			if (otherIds[i].equals(id)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void rehash(int capacity) {
+		final String[] previous = otherIds;
+		final int mask = capacity - 1;
+
+		this.otherIds = new String[capacity];
+
+		for (String id : previous) {
+			if (id != null) {
+				int i = mix(id.hashCode()) & mask;
+
+				while (otherIds[i] != null) {
+					i = (i + 1) & mask;
+				}
+
+				otherIds[i] = id;
+			}
+		}
+	}
+
+	private static int mix(int hash) {
+		// Spread the bits since the table size is a power of 2
+		final int h = hash * 0x9E3779B9;
+
+		return h ^ (h >>> 16);
+	}
+}
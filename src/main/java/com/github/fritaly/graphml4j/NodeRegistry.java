@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+/**
+ * Registry of the node identifiers written by a {@link GraphMLWriter}. The
+ * nodes are registered by sequence, their identifier being derived from the
+ * sequence and from the groups enclosing the node.
+ *
+ * @author francois_ritaly
+ */
+interface NodeRegistry {
+
+	/**
+	 * Registers the node with the given sequence inside the current group.
+	 */
+	void addNode(int sequence);
+
+	/**
+	 * Registers the group with the given sequence inside the current group
+	 * and makes it the current group.
+	 */
+	void openGroup(int sequence);
+
+	/**
+	 * Closes the current group.
+	 */
+	void closeGroup();
+
+	/**
+	 * Registers the given identifier as is. Used for identifiers which aren't
+	 * generated from a sequence.
+	 *
+	 * @param id
+	 *            the identifier to register. Can't be null.
+	 * @return whether the identifier was added (that is, whether it wasn't
+	 *         already registered).
+	 */
+	boolean add(String id);
+
+	/**
+	 * Tells whether identifiers were registered with {@link #add(String)}.
+	 * When it's the case, a generated identifier must be checked with
+	 * {@link #contains(String)} before being used.
+	 */
+	boolean hasSuppliedIds();
+
+	/**
+	 * Tells whether the node with the given identifier was registered.
+	 *
+	 * @param id
+	 *            the identifier to look for. Can be null.
+	 * @return whether the identifier was registered.
+	 */
+	boolean contains(String id);
+}
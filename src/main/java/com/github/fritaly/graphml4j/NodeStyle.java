@@ -53,9 +53,55 @@ public class NodeStyle {
 		this.shapeStyle.apply(style.shapeStyle);
 	}
 
+	/**
+	 * Tells whether this style has the same property values as the given one.
+	 * Unlike {@link #equals(Object)}, which compares the (mutable) styles by
+	 * identity.
+	 *
+	 * @param style
+	 *            the style to compare with. Can't be null.
+	 * @return whether all the properties of both styles are equal.
+	 * @see ImmutableNodeStyle
+	 */
+	boolean hasSameValues(NodeStyle style) {
+		return generalStyle.equals(style.generalStyle) && shapeStyle.equals(style.shapeStyle)
+				&& labelStyle.equals(style.labelStyle);
+	}
+
+	/**
+	 * Returns a hash code of the property values, consistent with
+	 * {@link #hasSameValues(NodeStyle)}.
+	 */
+	int valuesHashCode() {
+		return 31 * (31 * generalStyle.hashCode() + shapeStyle.hashCode()) + labelStyle.hashCode();
+	}
+
 	void writeTo(XMLStreamWriter writer, String label, float x, float y) throws XMLStreamException {
-		generalStyle.writeTo(writer, x, y);
-		labelStyle.writeTo(writer, label);
+		writeTo(writer, StyleTemplate.values(label, x, y));
+	}
+
+	void writeTo(XMLStreamWriter writer, StyleTemplate.Slots slots) throws XMLStreamException {
+		generalStyle.writeTo(writer, slots);
+		labelStyle.writeTo(writer, slots);
 		shapeStyle.writeTo(writer);
 	}
+
+	/**
+	 * Compiles this style into a template.
+	 *
+	 * @param indent
+	 *            whether the markup generated by the template is indented.
+	 * @return a new {@link StyleTemplate}. Never returns null.
+	 */
+	StyleTemplate compile(boolean indent) {
+		// The template is compiled lazily, work on a snapshot of this style
+		final NodeStyle style = new NodeStyle(this);
+
+		return new StyleTemplate(new StyleTemplate.Source() {
+			@Override
+			public void writeTo(XMLStreamWriter writer, StyleTemplate.Slots slots) throws XMLStreamException {
+				style.writeTo(writer, slots);
+			}
+		}, indent);
+	}
 }
\ No newline at end of file
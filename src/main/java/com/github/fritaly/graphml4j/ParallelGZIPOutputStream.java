@@ -0,0 +1,561 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import org.apache.commons.lang.Validate;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * An {@link OutputStream} compressing the data written into a (single) GZIP
+ * stream using several threads. The data is split into blocks compressed
+ * independently on a pool of threads (like pigz does). Each block is primed
+ * with the last 32 KB of the previous block so that the compression ratio is
+ * close to the one of a {@link java.util.zip.GZIPOutputStream}. The thread
+ * writing into the stream only fills the blocks and writes the compressed
+ * ones in order.
+ * </p>
+ * <p>
+ * This is handy for generating ".graphmlz" files which can be opened by yEd:
+ * </p>
+ *
+ * <pre>
+ * final GraphMLWriter writer = new GraphMLWriter(new ParallelGZIPOutputStream(new FileOutputStream(file)));
+ * </pre>
+ * <p>
+ * Note: The data is compressed by blocks, hence calling {@link #flush()} only
+ * flushes the blocks already completed. The stream must be closed to write
+ * the last block and the GZIP trailer.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+	/**
+	 * The default size of the blocks (in bytes).
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+	/**
+	 * The size of the dictionary used by the deflate algorithm.
+	 */
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	private static final byte[] HEADER = {
+		0x1f, (byte) 0x8b, // Magic number
+		Deflater.DEFLATED, // Compression method
+		0, // Flags
+		0, 0, 0, 0, // Modification time
+		0, // Extra flags
+		(byte) 0xff // Operating system (unknown)
+	};
+
+	private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
+
+	private final OutputStream out;
+
+	private final ExecutorService executor;
+
+	/**
+	 * Whether the executor was created by this stream (and must therefore be
+	 * shut down when closing the stream).
+	 */
+	private final boolean ownExecutor;
+
+	private final int blockSize;
+
+	private final int level;
+
+	/**
+	 * The maximum number of blocks being compressed at the same time.
+	 */
+	private final int maxPendingBlocks;
+
+	/**
+	 * The blocks submitted for compression, in order.
+	 */
+	private final ArrayDeque<Future<Block>> pendingBlocks = new ArrayDeque<Future<Block>>();
+
+	/**
+	 * The blocks available for reuse.
+	 */
+	private final ArrayDeque<Block> freeBlocks = new ArrayDeque<Block>();
+
+	/**
+	 * All the blocks allocated (free, pending or being filled) whose
+	 * deflaters must be ended when closing the stream.
+	 */
+	private final List<Block> allocatedBlocks = new ArrayList<Block>();
+
+	/**
+	 * The block being filled.
+	 */
+	private Block current;
+
+	/**
+	 * The CRC-32 of the uncompressed data written so far.
+	 */
+	private long crc;
+
+	/**
+	 * The number of uncompressed bytes written so far.
+	 */
+	private long size;
+
+	private boolean closed;
+
+	/**
+	 * Creates a new stream compressing the data with as many threads as
+	 * available processors.
+	 *
+	 * @param out
+	 *            the stream where the compressed data will be written. Can't
+	 *            be null.
+	 * @throws IOException
+	 *             if an error occurs when writing the GZIP header.
+	 */
+	public ParallelGZIPOutputStream(OutputStream out) throws IOException {
+		this(out, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new stream compressing the data with the given number of
+	 * threads.
+	 *
+	 * @param out
+	 *            the stream where the compressed data will be written. Can't
+	 *            be null.
+	 * @param threads
+	 *            the number of compression threads. Must be positive.
+	 * @throws IOException
+	 *             if an error occurs when writing the GZIP header.
+	 */
+	public ParallelGZIPOutputStream(OutputStream out, int threads) throws IOException {
+		this(out, threads, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a new stream compressing the data with the given number of
+	 * threads.
+	 *
+	 * @param out
+	 *            the stream where the compressed data will be written. Can't
+	 *            be null.
+	 * @param threads
+	 *            the number of compression threads. Must be positive.
+	 * @param blockSize
+	 *            the size of the blocks compressed independently. Must be
+	 *            greater than or equal to 32 KB.
+	 * @throws IOException
+	 *             if an error occurs when writing the GZIP header.
+	 */
+	public ParallelGZIPOutputStream(OutputStream out, int threads, int blockSize) throws IOException {
+		this(out, createExecutor(threads), true, threads, blockSize, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a new stream compressing the data with the given executor. The
+	 * executor isn't shut down when closing the stream.
+	 *
+	 * @param out
+	 *            the stream where the compressed data will be written. Can't
+	 *            be null.
+	 * @param executor
+	 *            the executor compressing the blocks. Can't be null.
+	 * @param threads
+	 *            the number of threads of the executor. Used for bounding the
+	 *            number of blocks pending. Must be positive.
+	 * @param level
+	 *            the compression level (see {@link Deflater#setLevel(int)}).
+	 * @throws IOException
+	 *             if an error occurs when writing the GZIP header.
+	 */
+	public ParallelGZIPOutputStream(OutputStream out, ExecutorService executor, int threads, int level)
+			throws IOException {
+
+		this(out, executor, false, threads, DEFAULT_BLOCK_SIZE, level);
+	}
+
+	private ParallelGZIPOutputStream(OutputStream out, ExecutorService executor, boolean ownExecutor, int threads,
+			int blockSize, int level) throws IOException {
+
+		Validate.notNull(out, "The given output stream is null");
+		Validate.notNull(executor, "The given executor is null");
+		Validate.isTrue(threads > 0, "The given number of threads must be positive");
+		Validate.isTrue(blockSize >= DICTIONARY_SIZE, "The given block size must be greater than or equal to 32 KB");
+		Validate.isTrue((level == Deflater.DEFAULT_COMPRESSION) || ((level >= 0) && (level <= 9)),
+				"The given compression level is invalid");
+
+		this.out = out;
+		this.executor = executor;
+		this.ownExecutor = ownExecutor;
+		this.blockSize = blockSize;
+		this.level = level;
+
+		// Keep all the threads busy while the caller fills the next block
+		this.maxPendingBlocks = threads * 2;
+		this.current = nextBlock();
+
+		out.write(HEADER);
+	}
+
+	private static ExecutorService createExecutor(int threads) {
+		Validate.isTrue(threads > 0, "The given number of threads must be positive");
+
+		final int pool = POOL_SEQUENCE.incrementAndGet();
+
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger sequence = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				final Thread thread = new Thread(runnable,
+						"graphml-gzip-" + pool + "-" + sequence.incrementAndGet());
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+
+		if (current.length == blockSize) {
+			submit(false);
+		}
+
+		current.input[current.length++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+
+		if ((off < 0) || (len < 0) || (off > b.length - len)) {
+			throw new IndexOutOfBoundsException();
+		}
+
+		while (len > 0) {
+			if (current.length == blockSize) {
+				submit(false);
+			}
+
+			final int count = Math.min(len, blockSize - current.length);
+
+			System.arraycopy(b, off, current.input, current.length, count);
+
+			current.length += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Writes the blocks already submitted for compression and flushes the
+	 * underlying stream. The data of the block being filled isn't flushed.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+
+		while (!pendingBlocks.isEmpty()) {
+			writeNextBlock();
+		}
+
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		this.closed = true;
+
+		try {
+			submit(true);
+
+			while (!pendingBlocks.isEmpty()) {
+				writeNextBlock();
+			}
+
+			writeInt((int) crc);
+			writeInt((int) size);
+
+			out.flush();
+		} finally {
+			for (Future<Block> future : pendingBlocks) {
+				future.cancel(true);
+			}
+
+			if (ownExecutor) {
+				executor.shutdownNow();
+			}
+
+			// Release the native resources of the deflaters, including the
+			// ones of the blocks pending when an error occurred. A deflater
+			// still used by a cancelled task is safely ended (the deflater
+			// is synchronized) and the task then fails silently
+			for (Block block : allocatedBlocks) {
+				block.deflater.end();
+			}
+
+			out.close();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("The stream is closed");
+		}
+	}
+
+	private void submit(boolean last) throws IOException {
+		final Block block = current;
+
+		block.last = last;
+
+		pendingBlocks.add(executor.submit(block));
+
+		if (!last) {
+			// Prime the next block with the end of this one
+			this.current = nextBlock();
+
+			final int length = Math.min(DICTIONARY_SIZE, block.length);
+
+			System.arraycopy(block.input, block.length - length, current.dictionary, 0, length);
+
+			current.dictionaryLength = length;
+		}
+	}
+
+	private Block nextBlock() throws IOException {
+		while (pendingBlocks.size() >= maxPendingBlocks) {
+			// Wait for the oldest block to be compressed
+			writeNextBlock();
+		}
+
+		final Block block;
+
+		if (!freeBlocks.isEmpty()) {
+			block = freeBlocks.poll();
+		} else {
+			block = new Block(blockSize, level);
+
+			allocatedBlocks.add(block);
+		}
+
+		block.length = 0;
+		block.dictionaryLength = 0;
+
+		return block;
+	}
+
+	private void writeNextBlock() throws IOException {
+		final Block block;
+
+		try {
+			block = pendingBlocks.peek().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("Interrupted while compressing the data");
+		} catch (ExecutionException e) {
+			throw new IOException("Error when compressing the data", e.getCause());
+		}
+
+		pendingBlocks.poll();
+
+		out.write(block.output, 0, block.outputLength);
+
+		this.crc = crc32Combine(crc, block.crc, block.length);
+		this.size += block.length;
+
+		freeBlocks.add(block);
+	}
+
+	private void writeInt(int value) throws IOException {
+		// Little endian
+		out.write(value & 0xff);
+		out.write((value >>> 8) & 0xff);
+		out.write((value >>> 16) & 0xff);
+		out.write((value >>> 24) & 0xff);
+	}
+
+	/**
+	 * Returns the CRC-32 of the concatenation of 2 sequences of bytes given
+	 * their CRC-32 and the length of the second sequence. Port of the
+	 * function crc32_combine() from zlib.
+	 */
+	static long crc32Combine(long crc1, long crc2, long length2) {
+		if (length2 <= 0) {
+			return crc1;
+		}
+
+		final long[] even = new long[32];
+		final long[] odd = new long[32];
+
+		// The operator for one zero bit
+		odd[0] = 0xedb88320L;
+
+		long row = 1;
+
+		for (int n = 1; n < 32; n++) {
+			odd[n] = row;
+			row <<= 1;
+		}
+
+		// The operator for 2 zero bits, then 4 zero bits
+		gf2MatrixSquare(even, odd);
+		gf2MatrixSquare(odd, even);
+
+		// Apply length2 zeros to crc1 (the first square puts the operator for
+		// one zero byte, 8 zero bits, in even)
+		do {
+			gf2MatrixSquare(even, odd);
+
+			if ((length2 & 1) != 0) {
+				crc1 = gf2MatrixTimes(even, crc1);
+			}
+
+			length2 >>>= 1;
+
+			if (length2 == 0) {
+				break;
+			}
+
+			gf2MatrixSquare(odd, even);
+
+			if ((length2 & 1) != 0) {
+				crc1 = gf2MatrixTimes(odd, crc1);
+			}
+
+			length2 >>>= 1;
+		} while (length2 != 0);
+
+		return crc1 ^ crc2;
+	}
+
+	private static long gf2MatrixTimes(long[] matrix, long vector) {
+		long sum = 0;
+
+		for (int i = 0; vector != 0; i++, vector >>>= 1) {
+			if ((vector & 1) != 0) {
+				sum ^= matrix[i];
+			}
+		}
+
+		return sum;
+	}
+
+	private static void gf2MatrixSquare(long[] square, long[] matrix) {
+		for (int n = 0; n < 32; n++) {
+			square[n] = gf2MatrixTimes(matrix, matrix[n]);
+		}
+	}
+
+	/**
+	 * A block of data compressed independently. The blocks are reused once
+	 * written.
+	 */
+	private static final class Block implements Callable<Block> {
+
+		final byte[] input;
+
+		int length;
+
+		final byte[] dictionary = new byte[DICTIONARY_SIZE];
+
+		int dictionaryLength;
+
+		boolean last;
+
+		final Deflater deflater;
+
+		final CRC32 checksum = new CRC32();
+
+		byte[] output;
+
+		int outputLength;
+
+		long crc;
+
+		Block(int size, int level) {
+			this.input = new byte[size];
+			this.output = new byte[size + (size >> 4) + 64];
+			this.deflater = new Deflater(level, true);
+		}
+
+		@Override
+		public Block call() {
+			checksum.reset();
+			checksum.update(input, 0, length);
+
+			this.crc = checksum.getValue();
+
+			deflater.reset();
+
+			if (dictionaryLength > 0) {
+				deflater.setDictionary(dictionary, 0, dictionaryLength);
+			}
+
+			deflater.setInput(input, 0, length);
+
+			if (last) {
+				deflater.finish();
+			}
+
+			// Byte-align the end of the block with a sync flush so that the
+			// next block can be appended
+			final int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+
+			this.outputLength = 0;
+
+			while (true) {
+				if (outputLength == output.length) {
+					output = Arrays.copyOf(output, output.length * 2);
+				}
+
+				outputLength += deflater.deflate(output, outputLength, output.length - outputLength, flush);
+
+				if (last ? deflater.finished() : (outputLength < output.length)) {
+					return this;
+				}
+			}
+		}
+	}
+}
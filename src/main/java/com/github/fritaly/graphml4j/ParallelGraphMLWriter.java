@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * <p>
+ * A writer generating a GraphML file from fragments written in parallel and
+ * assembled in a given order.
+ * </p>
+ * <p>
+ * Each {@link Fragment} has its own {@link GraphMLWriter} writing into a
+ * buffer and generates its identifiers from the sequences it was created
+ * with. When the fragments are appended in the order of their sequences, the
+ * document is identical to the one generated by a single
+ * {@link GraphMLWriter}. Unlike {@link ConcurrentGraphMLWriter}, the output is
+ * therefore deterministic but the caller must know beforehand the number of
+ * nodes and edges written by each fragment.
+ * </p>
+ * <p>
+ * An edge can reference the nodes written by any fragment created before by
+ * this writer, provided that they have been written before the edge (that is,
+ * the edges should be written once all the nodes have been written).
+ * </p>
+ * <p>
+ * The identifiers supplied by the caller are registered in a registry shared
+ * by all the fragments: a fragment generating an identifier already supplied
+ * (by any fragment) skips the matching sequence, which shifts the identifiers
+ * generated afterwards. A supplied identifier and the same identifier
+ * generated at the same time by another fragment aren't detected, hence a
+ * fragment shouldn't supply identifiers looking like "n&lt;seq&gt;" while
+ * other fragments generate theirs.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public final class ParallelGraphMLWriter implements Closeable {
+
+	/**
+	 * The writer generating the document.
+	 */
+	private final GraphMLWriter writer;
+
+	private final boolean indent;
+
+	private final ConcurrentNodeIdRegistry nodeIds = new ConcurrentNodeIdRegistry();
+
+	/**
+	 * Creates a new instance of {@link ParallelGraphMLWriter} encoding the
+	 * (indented) GraphML markup language in UTF-8 into the given stream.
+	 *
+	 * @param stream
+	 *            an {@link OutputStream} where the GraphML markup language will
+	 *            be written. Can't be null.
+	 */
+	public ParallelGraphMLWriter(OutputStream stream) {
+		this(stream, true);
+	}
+
+	/**
+	 * Creates a new instance of {@link ParallelGraphMLWriter} encoding the
+	 * GraphML markup language in UTF-8 into the given stream.
+	 *
+	 * @param stream
+	 *            an {@link OutputStream} where the GraphML markup language will
+	 *            be written. Can't be null.
+	 * @param indent
+	 *            whether the generated markup should be indented.
+	 */
+	public ParallelGraphMLWriter(OutputStream stream, boolean indent) {
+		this.writer = new GraphMLWriter(stream, indent);
+		this.indent = indent;
+	}
+
+	/**
+	 * Opens the graph.
+	 *
+	 * @throws GraphMLException
+	 *             if an error occurs when opening the graph.
+	 */
+	public synchronized void graph() throws GraphMLException {
+		writer.graph();
+	}
+
+	/**
+	 * Creates a new fragment. Can be called from any thread.
+	 *
+	 * @param firstNodeSequence
+	 *            the sequence of the first node (or group) written by the
+	 *            fragment. The first node of the graph has the sequence 0.
+	 * @param firstEdgeSequence
+	 *            the sequence of the first edge written by the fragment. The
+	 *            first edge of the graph has the sequence 0.
+	 * @return a new instance of {@link Fragment}. Never returns null.
+	 */
+	public Fragment fragment(int firstNodeSequence, int firstEdgeSequence) {
+		Validate.isTrue(firstNodeSequence >= 0, "The given node sequence can't be negative");
+		Validate.isTrue(firstEdgeSequence >= 0, "The given edge sequence can't be negative");
+
+		return new Fragment(firstNodeSequence, firstEdgeSequence);
+	}
+
+	/**
+	 * Writes the markup of the given fragment into the document and releases
+	 * its buffer. All the groups of the fragment must have been closed.
+	 *
+	 * @param fragment
+	 *            the fragment to append. Can't be null.
+	 * @throws GraphMLException
+	 *             if an error occurs when writing the fragment.
+	 */
+	public synchronized void append(Fragment fragment) throws GraphMLException {
+		Validate.notNull(fragment, "The given fragment is null");
+
+		if (fragment.writer.insideGroup()) {
+			throw new IllegalStateException("The fragment is inside a group. Close the group(s) first");
+		}
+
+		// Push the markup buffered by the fragment writer into the buffer
+		fragment.writer.flushBuffer();
+
+		if (fragment.buffer.size() > 0) {
+			fragment.buffer.writeTo(writer);
+		}
+
+		fragment.buffer.reset();
+	}
+
+	/**
+	 * Closes the graph.
+	 *
+	 * @throws GraphMLException
+	 *             if an error occurs when closing the graph.
+	 */
+	public synchronized void closeGraph() throws GraphMLException {
+		writer.closeGraph();
+	}
+
+	/**
+	 * Closes the writer and the underlying stream.
+	 */
+	@Override
+	public synchronized void close() {
+		writer.close();
+	}
+
+	/**
+	 * A part of the graph written by a thread. Not thread-safe.
+	 */
+	public final class Fragment {
+
+		private final FragmentBuffer buffer = new FragmentBuffer(64 * 1024);
+
+		private final GraphMLWriter writer;
+
+		private Fragment(int firstNodeSequence, int firstEdgeSequence) {
+			this.writer = new GraphMLWriter(buffer, indent, new AtomicInteger(firstNodeSequence), new AtomicInteger(
+					firstEdgeSequence), nodeIds.newScope());
+		}
+
+		/**
+		 * Returns the writer generating the markup of this fragment. The
+		 * writer is positioned inside the graph and must not be opened or
+		 * closed.
+		 *
+		 * @return a {@link GraphMLWriter}. Never returns null.
+		 */
+		public GraphMLWriter getWriter() {
+			return writer;
+		}
+	}
+}
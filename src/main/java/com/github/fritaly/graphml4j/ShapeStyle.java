@@ -17,6 +17,7 @@
 package com.github.fritaly.graphml4j;
 
 import com.github.fritaly.graphml4j.yed.Shape;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
@@ -32,6 +33,7 @@ import java.awt.*;
  *
  * @author francois_ritaly
  */
+@EqualsAndHashCode
 final class ShapeStyle {
 
 	@Getter
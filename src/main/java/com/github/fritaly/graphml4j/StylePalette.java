@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * The styles recently used by a {@link GraphMLWriter} along with the
+ * templates compiled from them. Switching back to a style of the palette
+ * reuses its snapshot and its templates instead of copying the style and
+ * compiling new templates.
+ * </p>
+ * <p>
+ * The palette has a fixed capacity: the styles least recently used are
+ * evicted once it's full. Not thread-safe.
+ * </p>
+ *
+ * @author francois_ritaly
+ *
+ * @param <S>
+ *            the type of style.
+ */
+final class StylePalette<S> {
+
+	/**
+	 * The default number of styles retained by a palette. Most graphs use a
+	 * handful of styles.
+	 */
+	static final int DEFAULT_CAPACITY = 16;
+
+	private final Map<S, Entry<S>> entries;
+
+	StylePalette() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	StylePalette(final int capacity) {
+		this.entries = new LinkedHashMap<S, StylePalette.Entry<S>>(capacity * 2, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<S, StylePalette.Entry<S>> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the entry of the style equal to the given one.
+	 *
+	 * @param style
+	 *            the style to look for. Can't be null.
+	 * @return an {@link Entry} or null if the style isn't in the palette.
+	 */
+	Entry<S> get(S style) {
+		return entries.get(style);
+	}
+
+	/**
+	 * Adds the given style to the palette.
+	 *
+	 * @param snapshot
+	 *            the style to add. Must not be modified once added.
+	 * @return the new {@link Entry}. Never returns null.
+	 */
+	Entry<S> add(S snapshot) {
+		final Entry<S> entry = new Entry<S>(snapshot);
+
+		entries.put(snapshot, entry);
+
+		return entry;
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	/**
+	 * A style of the palette and its templates (compiled lazily).
+	 */
+	static final class Entry<S> {
+
+		/**
+		 * The snapshot of the style. Never modified.
+		 */
+		final S style;
+
+		/**
+		 * The template compiled from the style (from the open style for a
+		 * group).
+		 */
+		StyleTemplate template;
+
+		/**
+		 * The template compiled from the closed style of a group.
+		 */
+		StyleTemplate closedTemplate;
+
+		Entry(S style) {
+			this.style = style;
+		}
+	}
+}
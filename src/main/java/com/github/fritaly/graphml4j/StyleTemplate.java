@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import org.apache.commons.lang.Validate;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * A style serialized once into UTF-8 encoded chunks of markup. The chunks are
+ * separated by slots where the variable parts of the markup (the location and
+ * the label of a node) are written. Writing a node then boils down to copying
+ * the chunks and filling the slots.
+ * </p>
+ * <p>
+ * Since the markup is indented, the chunks depend on the depth where the
+ * template is written and are therefore compiled (lazily) for each depth.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+final class StyleTemplate {
+
+	/**
+	 * Enumeration of the possible slots inside a template.
+	 */
+	enum Slot {
+		/** The "x" and "y" attributes of the y:Geometry element */
+		LOCATION,
+
+		/** The text of the y:NodeLabel element */
+		LABEL;
+	}
+
+	/**
+	 * The variable parts of the markup written by a style.
+	 */
+	interface Slots {
+
+		/**
+		 * Writes the attributes "x" and "y" on the current (open) element.
+		 */
+		void writeLocation(XMLStreamWriter writer) throws XMLStreamException;
+
+		/**
+		 * Writes the label as the text of the current element.
+		 */
+		void writeLabel(XMLStreamWriter writer) throws XMLStreamException;
+	}
+
+	/**
+	 * The source of a template, that is, the object writing the markup of a
+	 * style.
+	 */
+	interface Source {
+
+		void writeTo(XMLStreamWriter writer, Slots slots) throws XMLStreamException;
+	}
+
+	private final Source source;
+
+	private final boolean indent;
+
+	/**
+	 * The slots in the order they appear in the markup. Computed when
+	 * compiling the template for the first time.
+	 */
+	private Slot[] slots;
+
+	/**
+	 * The compiled chunks per depth. For a given depth, there's always one
+	 * chunk more than slots.
+	 */
+	private byte[][][] chunks = new byte[16][][];
+
+	StyleTemplate(Source source, boolean indent) {
+		Validate.notNull(source, "The given source is null");
+
+		this.source = source;
+		this.indent = indent;
+	}
+
+	/**
+	 * Returns the chunks of markup to be written at the given depth.
+	 *
+	 * @param depth
+	 *            the number of elements open when writing the template.
+	 * @return an array of byte arrays. Never returns null.
+	 */
+	byte[][] getChunks(int depth) throws XMLStreamException {
+		if (depth >= chunks.length) {
+			chunks = Arrays.copyOf(chunks, Math.max(depth + 1, chunks.length * 2));
+		}
+		if (chunks[depth] == null) {
+			compile(depth);
+		}
+
+		return chunks[depth];
+	}
+
+	Slot[] getSlots() throws XMLStreamException {
+		if (slots == null) {
+			compile(0);
+		}
+
+		return slots;
+	}
+
+	private void compile(int depth) throws XMLStreamException {
+		final Recorder recorder = new Recorder(indent, depth);
+
+		source.writeTo(recorder.writer, recorder);
+
+		recorder.cut(null);
+
+		this.chunks[depth] = recorder.chunks.toArray(new byte[recorder.chunks.size()][]);
+		this.slots = recorder.slots.toArray(new Slot[recorder.slots.size()]);
+	}
+
+	/**
+	 * Returns the slots filled with the given values.
+	 *
+	 * @param label
+	 *            the label to write. Can't be null.
+	 * @param x
+	 *            the node's abscissa.
+	 * @param y
+	 *            the node's ordinate.
+	 * @return a new instance of {@link Slots}. Never returns null.
+	 */
+	static Slots values(final String label, final float x, final float y) {
+		Validate.notNull(label, "The given label is null");
+
+		return new Slots() {
+			@Override
+			public void writeLocation(XMLStreamWriter writer) throws XMLStreamException {
+				Utils.writeAttribute(writer, "x", x, 1);
+				Utils.writeAttribute(writer, "y", y, 1);
+			}
+
+			@Override
+			public void writeLabel(XMLStreamWriter writer) throws XMLStreamException {
+				writer.writeCharacters(label);
+			}
+		};
+	}
+
+	/**
+	 * Records the markup written by a style and splits it into chunks when
+	 * reaching a slot.
+	 */
+	private static final class Recorder implements Slots {
+
+		private final ByteArrayOutputStream stream = new ByteArrayOutputStream(1024);
+
+		private final Utf8XMLStreamWriter writer;
+
+		private final List<byte[]> chunks = new ArrayList<byte[]>();
+
+		private final List<Slot> slots = new ArrayList<Slot>();
+
+		Recorder(boolean indent, int depth) {
+			this.writer = new Utf8XMLStreamWriter(stream, indent);
+			this.writer.enter(depth);
+		}
+
+		void cut(Slot slot) throws XMLStreamException {
+			if (slot == null) {
+				// The end of the template, close the last tag (if any)
+				writer.closeStartTag();
+			}
+
+			writer.flushBuffer();
+
+			chunks.add(stream.toByteArray());
+
+			stream.reset();
+
+			if (slot != null) {
+				slots.add(slot);
+			}
+		}
+
+		@Override
+		public void writeLocation(XMLStreamWriter writer) throws XMLStreamException {
+			// The attributes are written on the element still open
+			cut(Slot.LOCATION);
+		}
+
+		@Override
+		public void writeLabel(XMLStreamWriter writer) throws XMLStreamException {
+			this.writer.closeStartTag();
+
+			cut(Slot.LABEL);
+
+			// Record that some data was written (this impacts the indentation)
+			this.writer.writeCharacters("");
+		}
+	}
+}
@@ -0,0 +1,850 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j;
+
+import org.apache.commons.lang.Validate;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * <p>
+ * A non-repairing {@link XMLStreamWriter} which encodes the XML markup in UTF-8
+ * directly into a reusable byte buffer and flushes it to an
+ * {@link OutputStream} when full.
+ * </p>
+ * <p>
+ * When indentation is enabled, the generated markup is byte for byte the same
+ * as the one generated by the JDK stream writer wrapped into an
+ * {@link javanet.staxutils.IndentingXMLStreamWriter} (the indentation logic
+ * has been ported from the latter).
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+final class Utf8XMLStreamWriter implements XMLStreamWriter {
+
+	/** Flag set when some markup has been written at a given depth */
+	private static final int WROTE_MARKUP = 1;
+
+	/** Flag set when some data (text) has been written at a given depth */
+	private static final int WROTE_DATA = 2;
+
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private static final byte[] AMP = ascii("&amp;"), LT = ascii("&lt;"), GT = ascii("&gt;"), QUOT = ascii("&quot;");
+
+	private final OutputStream out;
+
+	private final boolean indent;
+
+	private final byte[] buffer;
+
+	private int position;
+
+	/**
+	 * Stack storing the names of the elements currently open.
+	 */
+	private String[] elements = new String[16];
+
+	/**
+	 * The number of elements currently open.
+	 */
+	private int depth;
+
+	/**
+	 * Stack storing what has been written (markup and/or data) for each level
+	 * of depth. Used for indenting the markup.
+	 */
+	private int[] written = new int[16];
+
+	/**
+	 * Whether a start tag (or empty element) is open, that is, whether
+	 * attributes can still be written.
+	 */
+	private boolean startTagOpen;
+
+	/**
+	 * Whether the open tag is an empty element.
+	 */
+	private boolean emptyElement;
+
+	private final Map<String, String> prefixes = new HashMap<String, String>();
+
+	private NamespaceContext namespaceContext;
+
+	/**
+	 * Creates a new instance of {@link Utf8XMLStreamWriter}.
+	 *
+	 * @param out
+	 *            the stream where the UTF-8 encoded markup is written. Can't be
+	 *            null.
+	 * @param indent
+	 *            whether the generated markup should be indented.
+	 */
+	Utf8XMLStreamWriter(OutputStream out, boolean indent) {
+		this(out, indent, DEFAULT_BUFFER_SIZE);
+	}
+
+	Utf8XMLStreamWriter(OutputStream out, boolean indent, int bufferSize) {
+		Validate.notNull(out, "The given output stream is null");
+		Validate.isTrue(bufferSize >= 16, String.format("The given buffer size (%d) must be greater than or equal to 16", bufferSize));
+
+		this.out = out;
+		this.indent = indent;
+		this.buffer = new byte[bufferSize];
+	}
+
+	boolean isIndenting() {
+		return indent;
+	}
+
+	/**
+	 * Positions the writer as if the given number of elements had just been
+	 * opened. Used for recording templates meant to be written at this depth.
+	 *
+	 * @param depth
+	 *            the number of elements open.
+	 */
+	void enter(int depth) {
+		Validate.isTrue(this.depth == 0, "The writer already contains some elements");
+		Validate.isTrue(depth >= 0, String.format("The given depth (%d) must be positive or zero", depth));
+
+		if (depth + 1 >= written.length) {
+			written = Arrays.copyOf(written, depth + 16);
+			elements = Arrays.copyOf(elements, depth + 16);
+		}
+
+		this.depth = depth;
+		this.written[depth] = 0;
+	}
+
+	/**
+	 * Writes the given template at the current depth, filling its slots with
+	 * the given values.
+	 *
+	 * @param template
+	 *            the template to write. Can't be null.
+	 * @param label
+	 *            the label written in the {@link StyleTemplate.Slot#LABEL}
+	 *            slot (if any).
+	 * @param x
+	 *            the abscissa written in the
+	 *            {@link StyleTemplate.Slot#LOCATION} slot (if any).
+	 * @param y
+	 *            the ordinate written in the
+	 *            {@link StyleTemplate.Slot#LOCATION} slot (if any).
+	 */
+	void writeTemplate(StyleTemplate template, String label, float x, float y) throws XMLStreamException {
+		final byte[][] chunks = template.getChunks(depth);
+		final StyleTemplate.Slot[] slots = template.getSlots();
+
+		closeStartTag();
+
+		for (int i = 0; i < chunks.length; i++) {
+			writeRaw(chunks[i]);
+
+			if (i < slots.length) {
+				switch (slots[i]) {
+				case LOCATION:
+					writeAttributeValue("x", x, 1);
+					writeAttributeValue("y", y, 1);
+					break;
+				case LABEL:
+					writeEncoded(label, 0, label.length(), true, false);
+					break;
+				default:
+					throw new UnsupportedOperationException("Unsupported slot: " + slots[i]);
+				}
+			}
+		}
+
+		// The template always contains some markup
+		afterMarkup();
+	}
+
+	/**
+	 * Writes the given markup, generated by another writer positioned at the
+	 * same depth (see {@link #enter(int)}), as the next children of the
+	 * current element.
+	 *
+	 * @param bytes
+	 *            an array containing the UTF-8 encoded markup to write.
+	 * @param offset
+	 *            the offset of the markup in the array.
+	 * @param length
+	 *            the length of the markup.
+	 */
+	void writeFragment(byte[] bytes, int offset, int length) throws XMLStreamException {
+		if (length == 0) {
+			return;
+		}
+
+		closeStartTag();
+		writeRaw(bytes, offset, length);
+
+		// The fragment always contains some markup
+		afterMarkup();
+	}
+
+	private void writeRaw(byte[] bytes) throws XMLStreamException {
+		writeRaw(bytes, 0, bytes.length);
+	}
+
+	private void writeRaw(byte[] bytes, int offset, int length) throws XMLStreamException {
+		if (length > buffer.length - position) {
+			flushBuffer();
+
+			if (length > buffer.length) {
+				// Too big for the buffer, write it directly
+				try {
+					out.write(bytes, offset, length);
+				} catch (IOException e) {
+					throw new XMLStreamException(e);
+				}
+
+				return;
+			}
+		}
+
+		System.arraycopy(bytes, offset, buffer, position, length);
+
+		position += length;
+	}
+
+	// --- Indentation (logic ported from IndentingXMLStreamWriter) --- //
+
+	private void beforeMarkup() throws XMLStreamException {
+		if (!indent) {
+			return;
+		}
+
+		final int soFar = written[depth];
+
+		if (((soFar & WROTE_DATA) == 0) && ((depth > 0) || (soFar != 0))) {
+			// No data in this scope and not the first line
+			writeNewLine(depth);
+
+			if (depth > 0) {
+				// The indentation was written
+				afterMarkup();
+			}
+		}
+	}
+
+	private void afterMarkup() {
+		written[depth] |= WROTE_MARKUP;
+	}
+
+	private void afterData() {
+		written[depth] |= WROTE_DATA;
+	}
+
+	private void beforeEndElement() throws XMLStreamException {
+		if (indent && (depth > 0) && (written[depth] == WROTE_MARKUP)) {
+			// Some markup but no data
+			writeNewLine(depth - 1);
+		}
+	}
+
+	private void writeNewLine(int level) throws XMLStreamException {
+		closeStartTag();
+
+		ensureCapacity(1);
+		buffer[position++] = '\n';
+
+		for (int i = 0; i < level; i++) {
+			ensureCapacity(2);
+			buffer[position++] = ' ';
+			buffer[position++] = ' ';
+		}
+	}
+
+	// --- Low-level encoding --- //
+
+	private void ensureCapacity(int count) throws XMLStreamException {
+		if (position + count > buffer.length) {
+			flushBuffer();
+		}
+	}
+
+	void flushBuffer() throws XMLStreamException {
+		if (position == 0) {
+			return;
+		}
+
+		try {
+			out.write(buffer, 0, position);
+
+			position = 0;
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	/**
+	 * Writes the given ASCII string (markup) without escaping it.
+	 */
+	private void writeAscii(String text) throws XMLStreamException {
+		final int length = text.length();
+
+		for (int i = 0; i < length; i++) {
+			final char c = text.charAt(i);
+
+			if (c < 0x80) {
+				ensureCapacity(1);
+				buffer[position++] = (byte) c;
+			} else {
+				// Not ASCII, fall back to the slower path
+				writeEncoded(text, i, length, false, false);
+				return;
+			}
+		}
+	}
+
+	private void writeAscii(char c) throws XMLStreamException {
+		ensureCapacity(1);
+		buffer[position++] = (byte) c;
+	}
+
+	/**
+	 * Writes the given text encoded in UTF-8 and possibly escaped with the
+	 * same rules as the JDK stream writer: '&amp;', '&lt;' and '&gt;' are
+	 * always escaped, '"' is only escaped in attribute values.
+	 */
+	private void writeEncoded(CharSequence text, int start, int end, boolean escape, boolean attribute)
+			throws XMLStreamException {
+
+		for (int i = start; i < end; i++) {
+			final char c = text.charAt(i);
+
+			// Reserve enough space for the longest output (4 bytes or "&quot;")
+			ensureCapacity(6);
+
+			if (c < 0x80) {
+				if (escape) {
+					switch (c) {
+					case '&':
+						writeEntity(AMP);
+						continue;
+					case '<':
+						writeEntity(LT);
+						continue;
+					case '>':
+						writeEntity(GT);
+						continue;
+					case '"':
+						if (attribute) {
+							writeEntity(QUOT);
+							continue;
+						}
+						break;
+					default:
+						break;
+					}
+				}
+
+				buffer[position++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[position++] = (byte) (0xC0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && (i + 1 < end) && Character.isLowSurrogate(text.charAt(i + 1))) {
+				final int codePoint = Character.toCodePoint(c, text.charAt(++i));
+
+				buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				// Unpaired surrogate, replace it like String.getBytes() does
+				buffer[position++] = '?';
+			} else {
+				buffer[position++] = (byte) (0xE0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private void writeEntity(byte[] entity) {
+		System.arraycopy(entity, 0, buffer, position, entity.length);
+
+		position += entity.length;
+	}
+
+	private static byte[] ascii(String text) {
+		final byte[] bytes = new byte[text.length()];
+
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) text.charAt(i);
+		}
+
+		return bytes;
+	}
+
+	void closeStartTag() throws XMLStreamException {
+		if (!startTagOpen) {
+			return;
+		}
+
+		if (emptyElement) {
+			ensureCapacity(2);
+			buffer[position++] = '/';
+			buffer[position++] = '>';
+		} else {
+			writeAscii('>');
+		}
+
+		startTagOpen = false;
+		emptyElement = false;
+	}
+
+	private void assertStartTagOpen() throws XMLStreamException {
+		if (!startTagOpen) {
+			throw new XMLStreamException("No start tag open to write an attribute or a namespace");
+		}
+	}
+
+	private void openTag(String name, boolean empty) throws XMLStreamException {
+		Validate.notNull(name, "The given element name is null");
+
+		closeStartTag();
+
+		writeAscii('<');
+		writeAscii(name);
+
+		this.startTagOpen = true;
+		this.emptyElement = empty;
+	}
+
+	private String qualify(String prefix, String localName) {
+		if ((prefix == null) || prefix.isEmpty()) {
+			return localName;
+		}
+
+		return prefix + ":" + localName;
+	}
+
+	private String prefixFor(String namespaceURI) throws XMLStreamException {
+		final String prefix = getPrefix(namespaceURI);
+
+		if (prefix == null) {
+			throw new XMLStreamException(String.format("The namespace URI '%s' isn't bound to a prefix", namespaceURI));
+		}
+
+		return prefix;
+	}
+
+	// --- XMLStreamWriter --- //
+
+	@Override
+	public void writeStartElement(String localName) throws XMLStreamException {
+		beforeMarkup();
+
+		if (depth + 1 >= written.length) {
+			written = Arrays.copyOf(written, written.length * 2);
+			elements = Arrays.copyOf(elements, elements.length * 2);
+		}
+
+		written[depth + 1] = 0;
+
+		openTag(localName, false);
+
+		elements[depth] = localName;
+
+		afterMarkup();
+
+		depth++;
+	}
+
+	@Override
+	public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+		writeStartElement(qualify(prefixFor(namespaceURI), localName));
+	}
+
+	@Override
+	public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+		writeStartElement(qualify(prefix, localName));
+	}
+
+	@Override
+	public void writeEmptyElement(String localName) throws XMLStreamException {
+		beforeMarkup();
+
+		openTag(localName, true);
+
+		afterMarkup();
+	}
+
+	@Override
+	public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+		writeEmptyElement(qualify(prefixFor(namespaceURI), localName));
+	}
+
+	@Override
+	public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+		writeEmptyElement(qualify(prefix, localName));
+	}
+
+	@Override
+	public void writeEndElement() throws XMLStreamException {
+		if (depth == 0) {
+			throw new XMLStreamException("No element to close");
+		}
+
+		beforeEndElement();
+
+		// If the element has no content, it's closed with an end tag (not
+		// "/>") like the JDK stream writer does
+		closeStartTag();
+
+		final String name = elements[--depth];
+
+		elements[depth] = null;
+
+		ensureCapacity(2);
+		buffer[position++] = '<';
+		buffer[position++] = '/';
+		writeAscii(name);
+		writeAscii('>');
+	}
+
+	@Override
+	public void writeEndDocument() throws XMLStreamException {
+		while (depth > 0) {
+			writeEndElement();
+		}
+
+		closeStartTag();
+
+		if (indent && (written[0] == WROTE_MARKUP)) {
+			// Some markup but no data
+			writeNewLine(0);
+		}
+
+		written[0] = 0;
+	}
+
+	@Override
+	public void close() throws XMLStreamException {
+		// Don't close the underlying stream (as specified by the interface)
+		flush();
+	}
+
+	@Override
+	public void flush() throws XMLStreamException {
+		closeStartTag();
+		flushBuffer();
+
+		try {
+			out.flush();
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeAttribute(String localName, String value) throws XMLStreamException {
+		Validate.notNull(localName, "The given attribute name is null");
+		Validate.notNull(value, "The given attribute value is null");
+
+		assertStartTagOpen();
+
+		writeAttributeValue(localName, value);
+	}
+
+	/**
+	 * Writes an attribute whose value is the given float formatted with the
+	 * given number of fraction digits. The digits are directly encoded into
+	 * the buffer.
+	 *
+	 * @see Utils#format(float, int, byte[], int)
+	 */
+	void writeAttribute(String localName, float value, int fractionDigits) throws XMLStreamException {
+		Validate.notNull(localName, "The given attribute name is null");
+
+		assertStartTagOpen();
+
+		writeAttributeValue(localName, value, fractionDigits);
+	}
+
+	private void writeAttributeValue(String localName, float value, int fractionDigits) throws XMLStreamException {
+		writeAscii(' ');
+		writeAscii(localName);
+
+		ensureCapacity(Utils.MAX_FLOAT_LENGTH + 3);
+
+		buffer[position++] = '=';
+		buffer[position++] = '"';
+
+		final int length = Utils.format(value, fractionDigits, buffer, position);
+
+		if (length < 0) {
+			// The value is too big to be formatted in place
+			writeAscii(Utils.format(value, fractionDigits));
+			writeAscii('"');
+		} else {
+			position += length;
+			buffer[position++] = '"';
+		}
+	}
+
+	private void writeAttributeValue(String localName, String value) throws XMLStreamException {
+		writeAscii(' ');
+		writeAscii(localName);
+		ensureCapacity(2);
+		buffer[position++] = '=';
+		buffer[position++] = '"';
+		writeEncoded(value, 0, value.length(), true, true);
+		writeAscii('"');
+	}
+
+	@Override
+	public void writeAttribute(String prefix, String namespaceURI, String localName, String value)
+			throws XMLStreamException {
+
+		writeAttribute(qualify(prefix, localName), value);
+	}
+
+	@Override
+	public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+		writeAttribute(qualify(prefixFor(namespaceURI), localName), value);
+	}
+
+	@Override
+	public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+		if ((prefix == null) || prefix.isEmpty() || XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) {
+			writeDefaultNamespace(namespaceURI);
+			return;
+		}
+
+		writeAttribute(XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix, namespaceURI);
+	}
+
+	@Override
+	public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+		writeAttribute(XMLConstants.XMLNS_ATTRIBUTE, namespaceURI);
+	}
+
+	@Override
+	public void writeComment(String data) throws XMLStreamException {
+		beforeMarkup();
+		closeStartTag();
+
+		writeAscii("<!--");
+
+		if (data != null) {
+			writeEncoded(data, 0, data.length(), false, false);
+		}
+
+		writeAscii("-->");
+
+		afterMarkup();
+	}
+
+	@Override
+	public void writeProcessingInstruction(String target) throws XMLStreamException {
+		writeProcessingInstruction(target, null);
+	}
+
+	@Override
+	public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+		Validate.notNull(target, "The given target is null");
+
+		beforeMarkup();
+		closeStartTag();
+
+		writeAscii("<?");
+		writeEncoded(target, 0, target.length(), false, false);
+
+		if (data != null) {
+			writeAscii(' ');
+			writeEncoded(data, 0, data.length(), false, false);
+		}
+
+		writeAscii("?>");
+
+		afterMarkup();
+	}
+
+	@Override
+	public void writeCData(String data) throws XMLStreamException {
+		Validate.notNull(data, "The given data is null");
+
+		closeStartTag();
+
+		writeAscii("<![CDATA[");
+		writeEncoded(data, 0, data.length(), false, false);
+		writeAscii("]]>");
+
+		afterData();
+	}
+
+	@Override
+	public void writeDTD(String dtd) throws XMLStreamException {
+		Validate.notNull(dtd, "The given DTD is null");
+
+		beforeMarkup();
+		closeStartTag();
+
+		writeEncoded(dtd, 0, dtd.length(), false, false);
+
+		afterMarkup();
+	}
+
+	@Override
+	public void writeEntityRef(String name) throws XMLStreamException {
+		Validate.notNull(name, "The given entity name is null");
+
+		closeStartTag();
+
+		writeAscii('&');
+		writeAscii(name);
+		writeAscii(';');
+
+		afterData();
+	}
+
+	@Override
+	public void writeStartDocument() throws XMLStreamException {
+		writeStartDocument(null, "1.0");
+	}
+
+	@Override
+	public void writeStartDocument(String version) throws XMLStreamException {
+		writeStartDocument(null, version);
+	}
+
+	@Override
+	public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+		Validate.notNull(version, "The given version is null");
+
+		if ((encoding != null) && !"UTF-8".equalsIgnoreCase(encoding)) {
+			throw new XMLStreamException(String.format("Unsupported encoding: %s", encoding));
+		}
+
+		beforeMarkup();
+
+		writeAscii("<?xml version=\"");
+		writeAscii(version);
+		writeAscii('"');
+
+		if (encoding != null) {
+			writeAscii(" encoding=\"");
+			writeAscii(encoding);
+			writeAscii('"');
+		}
+
+		writeAscii("?>");
+
+		afterMarkup();
+	}
+
+	@Override
+	public void writeCharacters(String text) throws XMLStreamException {
+		Validate.notNull(text, "The given text is null");
+
+		closeStartTag();
+
+		writeEncoded(text, 0, text.length(), true, false);
+
+		afterData();
+	}
+
+	@Override
+	public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+		Validate.notNull(text, "The given text is null");
+
+		closeStartTag();
+
+		writeEncoded(java.nio.CharBuffer.wrap(text), start, start + len, true, false);
+
+		afterData();
+	}
+
+	@Override
+	public String getPrefix(String uri) throws XMLStreamException {
+		final String prefix = prefixes.get(uri);
+
+		if ((prefix == null) && (namespaceContext != null)) {
+			return namespaceContext.getPrefix(uri);
+		}
+
+		return prefix;
+	}
+
+	@Override
+	public void setPrefix(String prefix, String uri) throws XMLStreamException {
+		prefixes.put(uri, prefix);
+	}
+
+	@Override
+	public void setDefaultNamespace(String uri) throws XMLStreamException {
+		prefixes.put(uri, XMLConstants.DEFAULT_NS_PREFIX);
+	}
+
+	@Override
+	public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+		this.namespaceContext = context;
+	}
+
+	@Override
+	public NamespaceContext getNamespaceContext() {
+		return new NamespaceContext() {
+			@Override
+			public String getNamespaceURI(String prefix) {
+				for (Map.Entry<String, String> entry : prefixes.entrySet()) {
+					if (entry.getValue().equals(prefix)) {
+						return entry.getKey();
+					}
+				}
+
+				return (namespaceContext != null) ? namespaceContext.getNamespaceURI(prefix) : null;
+			}
+
+			@Override
+			public String getPrefix(String namespaceURI) {
+				try {
+					return Utf8XMLStreamWriter.this.getPrefix(namespaceURI);
+				} catch (XMLStreamException e) {
+					return null;
+				}
+			}
+
+			@Override
+			public Iterator<String> getPrefixes(String namespaceURI) {
+				final String prefix = getPrefix(namespaceURI);
+
+				return (prefix != null) ? Collections.singletonList(prefix).iterator() : Collections.<String> emptyList().iterator();
+			}
+		};
+	}
+
+	@Override
+	public Object getProperty(String name) throws IllegalArgumentException {
+		throw new IllegalArgumentException(String.format("Unsupported property: %s", name));
+	}
+}
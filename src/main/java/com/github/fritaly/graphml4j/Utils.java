@@ -17,14 +17,60 @@
 package com.github.fritaly.graphml4j;
 
 import java.awt.Color;
+import java.util.Locale;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.commons.lang.Validate;
 
 final class Utils {
 
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * The powers of ten supported when formatting floats.
+	 */
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1000L };
+
+	/**
+	 * Above this (scaled) value, the floats are formatted with a
+	 * {@link java.util.Formatter} as they can't be represented as a long
+	 * anymore.
+	 */
+	private static final double MAX_SCALED_VALUE = 1e15;
+
+	/**
+	 * The maximum number of characters generated when formatting a float
+	 * (without falling back to a {@link java.util.Formatter}).
+	 */
+	static final int MAX_FLOAT_LENGTH = 24;
+
+	/**
+	 * Cache storing the last encoded colors. The entries are immutable, the
+	 * cache can therefore be read and written without synchronization.
+	 */
+	private static final EncodedColor[] COLOR_CACHE = new EncodedColor[256];
+
+	/**
+	 * An entry of the color cache.
+	 */
+	private static final class EncodedColor {
+
+		final int rgb;
+
+		final String value;
+
+		EncodedColor(int rgb, String value) {
+			this.rgb = rgb;
+			this.value = value;
+		}
+	}
+
 	/**
 	 * Encodes the given color into an hexadecimal string like "#RRGGBBAA" or
-	 * "#RRGGBB" (whether the transparency is set to 0).
+	 * "#RRGGBB" (whether the transparency is set to 0). The encoded values are
+	 * cached.
 	 *
 	 * @param color
 	 *            a color to encode. Can't be null.
@@ -33,10 +79,182 @@ final class Utils {
 	static String encode(Color color) {
 		Validate.notNull(color, "The given color is null");
 
-		if (color.getAlpha() == 255) {
-			return String.format("#%02X%02X%02X", color.getRed(), color.getGreen(), color.getBlue());
+		final int rgb = color.getRGB();
+		final int index = (rgb ^ (rgb >>> 8) ^ (rgb >>> 16) ^ (rgb >>> 24)) & (COLOR_CACHE.length - 1);
+
+		final EncodedColor cached = COLOR_CACHE[index];
+
+		if ((cached != null) && (cached.rgb == rgb)) {
+			return cached.value;
+		}
+
+		final String value = encode(rgb);
+
+		COLOR_CACHE[index] = new EncodedColor(rgb, value);
+
+		return value;
+	}
+
+	private static String encode(int argb) {
+		final int alpha = (argb >>> 24) & 0xFF;
+		final char[] chars = new char[(alpha == 255) ? 7 : 9];
+
+		chars[0] = '#';
+
+		// Red, green, blue and possibly alpha
+		for (int i = 0, shift = 16; i < 3; i++, shift -= 8) {
+			chars[1 + 2 * i] = HEX_DIGITS[(argb >>> (shift + 4)) & 0xF];
+			chars[2 + 2 * i] = HEX_DIGITS[(argb >>> shift) & 0xF];
+		}
+		if (alpha != 255) {
+			chars[7] = HEX_DIGITS[alpha >>> 4];
+			chars[8] = HEX_DIGITS[alpha & 0xF];
+		}
+
+		return new String(chars);
+	}
+
+	/**
+	 * Formats the given float with the given number of fraction digits. The
+	 * result is the same as
+	 * <code>String.format(Locale.ROOT, "%.1f", value)</code> (for 1 fraction
+	 * digit) but is computed without any {@link java.util.Formatter}. The
+	 * result doesn't depend on the default locale.
+	 *
+	 * @param value
+	 *            the float to format.
+	 * @param fractionDigits
+	 *            the number of fraction digits in [0, 3].
+	 * @return a string representing the formatted float.
+	 */
+	static String format(float value, int fractionDigits) {
+		final byte[] bytes = new byte[MAX_FLOAT_LENGTH];
+
+		final int length = format(value, fractionDigits, bytes, 0);
+
+		if (length < 0) {
+			// The value is too big for the fast path
+			return String.format(Locale.ROOT, "%." + fractionDigits + "f", value);
+		}
+
+		final char[] chars = new char[length];
+
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) bytes[i];
+		}
+
+		return new String(chars);
+	}
+
+	/**
+	 * Formats the given float with the given number of fraction digits into
+	 * the given buffer (as ASCII characters). The rounding mode is "half up"
+	 * like {@link java.util.Formatter}.
+	 *
+	 * @param value
+	 *            the float to format.
+	 * @param fractionDigits
+	 *            the number of fraction digits in [0, 3].
+	 * @param buffer
+	 *            the buffer where to write the characters. Must have
+	 *            {@link #MAX_FLOAT_LENGTH} bytes available from the given
+	 *            offset.
+	 * @param offset
+	 *            the offset where to write the first character.
+	 * @return the number of characters written or -1 if the value is too big
+	 *         to be formatted this way.
+	 */
+	static int format(float value, int fractionDigits, byte[] buffer, int offset) {
+		Validate.isTrue((fractionDigits >= 0) && (fractionDigits < POWERS_OF_TEN.length), "The given number of fraction digits is out of range");
+
+		if (Float.isNaN(value)) {
+			return copy("NaN", buffer, offset);
+		}
+		if (Float.isInfinite(value)) {
+			return copy((value > 0) ? "Infinity" : "-Infinity", buffer, offset);
+		}
+
+		// The product is exact since a float has a 24-bit mantissa
+		final long scale = POWERS_OF_TEN[fractionDigits];
+		final double scaled = Math.abs((double) value) * scale;
+
+		if (scaled >= MAX_SCALED_VALUE) {
+			return -1;
+		}
+
+		// Round half up (the sum is exact too)
+		final long units = (long) Math.floor(scaled + 0.5);
+
+		int position = offset;
+
+		// -0.0 is formatted as "-0.0" like the Formatter does
+		if (Double.compare(value, 0.0) < 0) {
+			buffer[position++] = '-';
+		}
+
+		position = writeDigits(units / scale, buffer, position);
+
+		if (fractionDigits > 0) {
+			buffer[position++] = '.';
+
+			long fraction = units % scale;
+
+			for (int i = position + fractionDigits - 1; i >= position; i--) {
+				buffer[i] = (byte) ('0' + (fraction % 10));
+				fraction /= 10;
+			}
+
+			position += fractionDigits;
+		}
+
+		return position - offset;
+	}
+
+	private static int writeDigits(long value, byte[] buffer, int offset) {
+		int length = 1;
+
+		for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+			length++;
+		}
+
+		long remaining = value;
+
+		for (int i = offset + length - 1; i >= offset; i--) {
+			buffer[i] = (byte) ('0' + (remaining % 10));
+			remaining /= 10;
+		}
+
+		return offset + length;
+	}
+
+	private static int copy(String text, byte[] buffer, int offset) {
+		for (int i = 0; i < text.length(); i++) {
+			buffer[offset + i] = (byte) text.charAt(i);
+		}
+
+		return text.length();
+	}
+
+	/**
+	 * Writes an attribute whose value is the given float formatted with the
+	 * given number of fraction digits. The digits are directly encoded into
+	 * the output buffer when possible.
+	 *
+	 * @param writer
+	 *            the stream writer to use. Can't be null.
+	 * @param localName
+	 *            the attribute name. Can't be null.
+	 * @param value
+	 *            the float to write.
+	 * @param fractionDigits
+	 *            the number of fraction digits in [0, 3].
+	 * @see #format(float, int)
+	 */
+	static void writeAttribute(XMLStreamWriter writer, String localName, float value, int fractionDigits) throws XMLStreamException {
+		if (writer instanceof Utf8XMLStreamWriter) {
+			((Utf8XMLStreamWriter) writer).writeAttribute(localName, value, fractionDigits);
 		} else {
-			return String.format("#%02X%02X%02X%02X", color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha());
+			writer.writeAttribute(localName, format(value, fractionDigits));
 		}
 	}
 
@@ -0,0 +1,446 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.datastructure;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.fritaly.graphml4j.GraphMLException;
+import com.github.fritaly.graphml4j.GraphMLWriter;
+
+/**
+ * <p>
+ * An immutable graph storing its nodes and edges in primitive arrays. Suited
+ * for graphs too large to be represented with a {@link Graph} (which allocates
+ * several objects per node and per edge).
+ * </p>
+ * <p>
+ * The nodes are identified by their index (starting at 0) and have a label
+ * and an optional parent (another node). The edges are stored in a
+ * compressed sparse row (CSR) structure: the targets of all the edges sorted
+ * by source node plus the offset of the first edge of each node. Hence an
+ * edge costs 4 bytes once the graph is built.
+ * </p>
+ * <p>
+ * A compact graph is created with a {@link Builder}:
+ *
+ * <pre>
+ * final CompactGraph.Builder builder = CompactGraph.builder();
+ *
+ * final int group = builder.addNode(&quot;Group&quot;);
+ * final int node1 = builder.addNode(&quot;Node 1&quot;, group);
+ * final int node2 = builder.addNode(&quot;Node 2&quot;);
+ *
+ * builder.addEdge(node1, node2);
+ *
+ * final CompactGraph graph = builder.build();
+ * </pre>
+ *
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public final class CompactGraph {
+
+	private static final int NO_PARENT = -1;
+
+	private final int nodeCount;
+
+	private final String[] labels;
+
+	private final int[] parents;
+
+	/**
+	 * The child nodes of node i are stored in childIndices between
+	 * childOffsets[i] (inclusive) and childOffsets[i + 1] (exclusive). The top
+	 * level nodes are stored as the children of the (virtual) node
+	 * {@link #nodeCount}.
+	 */
+	private final int[] childOffsets;
+
+	private final int[] childIndices;
+
+	/**
+	 * The edges leaving node i are stored in targets between edgeOffsets[i]
+	 * (inclusive) and edgeOffsets[i + 1] (exclusive).
+	 */
+	private final int[] edgeOffsets;
+
+	private final int[] targets;
+
+	private CompactGraph(int nodeCount, String[] labels, int[] parents, int[] sources, int[] targets, int edgeCount) {
+		this.nodeCount = nodeCount;
+		this.labels = labels;
+		this.parents = parents;
+
+		// the top level nodes are grouped under the virtual node "nodeCount"
+		this.childOffsets = new int[nodeCount + 2];
+		this.childIndices = new int[nodeCount];
+
+		for (int i = 0; i < nodeCount; i++) {
+			childOffsets[(parents[i] == NO_PARENT) ? nodeCount : parents[i]]++;
+		}
+
+		fill(childOffsets, childIndices, nodeCount + 1, parents, null, nodeCount);
+
+		this.edgeOffsets = new int[nodeCount + 1];
+		this.targets = new int[edgeCount];
+
+		for (int i = 0; i < edgeCount; i++) {
+			edgeOffsets[sources[i]]++;
+		}
+
+		fill(edgeOffsets, this.targets, nodeCount, sources, targets, edgeCount);
+	}
+
+	/**
+	 * Fills a CSR structure. When called, offsets[i] contains the number of
+	 * values for row i. When this method returns, offsets[i] contains the
+	 * index of the first value of row i and the values are sorted by row (in
+	 * insertion order within a row).
+	 *
+	 * @param rows
+	 *            the row of each value. A row equal to {@link #NO_PARENT}
+	 *            stands for the last row.
+	 * @param values
+	 *            the values to store or null to store the indices of the
+	 *            values.
+	 */
+	private static void fill(int[] offsets, int[] result, int rowCount, int[] rows, int[] values, int count) {
+		// compute the end of each row
+		for (int i = 1; i < rowCount; i++) {
+			offsets[i] += offsets[i - 1];
+		}
+
+		// fill the rows backwards so that the offsets end up on the row starts
+		for (int i = count - 1; i >= 0; i--) {
+			final int row = (rows[i] == NO_PARENT) ? rowCount - 1 : rows[i];
+
+			result[--offsets[row]] = (values != null) ? values[i] : i;
+		}
+
+		offsets[rowCount] = count;
+	}
+
+	public static Builder builder() {
+		return new Builder(1024, 1024);
+	}
+
+	/**
+	 * Returns a new builder sized for the given number of nodes and edges.
+	 * Sizing the builder avoids growing (and copying) its arrays.
+	 */
+	public static Builder builder(int expectedNodeCount, int expectedEdgeCount) {
+		return new Builder(expectedNodeCount, expectedEdgeCount);
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public int getEdgeCount() {
+		return targets.length;
+	}
+
+	public String getLabel(int node) {
+		checkNode(node);
+
+		return labels[node];
+	}
+
+	/**
+	 * Returns the parent of the given node or -1 if the node is at the top
+	 * level of the graph.
+	 */
+	public int getParent(int node) {
+		checkNode(node);
+
+		return parents[node];
+	}
+
+	public int getChildCount(int node) {
+		checkNode(node);
+
+		return childOffsets[node + 1] - childOffsets[node];
+	}
+
+	public int getChild(int node, int index) {
+		Validate.isTrue((index >= 0) && (index < getChildCount(node)), "Invalid child index: " + index);
+
+		return childIndices[childOffsets[node] + index];
+	}
+
+	public boolean isGroup(int node) {
+		return (getChildCount(node) > 0);
+	}
+
+	public int getOutDegree(int node) {
+		checkNode(node);
+
+		return edgeOffsets[node + 1] - edgeOffsets[node];
+	}
+
+	/**
+	 * Returns the target of the given outgoing edge of a node.
+	 *
+	 * @param node
+	 *            the source node.
+	 * @param index
+	 *            the index of the outgoing edge (between 0 and the out degree
+	 *            of the node).
+	 */
+	public int getTarget(int node, int index) {
+		Validate.isTrue((index >= 0) && (index < getOutDegree(node)), "Invalid edge index: " + index);
+
+		return targets[edgeOffsets[node] + index];
+	}
+
+	private void checkNode(int node) {
+		if ((node < 0) || (node >= nodeCount)) {
+			throw new IllegalArgumentException("Invalid node: " + node);
+		}
+	}
+
+	public void toGraphML(Writer writer) throws GraphMLException {
+		Validate.notNull(writer, "The given writer is null");
+
+		final GraphMLWriter graphWriter = new GraphMLWriter(writer);
+
+		try {
+			write(graphWriter);
+		} finally {
+			graphWriter.close();
+		}
+	}
+
+	/**
+	 * Encodes the graph in UTF-8 into the given stream. Faster than
+	 * {@link #toGraphML(Writer)} for large graphs.
+	 */
+	public void toGraphML(OutputStream stream) throws GraphMLException {
+		Validate.notNull(stream, "The given stream is null");
+
+		final GraphMLWriter graphWriter = new GraphMLWriter(stream);
+
+		try {
+			write(graphWriter);
+		} finally {
+			graphWriter.close();
+		}
+	}
+
+	private void write(GraphMLWriter graphWriter) throws GraphMLException {
+		graphWriter.graph();
+
+		// stack storing the groups being written and the position of the next
+		// child to write (the virtual root being at the bottom)
+		int[] stack = new int[16];
+		int[] cursors = new int[16];
+		int depth = 0;
+
+		stack[0] = nodeCount;
+		cursors[0] = childOffsets[nodeCount];
+
+		while (depth >= 0) {
+			final int group = stack[depth];
+
+			if (cursors[depth] == childOffsets[group + 1]) {
+				// all the children have been written
+				if (group != nodeCount) {
+					graphWriter.closeGroup();
+				}
+
+				depth--;
+				continue;
+			}
+
+			final int node = childIndices[cursors[depth]++];
+
+			if (childOffsets[node] != childOffsets[node + 1]) {
+				// by default, groups are always open
+				graphWriter.group(nodeId(node), labels[node], true);
+
+				if (++depth == stack.length) {
+					stack = Arrays.copyOf(stack, depth * 2);
+					cursors = Arrays.copyOf(cursors, depth * 2);
+				}
+
+				stack[depth] = node;
+				cursors[depth] = childOffsets[node];
+			} else {
+				graphWriter.node(nodeId(node), labels[node]);
+			}
+		}
+
+		// ... then the edges
+		for (int source = 0; source < nodeCount; source++) {
+			if (edgeOffsets[source] == edgeOffsets[source + 1]) {
+				continue;
+			}
+
+			final String sourceId = nodeId(source);
+
+			for (int i = edgeOffsets[source]; i < edgeOffsets[source + 1]; i++) {
+				graphWriter.edge(sourceId, nodeId(targets[i]));
+			}
+		}
+
+		graphWriter.closeGraph();
+	}
+
+	/**
+	 * Returns the id written for the given node. Like for a {@link Graph},
+	 * the id is derived from the order of creation of the node.
+	 */
+	private static String nodeId(int node) {
+		return "n" + (node + 1);
+	}
+
+	/**
+	 * Builder of {@link CompactGraph}. The nodes must be added before their
+	 * child nodes and their edges.
+	 */
+	public static final class Builder {
+
+		private String[] labels;
+
+		private int[] parents;
+
+		private int nodeCount;
+
+		private int[] sources;
+
+		private int[] targets;
+
+		private int edgeCount;
+
+		private Builder(int expectedNodeCount, int expectedEdgeCount) {
+			Validate.isTrue(expectedNodeCount >= 0, "The expected node count must be positive");
+			Validate.isTrue(expectedEdgeCount >= 0, "The expected edge count must be positive");
+
+			this.labels = new String[Math.max(16, expectedNodeCount)];
+			this.parents = new int[labels.length];
+			this.sources = new int[Math.max(16, expectedEdgeCount)];
+			this.targets = new int[sources.length];
+		}
+
+		/**
+		 * Adds a node at the top level of the graph.
+		 *
+		 * @param label
+		 *            the node's label. Can't be null.
+		 * @return the index of the new node.
+		 */
+		public int addNode(String label) {
+			return addNode(label, NO_PARENT);
+		}
+
+		/**
+		 * Adds a node inside the given parent node.
+		 *
+		 * @param label
+		 *            the node's label. Can't be null.
+		 * @param parent
+		 *            the index of the parent node or -1 to add the node at the
+		 *            top level of the graph.
+		 * @return the index of the new node.
+		 */
+		public int addNode(String label, int parent) {
+			Validate.notNull(label, "The given label is null");
+			assertNotBuilt();
+			Validate.isTrue((parent >= NO_PARENT) && (parent < nodeCount), "Invalid parent node: " + parent);
+
+			if (nodeCount == labels.length) {
+				final int capacity = grow(nodeCount);
+
+				labels = Arrays.copyOf(labels, capacity);
+				parents = Arrays.copyOf(parents, capacity);
+			}
+
+			labels[nodeCount] = label;
+			parents[nodeCount] = parent;
+
+			return nodeCount++;
+		}
+
+		public void addEdge(int source, int target) {
+			assertNotBuilt();
+			Validate.isTrue((source >= 0) && (source < nodeCount), "Invalid source node: " + source);
+			Validate.isTrue((target >= 0) && (target < nodeCount), "Invalid target node: " + target);
+
+			if (edgeCount == sources.length) {
+				final int capacity = grow(edgeCount);
+
+				sources = Arrays.copyOf(sources, capacity);
+				targets = Arrays.copyOf(targets, capacity);
+			}
+
+			sources[edgeCount] = source;
+			targets[edgeCount] = target;
+
+			edgeCount++;
+		}
+
+		public int getNodeCount() {
+			return nodeCount;
+		}
+
+		public int getEdgeCount() {
+			return edgeCount;
+		}
+
+		private void assertNotBuilt() {
+			if (labels == null) {
+				throw new IllegalStateException("The graph has already been built");
+			}
+		}
+
+		private static int grow(int capacity) {
+			// grow by 50% to limit the memory wasted on large graphs
+			final long result = capacity + (capacity >> 1) + 1;
+
+			if (result > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("The graph is too large");
+			}
+
+			return (int) result;
+		}
+
+		/**
+		 * Builds the graph. The builder can't be used afterwards.
+		 */
+		public CompactGraph build() {
+			assertNotBuilt();
+
+			final CompactGraph graph = new CompactGraph(nodeCount,
+					(nodeCount == labels.length) ? labels : Arrays.copyOf(labels, nodeCount),
+					(nodeCount == parents.length) ? parents : Arrays.copyOf(parents, nodeCount), sources, targets,
+					edgeCount);
+
+			// release the arrays
+			this.labels = null;
+			this.parents = null;
+			this.sources = null;
+			this.targets = null;
+
+			return graph;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.datastructure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index storing the elements (nodes or edges) of a graph per data. Since
+ * several elements can share the same data, the index is a multimap. To
+ * save memory, a single element is stored as is and several elements are
+ * stored in a linked hash set (in insertion order) so that removing one
+ * of them doesn't depend on how many elements share the data.
+ *
+ * @param <T>
+ *            the type of indexed element.
+ * @author francois_ritaly
+ */
+final class DataIndex<T> {
+
+	/**
+	 * Map storing either an element or a list of elements per data.
+	 */
+	private final Map<Object, Object> elements = new HashMap<Object, Object>();
+
+	void add(Object data, T element) {
+		final Object current = elements.get(data);
+
+		if (current == null) {
+			elements.put(data, element);
+		} else if (current instanceof ElementSet) {
+			((ElementSet) current).add(element);
+		} else {
+			final ElementSet set = new ElementSet();
+			set.add(current);
+			set.add(element);
+
+			elements.put(data, set);
+		}
+	}
+
+	void remove(Object data, T element) {
+		final Object current = elements.get(data);
+
+		if (current == element) {
+			elements.remove(data);
+		} else if (current instanceof ElementSet) {
+			final ElementSet set = (ElementSet) current;
+
+			set.remove(element);
+
+			if (set.size() == 1) {
+				elements.put(data, set.iterator().next());
+			}
+		}
+	}
+
+	/**
+	 * Returns the first element (in insertion order) associated to the given
+	 * data or null.
+	 */
+	@SuppressWarnings("unchecked")
+	T getFirst(Object data) {
+		final Object current = elements.get(data);
+
+		if (current instanceof ElementSet) {
+			return (T) ((ElementSet) current).iterator().next();
+		}
+
+		return (T) current;
+	}
+
+	/**
+	 * Returns all the elements (in insertion order) associated to the given
+	 * data.
+	 */
+	@SuppressWarnings("unchecked")
+	List<T> getAll(Object data) {
+		final Object current = elements.get(data);
+
+		if (current == null) {
+			return Collections.emptyList();
+		}
+		if (current instanceof ElementSet) {
+			return new ArrayList<T>((Collection<T>) current);
+		}
+
+		return Collections.singletonList((T) current);
+	}
+
+	/**
+	 * Dedicated set class so that a set can't be mistaken for an element.
+	 */
+	private static final class ElementSet extends LinkedHashSet<Object> {
+
+		private static final long serialVersionUID = 1L;
+	}
+}
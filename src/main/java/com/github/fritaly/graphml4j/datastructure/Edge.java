@@ -16,7 +16,12 @@
  */
 package com.github.fritaly.graphml4j.datastructure;
 
+import com.github.fritaly.graphml4j.EdgePath;
+import lombok.EqualsAndHashCode;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.Value;
+import lombok.experimental.NonFinal;
 import org.apache.commons.lang.Validate;
 
 @Value
@@ -28,6 +33,16 @@ public final class Edge {
 
 	private final Object data;
 
+	/**
+	 * The route of the edge (typically computed by an edge router) used when
+	 * exporting the graph. Null to let yEd route the edge.
+	 */
+	@NonFinal
+	@Setter
+	@EqualsAndHashCode.Exclude
+	@ToString.Exclude
+	private EdgePath path;
+
 	Edge(String id, Node source, Node target, Object data) {
 		// the associated data can be null
 		Validate.notNull(id, "The given edge id is null");
@@ -16,18 +16,25 @@
  */
 package com.github.fritaly.graphml4j.datastructure;
 
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang.Validate;
 
 import com.github.fritaly.graphml4j.GraphMLException;
 import com.github.fritaly.graphml4j.GraphMLWriter;
+import com.github.fritaly.graphml4j.ParallelGraphMLWriter;
 import com.github.fritaly.graphml4j.Renderer;
 
 public final class Graph {
@@ -49,7 +56,46 @@ public final class Graph {
 
 	private final Map<String, Edge> edges = new LinkedHashMap<String, Edge>();
 
+	/**
+	 * Unmodifiable live views of the nodes and edges (created once).
+	 */
+	private final Collection<Node> nodesView = Collections.unmodifiableCollection(nodes.values());
+
+	private final Collection<Edge> edgesView = Collections.unmodifiableCollection(edges.values());
+
+	/**
+	 * Indices storing the nodes and the edges per data. Null when the data
+	 * isn't indexed.
+	 */
+	private final DataIndex<Node> nodesByData;
+
+	private final DataIndex<Edge> edgesByData;
+
+	/**
+	 * Creates a new graph indexing the nodes and edges per data.
+	 */
 	public Graph() {
+		this(true);
+	}
+
+	/**
+	 * Creates a new graph.
+	 *
+	 * @param indexData
+	 *            whether the nodes and edges should be indexed per data. When
+	 *            indexed, the methods {@link #getNodeByData(Object)},
+	 *            {@link #getEdgeByData(Object)} and
+	 *            {@link #getEdgesByData(Object)} run in constant time instead
+	 *            of scanning the whole graph. The data can't be indexed if its
+	 *            hash code changes while in the graph.
+	 */
+	public Graph(boolean indexData) {
+		this.nodesByData = indexData ? new DataIndex<Node>() : null;
+		this.edgesByData = indexData ? new DataIndex<Edge>() : null;
+	}
+
+	public boolean isDataIndexed() {
+		return (nodesByData != null);
 	}
 
 	// --- Edge --- //
@@ -59,31 +105,100 @@ public final class Graph {
 		Validate.notNull(source, "The given source node is null");
 		Validate.notNull(target, "The given target node is null");
 
-		// ensure the 2 nodes exist in the graph
-		Validate.isTrue(hasNode(source), String.format("The given source node '%s' doesn't belong to this graph", source));
-		Validate.isTrue(hasNode(target), String.format("The given target node '%s' doesn't belong to this graph", target));
+		// ensure the 2 nodes exist in the graph (only format the messages on failure)
+		if (!hasNode(source)) {
+			throw new IllegalArgumentException(String.format("The given source node '%s' doesn't belong to this graph", source));
+		}
+		if (!hasNode(target)) {
+			throw new IllegalArgumentException(String.format("The given target node '%s' doesn't belong to this graph", target));
+		}
 
-		final String id = String.format("e%d", edgeSequence.incrementAndGet());
+		final String id = "e" + edgeSequence.incrementAndGet();
 
 		final Edge edge = new Edge(id, source, target, data);
 
 		this.edges.put(edge.getId(), edge);
 
+		source.addOutgoing(edge);
+		target.addIncoming(edge);
+
+		if (edgesByData != null) {
+			this.edgesByData.add(data, edge);
+		}
+
 		return edge;
 	}
 	
 	public void removeEdge(Edge edge) {
 		Validate.notNull(edge, "The given edge is null");
 		
-		if (this.edges.containsKey(edge.getId())) {
-			this.edges.remove(edge.getId());
+		if (this.edges.get(edge.getId()) == edge) {
+			unlink(edge);
+		}
+	}
+
+	/**
+	 * Removes the given edge (known to belong to this graph) from the graph.
+	 */
+	private void unlink(Edge edge) {
+		this.edges.remove(edge.getId());
+
+		edge.getSource().removeOutgoing(edge);
+		edge.getTarget().removeIncoming(edge);
+
+		if (edgesByData != null) {
+			this.edgesByData.remove(edge.getData(), edge);
 		}
 	}
 	
+	/**
+	 * Returns a copy of the edges. See {@link #getEdgesView()} to avoid the
+	 * copy.
+	 *
+	 * @return a new list of edges. Never returns null.
+	 */
 	public List<Edge> getEdges() {
 		return new ArrayList<Edge>(this.edges.values());
 	}
 
+	/**
+	 * Returns an unmodifiable live view of the edges (in insertion order). The
+	 * view reflects the changes made to the graph but mustn't be iterated
+	 * while the graph is modified.
+	 *
+	 * @return a collection of edges. Never returns null.
+	 */
+	public Collection<Edge> getEdgesView() {
+		return edgesView;
+	}
+
+	/**
+	 * Invokes the given action for each edge (in insertion order) without
+	 * copying the edges.
+	 *
+	 * @param action
+	 *            the action to invoke. Can't be null.
+	 */
+	public void forEachEdge(Consumer<? super Edge> action) {
+		Validate.notNull(action, "The given action is null");
+
+		for (Edge edge : this.edges.values()) {
+			action.accept(edge);
+		}
+	}
+
+	public Spliterator<Edge> edgeSpliterator() {
+		return edgesView.spliterator();
+	}
+
+	/**
+	 * Returns a sequential stream over the edges. Call
+	 * {@link Stream#parallel()} to process the edges in parallel.
+	 */
+	public Stream<Edge> edgeStream() {
+		return edgesView.stream();
+	}
+
 	public Edge getEdgeById(String id) {
 		Validate.notNull(id, "The given edge id is null");
 
@@ -91,6 +206,10 @@ public final class Graph {
 	}
 
 	public Edge getEdgeByData(Object data) {
+		if (edgesByData != null) {
+			return this.edgesByData.getFirst(data);
+		}
+
 		for (Edge edge : this.edges.values()) {
 			if ((edge.getData() == data) || ((edge.getData() != null) && edge.getData().equals(data))) {
 				return edge;
@@ -100,49 +219,194 @@ public final class Graph {
 		return null;
 	}
 
+	/**
+	 * Returns the edges associated to the given data (in insertion order).
+	 *
+	 * @param data
+	 *            the data to look for. Can be null.
+	 * @return a new list of edges. Never returns null.
+	 */
+	public List<Edge> getEdgesByData(Object data) {
+		if (edgesByData != null) {
+			return this.edgesByData.getAll(data);
+		}
+
+		final List<Edge> result = new ArrayList<Edge>();
+
+		for (Edge edge : this.edges.values()) {
+			if ((edge.getData() == data) || ((edge.getData() != null) && edge.getData().equals(data))) {
+				result.add(edge);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the edges from the given source node to the given target node
+	 * (in insertion order).
+	 *
+	 * @param source
+	 *            the source node. Can't be null.
+	 * @param target
+	 *            the target node. Can't be null.
+	 * @return a new list of edges. Never returns null.
+	 */
+	public List<Edge> getEdgesBetween(Node source, Node target) {
+		Validate.notNull(source, "The given source node is null");
+		Validate.notNull(target, "The given target node is null");
+
+		final List<Edge> result = new ArrayList<Edge>();
+
+		if (!hasNode(source) || !hasNode(target)) {
+			return result;
+		}
+
+		// scan the smallest adjacency array
+		if (source.getOutDegree() <= target.getInDegree()) {
+			final Edge[] outgoing = source.outgoing();
+
+			for (int i = 0; i < source.getOutDegree(); i++) {
+				if (outgoing[i].getTarget() == target) {
+					result.add(outgoing[i]);
+				}
+			}
+		} else {
+			final Edge[] incoming = target.incoming();
+
+			for (int i = 0; i < target.getInDegree(); i++) {
+				if (incoming[i].getSource() == source) {
+					result.add(incoming[i]);
+				}
+			}
+		}
+
+		return result;
+	}
+
 	public int getEdgeCount() {
 		return this.edges.size();
 	}
 
+	/**
+	 * Removes the transitive edges (that is, the edges u -&gt; v such that v
+	 * can also be reached from u through another node). Typically shrinks
+	 * dependency graphs a lot while preserving the reachability between the
+	 * nodes. The edges inside a cycle and the parallel edges (between the
+	 * same nodes) are kept. The computation runs in the
+	 * common {@link ForkJoinPool}.
+	 *
+	 * @return the number of edges removed.
+	 */
+	public int removeTransitiveEdges() {
+		return removeTransitiveEdges(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Removes the transitive edges. See {@link #removeTransitiveEdges()}.
+	 *
+	 * @param pool
+	 *            the pool where the computation runs. Can be null to run it
+	 *            in the current thread.
+	 * @return the number of edges removed.
+	 */
+	public int removeTransitiveEdges(ForkJoinPool pool) {
+		return new TransitiveReduction(this, pool).apply(this);
+	}
+
 	// --- Node --- //
 
 	public Node addNode(Object data) {
 		// the node data can be null
 
-		final String id = String.format("n%d", nodeSequence.incrementAndGet());
+		final String id = "n" + nodeSequence.incrementAndGet();
 
 		final Node node = new Node(this, id, data);
 
 		this.childNodes.put(node.getId(), node);
 		this.nodes.put(node.getId(), node);
 
+		if (nodesByData != null) {
+			this.nodesByData.add(data, node);
+		}
+
 		return node;
 	}
 	
 	public void removeNode(Node node) {
 		Validate.notNull(node, "The given node is null");
 		
-		if (nodes.containsKey(node.getId())) {
-			// start by removing the edges related to this node
-			for (Iterator<Map.Entry<String, Edge>> it = edges.entrySet().iterator(); it.hasNext();) {
-				final Map.Entry<String, Edge> entry = it.next();
-				final Edge edge = entry.getValue();
-				
-				if ((edge.getSource() == node) || (edge.getTarget() == node)) {
-					// this edge contains the node we're about to remove
-					it.remove();
-				}
+		if (hasNode(node)) {
+			// start by removing the edges related to this node (unlinking an
+			// edge shrinks the adjacency arrays hence the reverse order)
+			while (node.getOutDegree() > 0) {
+				unlink(node.outgoing()[node.getOutDegree() - 1]);
+			}
+			while (node.getInDegree() > 0) {
+				unlink(node.incoming()[node.getInDegree() - 1]);
 			}
-			
+
+			// unlink the node from its parent
+			node.detach();
+			childNodes.remove(node.getId());
+
 			// finally remove the node
 			nodes.remove(node.getId());
+
+			if (nodesByData != null) {
+				this.nodesByData.remove(node.getData(), node);
+			}
 		}
 	}
 	
+	/**
+	 * Returns a copy of the nodes. See {@link #getNodesView()} to avoid the
+	 * copy.
+	 *
+	 * @return a new list of nodes. Never returns null.
+	 */
 	public List<Node> getNodes() {
 		return new ArrayList<Node>(nodes.values());
 	}
 
+	/**
+	 * Returns an unmodifiable live view of the nodes (in insertion order). The
+	 * view reflects the changes made to the graph but mustn't be iterated
+	 * while the graph is modified.
+	 *
+	 * @return a collection of nodes. Never returns null.
+	 */
+	public Collection<Node> getNodesView() {
+		return nodesView;
+	}
+
+	/**
+	 * Invokes the given action for each node (in insertion order) without
+	 * copying the nodes.
+	 *
+	 * @param action
+	 *            the action to invoke. Can't be null.
+	 */
+	public void forEachNode(Consumer<? super Node> action) {
+		Validate.notNull(action, "The given action is null");
+
+		for (Node node : this.nodes.values()) {
+			action.accept(node);
+		}
+	}
+
+	public Spliterator<Node> nodeSpliterator() {
+		return nodesView.spliterator();
+	}
+
+	/**
+	 * Returns a sequential stream over the nodes. Call
+	 * {@link Stream#parallel()} to process the nodes in parallel.
+	 */
+	public Stream<Node> nodeStream() {
+		return nodesView.stream();
+	}
+
 	public Node getNodeById(String id) {
 		Validate.notNull(id, "The given node id is null");
 
@@ -150,6 +414,10 @@ public final class Graph {
 	}
 
 	public Node getNodeByData(Object data) {
+		if (nodesByData != null) {
+			return this.nodesByData.getFirst(data);
+		}
+
 		for (Node node : this.nodes.values()) {
 			if ((node.getData() == data) || ((node.getData() != null) && node.getData().equals(data))) {
 				return node;
@@ -160,7 +428,8 @@ public final class Graph {
 	}
 
 	public boolean hasNode(Node node) {
-		return this.nodes.containsValue(node);
+		// the node must have been created by this graph and not removed since
+		return (node != null) && (node.getGraph() == this) && (this.nodes.get(node.getId()) == node);
 	}
 
 	public int getNodeCount() {
@@ -169,7 +438,7 @@ public final class Graph {
 
 	// --- Miscellaneous --- //
 
-	private void traverse(GraphMLWriter graphWriter, Map<String, String> nodeMappings, Node node, Renderer renderer) throws GraphMLException {
+	static void traverse(GraphMLWriter graphWriter, Node node, Renderer renderer) throws GraphMLException {
 		if (node.isGroup()) {
 			final boolean open;
 
@@ -183,14 +452,12 @@ public final class Graph {
 				open = true;
 			}
 
-			final String nodeId = graphWriter.group(node.getLabel(renderer), open);
-
-			// store the id generated for this node for future lookups
-			nodeMappings.put(node.getId(), nodeId);
+			// the node ids are unique in the graph, reuse them
+			graphWriter.group(node.getId(), node.getLabel(renderer), open, node.getX(), node.getY());
 
 			// handle child nodes
-			for (Node child : node.getChildren()) {
-				traverse(graphWriter, nodeMappings, child, renderer);
+			for (Node child : node.getChildrenView()) {
+				traverse(graphWriter, child, renderer);
 			}
 
 			graphWriter.closeGroup();
@@ -200,10 +467,7 @@ public final class Graph {
 				graphWriter.setNodeStyle(renderer.getNodeStyle(node));
 			}
 
-			final String nodeId = graphWriter.node(node.getLabel(renderer));
-
-			// store the id generated for this node for future lookups
-			nodeMappings.put(node.getId(), nodeId);
+			graphWriter.node(node.getId(), node.getLabel(renderer), node.getX(), node.getY());
 		}
 	}
 
@@ -215,32 +479,103 @@ public final class Graph {
 		// the style renderer can be null
 		Validate.notNull(writer, "The given writer is null");
 
-		final GraphMLWriter graphWriter = new GraphMLWriter(writer);
-		graphWriter.graph();
+		write(new GraphMLWriter(writer), renderer);
+	}
+
+	public void toGraphML(OutputStream stream) throws GraphMLException {
+		toGraphML(stream, (Renderer) null);
+	}
+
+	/**
+	 * Writes the graph into the given stream (encoded in UTF-8).
+	 *
+	 * @param stream
+	 *            the stream where the graph is written. Can't be null.
+	 * @param renderer
+	 *            the renderer used for generating the labels and styles. Can
+	 *            be null.
+	 * @throws GraphMLException
+	 *             if an error occurs when writing the graph.
+	 */
+	public void toGraphML(OutputStream stream, Renderer renderer) throws GraphMLException {
+		// the style renderer can be null
+		Validate.notNull(stream, "The given stream is null");
+
+		write(new GraphMLWriter(stream), renderer);
+	}
+
+	/**
+	 * Writes the graph into the given stream (encoded in UTF-8) in parallel.
+	 * The top-level groups and nodes are split into chunks serialized by the
+	 * given pool into separate buffers, then the edges. The buffers are
+	 * appended in order so the output is identical to the one of
+	 * {@link #toGraphML(OutputStream, Renderer)}.
+	 *
+	 * @param stream
+	 *            the stream where the graph is written. Can't be null.
+	 * @param renderer
+	 *            the renderer used for generating the labels and styles. Can
+	 *            be null. Must be thread-safe since it's called from several
+	 *            threads.
+	 * @param pool
+	 *            the pool where the chunks are serialized. Can't be null.
+	 * @throws GraphMLException
+	 *             if an error occurs when writing the graph.
+	 */
+	public void toGraphML(OutputStream stream, Renderer renderer, ForkJoinPool pool) throws GraphMLException {
+		// the style renderer can be null
+		Validate.notNull(stream, "The given stream is null");
+		Validate.notNull(pool, "The given pool is null");
+
+		final ParallelGraphMLWriter graphWriter = new ParallelGraphMLWriter(stream);
 
-		// map containing the mapping between internal & external node ids
-		final Map<String, String> nodeMappings = new LinkedHashMap<String, String>();
+		try {
+			graphWriter.graph();
 
-		// generate the nodes and groups
-		for (Node node : this.childNodes.values()) {
-			traverse(graphWriter, nodeMappings, node, renderer);
+			new ParallelExport(this, graphWriter, renderer, pool).run();
+
+			graphWriter.closeGraph();
+		} finally {
+			graphWriter.close();
 		}
+	}
 
-		// ... then the edges
-		for (Edge edge : this.edges.values()) {
-			final Node source = edge.getSource();
-			final Node target = edge.getTarget();
+	/**
+	 * Returns the top-level nodes (in insertion order).
+	 */
+	Node[] getChildNodes() {
+		return this.childNodes.values().toArray(new Node[this.childNodes.size()]);
+	}
 
-			if (renderer != null) {
-				// resolve and set the contextual edge style
-				graphWriter.setEdgeStyle(renderer.getEdgeStyle(edge));
+	private void write(GraphMLWriter graphWriter, Renderer renderer) throws GraphMLException {
+		try {
+			graphWriter.graph();
+
+			// generate the nodes and groups
+			for (Node node : this.childNodes.values()) {
+				traverse(graphWriter, node, renderer);
 			}
 
-			graphWriter.edge(nodeMappings.get(source.getId()), nodeMappings.get(target.getId()));
+			// ... then the edges
+			for (Edge edge : this.edges.values()) {
+				writeEdge(graphWriter, edge, renderer);
+			}
+
+			graphWriter.closeGraph();
+		} finally {
+			graphWriter.close();
 		}
+	}
 
-		graphWriter.closeGraph();
-		graphWriter.close();
+	static void writeEdge(GraphMLWriter graphWriter, Edge edge, Renderer renderer) throws GraphMLException {
+		final Node source = edge.getSource();
+		final Node target = edge.getTarget();
+
+		if (renderer != null) {
+			// resolve and set the contextual edge style
+			graphWriter.setEdgeStyle(renderer.getEdgeStyle(edge));
+		}
 
+		graphWriter.edge(source.getId(), target.getId(), edge.getPath());
 	}
 }
\ No newline at end of file
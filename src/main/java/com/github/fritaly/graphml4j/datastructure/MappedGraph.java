@@ -0,0 +1,427 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.datastructure;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.fritaly.graphml4j.GraphMLException;
+import com.github.fritaly.graphml4j.GraphMLWriter;
+import com.github.fritaly.graphml4j.Renderer;
+
+/**
+ * <p>
+ * A graph whose nodes, edges, hierarchy and labels are stored outside of the
+ * Java heap, either in direct buffers or in memory-mapped temporary files
+ * (left to the OS page cache). The heap usage therefore doesn't depend on the
+ * size of the graph. The nodes and edges are identified by their index
+ * (starting at 0).
+ * </p>
+ * <p>
+ * The graph is exported with the same contract as
+ * {@link Graph#toGraphML(Writer, Renderer)}. Since the nodes and edges aren't
+ * objects, the renderer is passed short-lived {@link Node} and {@link Edge}
+ * instances created for the occasion: their data is the label and they have
+ * neither parent nor children nor edges.
+ * </p>
+ * <p>
+ * Note: The graph must be closed to release the memory and delete the
+ * files.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public final class MappedGraph implements Closeable {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int NO_NODE = -1;
+
+	// --- Node records --- //
+
+	private static final int PARENT = 0;
+
+	private static final int FIRST_CHILD = 4;
+
+	private static final int LAST_CHILD = 8;
+
+	private static final int NEXT_SIBLING = 12;
+
+	// the bytes 16 to 19 are unused (padding)
+
+	private static final int LABEL_LENGTH = 20;
+
+	private static final int LABEL_OFFSET = 24;
+
+	private static final int NODE_SIZE = 32;
+
+	// --- Edge records --- //
+
+	private static final int SOURCE = 0;
+
+	private static final int TARGET = 4;
+
+	private static final int EDGE_SIZE = 8;
+
+	private final OffHeapStore nodes;
+
+	private final OffHeapStore edges;
+
+	private final OffHeapStore labels;
+
+	private int nodeCount;
+
+	private int edgeCount;
+
+	/**
+	 * The first and last nodes at the top level of the graph.
+	 */
+	private int firstRoot = NO_NODE, lastRoot = NO_NODE;
+
+	/**
+	 * Graph owning the nodes passed to the renderer.
+	 */
+	private final Graph rendererGraph = new Graph(false);
+
+	private boolean closed;
+
+	/**
+	 * Creates a new graph stored in direct buffers.
+	 */
+	public MappedGraph() {
+		this.nodes = new OffHeapStore(22);
+		this.edges = new OffHeapStore(22);
+		this.labels = new OffHeapStore(22);
+	}
+
+	/**
+	 * Creates a new graph stored in temporary files mapped in memory. The
+	 * files are deleted when the graph is closed.
+	 *
+	 * @param directory
+	 *            the directory where to create the files. Can't be null.
+	 * @throws IOException
+	 *             if the files can't be created.
+	 */
+	public MappedGraph(File directory) throws IOException {
+		Validate.notNull(directory, "The given directory is null");
+
+		this.nodes = new OffHeapStore(26, directory, "graphml4j-nodes");
+		this.edges = new OffHeapStore(26, directory, "graphml4j-edges");
+		this.labels = new OffHeapStore(26, directory, "graphml4j-labels");
+	}
+
+	// --- Node --- //
+
+	/**
+	 * Adds a node at the top level of the graph.
+	 *
+	 * @param label
+	 *            the node's label. Can't be null.
+	 * @return the index of the new node.
+	 */
+	public int addNode(String label) {
+		return addNode(label, NO_NODE);
+	}
+
+	/**
+	 * Adds a node inside the given parent node.
+	 *
+	 * @param label
+	 *            the node's label. Can't be null.
+	 * @param parent
+	 *            the index of the parent node or -1 to add the node at the top
+	 *            level of the graph.
+	 * @return the index of the new node.
+	 */
+	public int addNode(String label, int parent) {
+		Validate.notNull(label, "The given label is null");
+		Validate.isTrue((parent >= NO_NODE) && (parent < nodeCount), "Invalid parent node: " + parent);
+		assertNotClosed();
+
+		final byte[] bytes = label.getBytes(UTF_8);
+		final long labelOffset = labels.allocate(bytes.length);
+
+		labels.put(labelOffset, bytes);
+
+		final int node = nodeCount;
+		final long position = nodes.allocate(NODE_SIZE);
+
+		nodes.putInt(position + PARENT, parent);
+		nodes.putInt(position + FIRST_CHILD, NO_NODE);
+		nodes.putInt(position + LAST_CHILD, NO_NODE);
+		nodes.putInt(position + NEXT_SIBLING, NO_NODE);
+		nodes.putInt(position + LABEL_LENGTH, bytes.length);
+		nodes.putLong(position + LABEL_OFFSET, labelOffset);
+
+		// append the node to the children of its parent
+		if (parent == NO_NODE) {
+			if (lastRoot == NO_NODE) {
+				firstRoot = node;
+			} else {
+				nodes.putInt(record(lastRoot) + NEXT_SIBLING, node);
+			}
+
+			lastRoot = node;
+		} else {
+			final long parentPosition = record(parent);
+			final int lastChild = nodes.getInt(parentPosition + LAST_CHILD);
+
+			if (lastChild == NO_NODE) {
+				nodes.putInt(parentPosition + FIRST_CHILD, node);
+			} else {
+				nodes.putInt(record(lastChild) + NEXT_SIBLING, node);
+			}
+
+			nodes.putInt(parentPosition + LAST_CHILD, node);
+		}
+
+		return nodeCount++;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public String getLabel(int node) {
+		checkNode(node);
+
+		final long position = record(node);
+		final byte[] bytes = new byte[nodes.getInt(position + LABEL_LENGTH)];
+
+		labels.get(nodes.getLong(position + LABEL_OFFSET), bytes);
+
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Returns the parent of the given node or -1 if the node is at the top
+	 * level of the graph.
+	 */
+	public int getParent(int node) {
+		checkNode(node);
+
+		return nodes.getInt(record(node) + PARENT);
+	}
+
+	public boolean isGroup(int node) {
+		checkNode(node);
+
+		return (nodes.getInt(record(node) + FIRST_CHILD) != NO_NODE);
+	}
+
+	private static long record(int node) {
+		return (long) node * NODE_SIZE;
+	}
+
+	private void checkNode(int node) {
+		assertNotClosed();
+
+		if ((node < 0) || (node >= nodeCount)) {
+			throw new IllegalArgumentException("Invalid node: " + node);
+		}
+	}
+
+	// --- Edge --- //
+
+	/**
+	 * Adds an edge between the given nodes.
+	 *
+	 * @return the index of the new edge.
+	 */
+	public int addEdge(int source, int target) {
+		Validate.isTrue((source >= 0) && (source < nodeCount), "Invalid source node: " + source);
+		Validate.isTrue((target >= 0) && (target < nodeCount), "Invalid target node: " + target);
+		assertNotClosed();
+
+		final long position = edges.allocate(EDGE_SIZE);
+
+		edges.putInt(position + SOURCE, source);
+		edges.putInt(position + TARGET, target);
+
+		return edgeCount++;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public int getSource(int edge) {
+		checkEdge(edge);
+
+		return edges.getInt((long) edge * EDGE_SIZE + SOURCE);
+	}
+
+	public int getTarget(int edge) {
+		checkEdge(edge);
+
+		return edges.getInt((long) edge * EDGE_SIZE + TARGET);
+	}
+
+	private void checkEdge(int edge) {
+		assertNotClosed();
+
+		if ((edge < 0) || (edge >= edgeCount)) {
+			throw new IllegalArgumentException("Invalid edge: " + edge);
+		}
+	}
+
+	// --- Miscellaneous --- //
+
+	private Node toNode(int node) {
+		return new Node(rendererGraph, nodeId(node), getLabel(node));
+	}
+
+	public void toGraphML(Writer writer) throws GraphMLException {
+		toGraphML(writer, null);
+	}
+
+	public void toGraphML(Writer writer, Renderer renderer) throws GraphMLException {
+		// the style renderer can be null
+		Validate.notNull(writer, "The given writer is null");
+		assertNotClosed();
+
+		final GraphMLWriter graphWriter = new GraphMLWriter(writer);
+
+		try {
+			write(graphWriter, renderer);
+		} finally {
+			graphWriter.close();
+		}
+	}
+
+	private void write(GraphMLWriter graphWriter, Renderer renderer) throws GraphMLException {
+		graphWriter.graph();
+
+		// stack storing the groups being written and the next child to write
+		// (the top level of the graph being at the bottom)
+		int[] stack = new int[16];
+		int[] cursors = new int[16];
+		int depth = 0;
+
+		stack[0] = NO_NODE;
+		cursors[0] = firstRoot;
+
+		while (depth >= 0) {
+			final int node = cursors[depth];
+
+			if (node == NO_NODE) {
+				// all the children have been written
+				if (stack[depth] != NO_NODE) {
+					graphWriter.closeGroup();
+				}
+
+				depth--;
+				continue;
+			}
+
+			final long position = record(node);
+
+			cursors[depth] = nodes.getInt(position + NEXT_SIBLING);
+
+			final Node rendered = (renderer != null) ? toNode(node) : null;
+			final String label = (renderer != null) ? rendered.getLabel(renderer) : getLabel(node);
+			final int firstChild = nodes.getInt(position + FIRST_CHILD);
+
+			if (firstChild != NO_NODE) {
+				final boolean open;
+
+				if (renderer != null) {
+					// resolve and set the contextual group styles
+					graphWriter.setGroupStyles(renderer.getGroupStyles(rendered));
+
+					open = renderer.isGroupOpen(rendered);
+				} else {
+					// by default, groups are always open
+					open = true;
+				}
+
+				graphWriter.group(nodeId(node), label, open);
+
+				if (++depth == stack.length) {
+					stack = Arrays.copyOf(stack, depth * 2);
+					cursors = Arrays.copyOf(cursors, depth * 2);
+				}
+
+				stack[depth] = node;
+				cursors[depth] = firstChild;
+			} else {
+				if (renderer != null) {
+					// resolve and set the contextual node style
+					graphWriter.setNodeStyle(renderer.getNodeStyle(rendered));
+				}
+
+				graphWriter.node(nodeId(node), label);
+			}
+		}
+
+		// ... then the edges
+		for (int edge = 0; edge < edgeCount; edge++) {
+			final long position = (long) edge * EDGE_SIZE;
+			final int source = edges.getInt(position + SOURCE);
+			final int target = edges.getInt(position + TARGET);
+
+			if (renderer != null) {
+				// resolve and set the contextual edge style
+				graphWriter.setEdgeStyle(renderer.getEdgeStyle(new Edge("e" + edge, toNode(source), toNode(target), null)));
+			}
+
+			graphWriter.edge(nodeId(source), nodeId(target));
+		}
+
+		graphWriter.closeGraph();
+	}
+
+	/**
+	 * Returns the id written for the given node. Like for a {@link Graph},
+	 * the id is derived from the order of creation of the node.
+	 */
+	private static String nodeId(int node) {
+		return "n" + (node + 1);
+	}
+
+	/**
+	 * Releases the memory used by the graph and deletes the files (if any).
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		this.closed = true;
+
+		try {
+			nodes.close();
+			edges.close();
+		} finally {
+			labels.close();
+		}
+	}
+
+	private void assertNotClosed() {
+		if (closed) {
+			throw new IllegalStateException("The graph is closed");
+		}
+	}
+}
@@ -18,13 +18,21 @@ package com.github.fritaly.graphml4j.datastructure;
 
 import com.github.fritaly.graphml4j.Renderer;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 import org.apache.commons.lang.Validate;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @ToString
 public final class Node implements Comparable<Node> {
@@ -32,8 +40,34 @@ public final class Node implements Comparable<Node> {
 	@Getter
 	private final String id;
 
+	/**
+	 * The child nodes (in insertion order unless sorted with
+	 * {@link #sortChildren(Comparator)}). Allocated when the first child is
+	 * added so that the leaves don't pay for it. A removed child leaves a null
+	 * slot which is reclaimed when the array is compacted.
+	 */
 	@ToString.Exclude
-	private final Set<Node> children = new TreeSet<Node>();
+	private Node[] children;
+
+	/**
+	 * The number of slots used in {@link #children} (including the null ones).
+	 */
+	private int childSlots;
+
+	private int childCount;
+
+	/**
+	 * The live view of the children, created on the first call to
+	 * {@link #getChildrenView()}. The reference fits into the padding of the
+	 * object (with compressed oops) hence doesn't make the nodes bigger.
+	 */
+	@ToString.Exclude
+	private Collection<Node> childrenView;
+
+	/**
+	 * The index of this node in the children of its parent.
+	 */
+	private int childIndex;
 
 	@ToString.Exclude
 	private final Graph graph;
@@ -45,6 +79,31 @@ public final class Node implements Comparable<Node> {
 	@Getter
 	private final Object data;
 
+	/**
+	 * The coordinates of the node (typically computed by a layout) used when
+	 * exporting the graph.
+	 */
+	@Getter
+	@Setter
+	private float x, y;
+
+	private static final Edge[] NO_EDGES = new Edge[0];
+
+	/**
+	 * The edges leaving and entering this node (in insertion order). Only the
+	 * first {@link #outgoingCount} (resp. {@link #incomingCount}) entries are
+	 * used.
+	 */
+	@ToString.Exclude
+	private Edge[] outgoing = NO_EDGES;
+
+	private int outgoingCount;
+
+	@ToString.Exclude
+	private Edge[] incoming = NO_EDGES;
+
+	private int incomingCount;
+
 	// TODO Create a class NodeRenderer to generate the label of a node
 
 	Node(Graph graph, String id, Object data) {
@@ -88,7 +147,7 @@ public final class Node implements Comparable<Node> {
 
 		if (this.parent != null) {
 			// if there's a current parent node, unlink the 2 nodes
-			this.parent.children.remove(this);
+			this.parent.removeChild(this);
 		} else {
 			// the parent is the root graph
 			this.graph.childNodes.remove(this.getId());
@@ -98,7 +157,7 @@ public final class Node implements Comparable<Node> {
 
 		if (node != null) {
 			// link the 2 nodes
-			node.children.add(this);
+			node.appendChild(this);
 		} else {
 			// the parent is the root graph
 			this.graph.childNodes.put(this.getId(), this);
@@ -113,11 +172,215 @@ public final class Node implements Comparable<Node> {
 	}
 
 	public boolean isGroup() {
-		return !this.children.isEmpty();
+		return (this.childCount > 0);
+	}
+
+	public int getChildCount() {
+		return childCount;
 	}
 
+	/**
+	 * Returns a copy of the child nodes (in insertion order). See
+	 * {@link #getChildrenView()} to avoid the copy.
+	 *
+	 * @return a new list of nodes. Never returns null.
+	 */
 	public List<Node> getChildren() {
-		return new ArrayList<Node>(this.children);
+		final List<Node> result = new ArrayList<Node>(childCount);
+
+		for (int i = 0; i < childSlots; i++) {
+			if (children[i] != null) {
+				result.add(children[i]);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns an unmodifiable live view of the child nodes (in insertion
+	 * order). The view is created once per node. It reflects the changes made
+	 * to the children but mustn't be iterated while children are removed.
+	 *
+	 * @return a collection of nodes. Never returns null.
+	 */
+	public Collection<Node> getChildrenView() {
+		if (childrenView == null) {
+			// the view is stateless, a race only creates a redundant instance
+			childrenView = new ChildrenView();
+		}
+
+		return childrenView;
+	}
+
+	public void forEachChild(Consumer<? super Node> action) {
+		Validate.notNull(action, "The given action is null");
+
+		for (int i = 0; i < childSlots; i++) {
+			if (children[i] != null) {
+				action.accept(children[i]);
+			}
+		}
+	}
+
+	public Stream<Node> childStream() {
+		return getChildrenView().stream();
+	}
+
+	/**
+	 * Sorts the child nodes with the given comparator. The nodes added
+	 * afterwards are appended after the sorted ones.
+	 *
+	 * @param comparator
+	 *            the comparator defining the order of the child nodes. Can't be
+	 *            null. Use the natural ordering of the nodes to sort them by
+	 *            id.
+	 */
+	public void sortChildren(Comparator<? super Node> comparator) {
+		Validate.notNull(comparator, "The given comparator is null");
+
+		compactChildren();
+
+		if (childCount > 1) {
+			Arrays.sort(children, 0, childCount, comparator);
+
+			for (int i = 0; i < childCount; i++) {
+				children[i].childIndex = i;
+			}
+		}
+	}
+
+	private void appendChild(Node node) {
+		if (children == null) {
+			children = new Node[4];
+		} else if (childSlots == children.length) {
+			if (childCount < childSlots / 2) {
+				// reclaim the slots of the removed children first
+				compactChildren();
+			} else {
+				children = Arrays.copyOf(children, childSlots * 2);
+			}
+		}
+
+		node.childIndex = childSlots;
+
+		children[childSlots++] = node;
+		childCount++;
+	}
+
+	private void removeChild(Node node) {
+		children[node.childIndex] = null;
+		childCount--;
+
+		if (childCount == 0) {
+			// release the array, this node is a leaf again
+			children = null;
+			childSlots = 0;
+		} else if (childCount < childSlots / 2) {
+			compactChildren();
+		}
+	}
+
+	private void compactChildren() {
+		int count = 0;
+
+		for (int i = 0; i < childSlots; i++) {
+			if (children[i] != null) {
+				children[i].childIndex = count;
+				children[count++] = children[i];
+			}
+		}
+
+		Arrays.fill(children, count, childSlots, null);
+
+		this.childSlots = count;
+	}
+
+	/**
+	 * Returns the edges whose source is this node.
+	 *
+	 * @return a new list of edges. Never returns null.
+	 */
+	public List<Edge> getOutgoingEdges() {
+		return toList(outgoing, outgoingCount);
+	}
+
+	/**
+	 * Returns the edges whose target is this node.
+	 *
+	 * @return a new list of edges. Never returns null.
+	 */
+	public List<Edge> getIncomingEdges() {
+		return toList(incoming, incomingCount);
+	}
+
+	public int getOutDegree() {
+		return outgoingCount;
+	}
+
+	public int getInDegree() {
+		return incomingCount;
+	}
+
+	void addOutgoing(Edge edge) {
+		if (outgoingCount == outgoing.length) {
+			outgoing = Arrays.copyOf(outgoing, Math.max(4, outgoingCount * 2));
+		}
+
+		outgoing[outgoingCount++] = edge;
+	}
+
+	void addIncoming(Edge edge) {
+		if (incomingCount == incoming.length) {
+			incoming = Arrays.copyOf(incoming, Math.max(4, incomingCount * 2));
+		}
+
+		incoming[incomingCount++] = edge;
+	}
+
+	void removeOutgoing(Edge edge) {
+		outgoingCount = remove(outgoing, outgoingCount, edge);
+	}
+
+	void removeIncoming(Edge edge) {
+		incomingCount = remove(incoming, incomingCount, edge);
+	}
+
+	/**
+	 * Returns the outgoing edges without copying them. Only the first
+	 * {@link #getOutDegree()} entries are used.
+	 */
+	Edge[] outgoing() {
+		return outgoing;
+	}
+
+	Edge[] incoming() {
+		return incoming;
+	}
+
+	/**
+	 * Removes the given edge from the array (preserving the order of the
+	 * other edges) and returns the new number of edges.
+	 */
+	private static int remove(Edge[] edges, int count, Edge edge) {
+		for (int i = count - 1; i >= 0; i--) {
+			if (edges[i] == edge) {
+				System.arraycopy(edges, i + 1, edges, i, count - i - 1);
+				edges[count - 1] = null;
+
+				return count - 1;
+			}
+		}
+
+		return count;
+	}
+
+	private static List<Edge> toList(Edge[] edges, int count) {
+		if (count == 0) {
+			return Collections.emptyList();
+		}
+
+		return new ArrayList<Edge>(Arrays.asList(edges).subList(0, count));
 	}
 
 	public void addChild(Node node) {
@@ -126,6 +389,53 @@ public final class Node implements Comparable<Node> {
 		Validate.isTrue(this.graph == node.graph, "The given node doesn't belong to the same graph");
 		Validate.isTrue(this != node, "A node can't be its own child or parent");
 
-		this.children.add(node);
+		node.setParent(this);
+	}
+
+	/**
+	 * Unmodifiable live view of the child nodes. The behavior of an iterator
+	 * is undefined if a child is removed while iterating since the removal
+	 * can compact the array of children (and move the slots).
+	 */
+	private final class ChildrenView extends AbstractCollection<Node> {
+
+		@Override
+		public Iterator<Node> iterator() {
+			return new Iterator<Node>() {
+
+				private int index = nextIndex(0);
+
+				private int nextIndex(int from) {
+					while ((from < childSlots) && (children[from] == null)) {
+						from++;
+					}
+
+					return from;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return (index < childSlots);
+				}
+
+				@Override
+				public Node next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					final Node node = children[index];
+
+					index = nextIndex(index + 1);
+
+					return node;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return childCount;
+		}
 	}
 }
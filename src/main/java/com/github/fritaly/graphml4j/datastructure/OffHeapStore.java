@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.datastructure;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * <p>
+ * A growable region of memory located outside of the Java heap, either in
+ * direct {@link ByteBuffer}s or in a memory-mapped (temporary) file. The
+ * region is split into segments of identical size (a power of 2) so that it
+ * can exceed 2 GB. The space is allocated by appending to the region and is
+ * only released when the store is closed.
+ * </p>
+ * <p>
+ * The values read or written with {@link #getInt(long)},
+ * {@link #putInt(long, int)}, {@link #getLong(long)} and
+ * {@link #putLong(long, long)} mustn't straddle two segments, which is the
+ * case when the records stored have a size dividing the segment size.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+final class OffHeapStore implements Closeable {
+
+	private final int segmentShift;
+
+	private final int segmentMask;
+
+	/**
+	 * The file backing the store or null if the store uses direct buffers.
+	 */
+	private final File file;
+
+	private final RandomAccessFile randomAccessFile;
+
+	private ByteBuffer[] segments = new ByteBuffer[16];
+
+	private int segmentCount;
+
+	/**
+	 * The number of bytes allocated so far.
+	 */
+	private long size;
+
+	/**
+	 * Creates a store backed by direct buffers.
+	 *
+	 * @param segmentShift
+	 *            the base 2 logarithm of the segment size.
+	 */
+	OffHeapStore(int segmentShift) {
+		Validate.isTrue((segmentShift >= 3) && (segmentShift <= 30), "Invalid segment shift: " + segmentShift);
+
+		this.segmentShift = segmentShift;
+		this.segmentMask = (1 << segmentShift) - 1;
+		this.file = null;
+		this.randomAccessFile = null;
+	}
+
+	/**
+	 * Creates a store backed by a temporary file created in the given
+	 * directory and deleted when the store is closed.
+	 *
+	 * @param segmentShift
+	 *            the base 2 logarithm of the segment size.
+	 * @param directory
+	 *            the directory where to create the file. Can't be null.
+	 * @param prefix
+	 *            the prefix of the file name. Can't be null.
+	 * @throws IOException
+	 *             if the file can't be created.
+	 */
+	OffHeapStore(int segmentShift, File directory, String prefix) throws IOException {
+		Validate.isTrue((segmentShift >= 3) && (segmentShift <= 30), "Invalid segment shift: " + segmentShift);
+		Validate.notNull(directory, "The given directory is null");
+		Validate.notNull(prefix, "The given prefix is null");
+
+		this.segmentShift = segmentShift;
+		this.segmentMask = (1 << segmentShift) - 1;
+		this.file = File.createTempFile(prefix, ".bin", directory);
+		this.randomAccessFile = new RandomAccessFile(file, "rw");
+	}
+
+	/**
+	 * Allocates the given number of bytes and returns the position of the
+	 * first one.
+	 */
+	long allocate(int length) {
+		final long position = size;
+
+		this.size += length;
+
+		while (((long) segmentCount << segmentShift) < size) {
+			addSegment();
+		}
+
+		return position;
+	}
+
+	private void addSegment() {
+		if (segmentCount == segments.length) {
+			segments = Arrays.copyOf(segments, segmentCount * 2);
+		}
+
+		final int segmentSize = 1 << segmentShift;
+
+		if (randomAccessFile != null) {
+			try {
+				// mapping a region beyond the end of the file extends the file
+				segments[segmentCount] = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE,
+						(long) segmentCount << segmentShift, segmentSize);
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to map file " + file.getAbsolutePath(), e);
+			}
+		} else {
+			segments[segmentCount] = ByteBuffer.allocateDirect(segmentSize);
+		}
+
+		segmentCount++;
+	}
+
+	long size() {
+		return size;
+	}
+
+	int getInt(long position) {
+		return segments[(int) (position >>> segmentShift)].getInt((int) position & segmentMask);
+	}
+
+	void putInt(long position, int value) {
+		segments[(int) (position >>> segmentShift)].putInt((int) position & segmentMask, value);
+	}
+
+	long getLong(long position) {
+		return segments[(int) (position >>> segmentShift)].getLong((int) position & segmentMask);
+	}
+
+	void putLong(long position, long value) {
+		segments[(int) (position >>> segmentShift)].putLong((int) position & segmentMask, value);
+	}
+
+	/**
+	 * Copies the given bytes at the given position (possibly across several
+	 * segments).
+	 */
+	void put(long position, byte[] bytes) {
+		int offset = 0;
+
+		while (offset < bytes.length) {
+			final ByteBuffer buffer = segments[(int) (position >>> segmentShift)].duplicate();
+			final int start = (int) position & segmentMask;
+			final int length = Math.min(bytes.length - offset, buffer.capacity() - start);
+
+			buffer.position(start);
+			buffer.put(bytes, offset, length);
+
+			offset += length;
+			position += length;
+		}
+	}
+
+	/**
+	 * Copies the bytes located at the given position into the given array.
+	 */
+	void get(long position, byte[] bytes) {
+		int offset = 0;
+
+		while (offset < bytes.length) {
+			final ByteBuffer buffer = segments[(int) (position >>> segmentShift)].duplicate();
+			final int start = (int) position & segmentMask;
+			final int length = Math.min(bytes.length - offset, buffer.capacity() - start);
+
+			buffer.position(start);
+			buffer.get(bytes, offset, length);
+
+			offset += length;
+			position += length;
+		}
+	}
+
+	/**
+	 * Releases the segments and deletes the backing file (if any). The mapped
+	 * memory is only released once the segments are garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		this.segments = new ByteBuffer[0];
+		this.segmentCount = 0;
+		this.size = 0;
+
+		if (randomAccessFile != null) {
+			randomAccessFile.close();
+
+			if (!file.delete()) {
+				// the file can't be deleted while mapped on some platforms
+				file.deleteOnExit();
+			}
+		}
+	}
+}
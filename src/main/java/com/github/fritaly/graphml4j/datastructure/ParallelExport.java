@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.datastructure;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.fritaly.graphml4j.GraphMLException;
+import com.github.fritaly.graphml4j.GraphMLWriter;
+import com.github.fritaly.graphml4j.ParallelGraphMLWriter;
+import com.github.fritaly.graphml4j.Renderer;
+
+/**
+ * <p>
+ * Writes a {@link Graph} with a {@link ParallelGraphMLWriter}.
+ * </p>
+ * <p>
+ * The top-level nodes are split into chunks of consecutive nodes (a large
+ * group forming a chunk on its own). The chunks are serialized by the pool
+ * and appended in order, then the edges (also split into chunks). The nodes
+ * are written with their own identifiers and the edges with a sequence
+ * starting at the index of their chunk so the output doesn't depend on the
+ * scheduling. At most a few chunks per thread are buffered at a time.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+final class ParallelExport {
+
+	/**
+	 * The minimal number of nodes (or groups) serialized by a task.
+	 */
+	private static final int NODE_CHUNK_SIZE = 4096;
+
+	/**
+	 * The number of edges serialized by a task.
+	 */
+	private static final int EDGE_CHUNK_SIZE = 8192;
+
+	private final Graph graph;
+
+	private final ParallelGraphMLWriter writer;
+
+	private final Renderer renderer;
+
+	private final ForkJoinPool pool;
+
+	ParallelExport(Graph graph, ParallelGraphMLWriter writer, Renderer renderer, ForkJoinPool pool) {
+		this.graph = graph;
+		this.writer = writer;
+		this.renderer = renderer;
+		this.pool = pool;
+	}
+
+	void run() throws GraphMLException {
+		final Node[] nodes = graph.getChildNodes();
+		final List<ExportTask> tasks = new ArrayList<ExportTask>();
+
+		// split the top-level nodes into chunks
+		int from = 0, chunkSize = 0;
+
+		for (int i = 0; i < nodes.length; i++) {
+			chunkSize += size(nodes[i]);
+
+			if ((chunkSize >= NODE_CHUNK_SIZE) || (i == nodes.length - 1)) {
+				tasks.add(new NodeTask(nodes, from, i + 1));
+
+				from = i + 1;
+				chunkSize = 0;
+			}
+		}
+
+		runInOrder(tasks);
+
+		// ... then the edges (once all the nodes have been registered)
+		final Edge[] edges = graph.getEdgesView().toArray(new Edge[graph.getEdgeCount()]);
+
+		tasks.clear();
+
+		for (int i = 0; i < edges.length; i += EDGE_CHUNK_SIZE) {
+			tasks.add(new EdgeTask(edges, i, Math.min(edges.length, i + EDGE_CHUNK_SIZE)));
+		}
+
+		runInOrder(tasks);
+	}
+
+	/**
+	 * Runs the given tasks in the pool and appends their fragments in order.
+	 * The number of tasks running or waiting to be appended is bounded.
+	 */
+	private void runInOrder(List<ExportTask> tasks) throws GraphMLException {
+		final int window = 2 * pool.getParallelism();
+
+		for (int i = 0; i < Math.min(window, tasks.size()); i++) {
+			pool.execute(tasks.get(i));
+		}
+
+		for (int i = 0; i < tasks.size(); i++) {
+			final ExportTask task = tasks.get(i);
+
+			task.join();
+
+			if (task.error != null) {
+				throw task.error;
+			}
+
+			writer.append(task.fragment);
+
+			// release the task (and its buffer)
+			tasks.set(i, null);
+
+			if (i + window < tasks.size()) {
+				pool.execute(tasks.get(i + window));
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of nodes in the subtree rooted at the given node.
+	 */
+	private static int size(Node node) {
+		int result = 1;
+
+		for (Node child : node.getChildrenView()) {
+			result += size(child);
+		}
+
+		return result;
+	}
+
+	/**
+	 * A task serializing a fragment of the graph.
+	 */
+	private abstract class ExportTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int firstNodeSequence, firstEdgeSequence;
+
+		ParallelGraphMLWriter.Fragment fragment;
+
+		GraphMLException error;
+
+		ExportTask(int firstNodeSequence, int firstEdgeSequence) {
+			this.firstNodeSequence = firstNodeSequence;
+			this.firstEdgeSequence = firstEdgeSequence;
+		}
+
+		@Override
+		protected final void compute() {
+			// create the fragment (and its buffer) only when the task runs
+			this.fragment = writer.fragment(firstNodeSequence, firstEdgeSequence);
+
+			try {
+				write(fragment.getWriter());
+			} catch (GraphMLException e) {
+				this.error = e;
+			}
+		}
+
+		abstract void write(GraphMLWriter graphWriter) throws GraphMLException;
+	}
+
+	private final class NodeTask extends ExportTask {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Node[] nodes;
+
+		private final int from, to;
+
+		NodeTask(Node[] nodes, int from, int to) {
+			super(0, 0);
+
+			this.nodes = nodes;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		void write(GraphMLWriter graphWriter) throws GraphMLException {
+			for (int i = from; i < to; i++) {
+				Graph.traverse(graphWriter, nodes[i], renderer);
+			}
+		}
+	}
+
+	private final class EdgeTask extends ExportTask {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Edge[] edges;
+
+		private final int from, to;
+
+		EdgeTask(Edge[] edges, int from, int to) {
+			super(0, from);
+
+			this.edges = edges;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		void write(GraphMLWriter graphWriter) throws GraphMLException {
+			for (int i = from; i < to; i++) {
+				Graph.writeEdge(graphWriter, edges[i], renderer);
+			}
+		}
+	}
+}
@@ -0,0 +1,413 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.datastructure;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <p>
+ * Removes the edges of a {@link Graph} implied by other paths (that is, the
+ * edges u -&gt; v such that v can also be reached from u through another
+ * node).
+ * </p>
+ * <p>
+ * The cycles are handled by condensing the strongly connected components
+ * (Tarjan's algorithm): the edges inside a component are kept and an edge
+ * between 2 components is removed if the target component can be reached
+ * from the source component through a third one. The components reachable
+ * from each component are stored in a bit set computed from the bit sets of
+ * its successors. The components are processed by layer (a component's layer
+ * being the length of the longest path to a sink) so that all the components
+ * of a layer can be processed in parallel. A bit set is released as soon as
+ * all its predecessors have been processed.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+final class TransitiveReduction {
+
+	/**
+	 * The number of components of a layer below which the layer is processed
+	 * by the current thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 64;
+
+	private final ForkJoinPool pool;
+
+	private final int nodeCount;
+
+	/**
+	 * The adjacency of the nodes (in CSR form): the edges leaving node i are
+	 * stored in the range [offsets[i], offsets[i + 1]).
+	 */
+	private final int[] offsets;
+
+	private final int[] targets;
+
+	private final Edge[] edges;
+
+	/**
+	 * The component of each node. The components are numbered in reverse
+	 * topological order (an edge always goes from a component to a component
+	 * with a lower number).
+	 */
+	private final int[] components;
+
+	private int componentCount;
+
+	/**
+	 * The arcs between the components (in CSR form, without duplicates).
+	 */
+	private int[] arcOffsets, arcTargets;
+
+	/**
+	 * The arc of each edge or -1 for the edges inside a component.
+	 */
+	private int[] edgeArcs;
+
+	/**
+	 * Whether each arc is implied by other arcs.
+	 */
+	private boolean[] redundant;
+
+	/**
+	 * The components reachable from each component (only the components with
+	 * a lower number can be reachable hence the bit set of component c has c
+	 * bits).
+	 */
+	private long[][] reachable;
+
+	TransitiveReduction(Graph graph, ForkJoinPool pool) {
+		this.pool = pool;
+		this.nodeCount = graph.getNodeCount();
+
+		final Map<Node, Integer> indices = new IdentityHashMap<Node, Integer>(nodeCount * 2);
+		final Node[] nodes = new Node[nodeCount];
+
+		for (Node node : graph.getNodesView()) {
+			indices.put(node, indices.size());
+			nodes[indices.size() - 1] = node;
+		}
+
+		this.offsets = new int[nodeCount + 1];
+
+		for (int i = 0; i < nodeCount; i++) {
+			offsets[i + 1] = offsets[i] + nodes[i].getOutDegree();
+		}
+
+		this.targets = new int[offsets[nodeCount]];
+		this.edges = new Edge[offsets[nodeCount]];
+
+		for (int i = 0; i < nodeCount; i++) {
+			final Edge[] outgoing = nodes[i].outgoing();
+
+			for (int j = 0; j < nodes[i].getOutDegree(); j++) {
+				edges[offsets[i] + j] = outgoing[j];
+				targets[offsets[i] + j] = indices.get(outgoing[j].getTarget());
+			}
+		}
+
+		this.components = new int[nodeCount];
+	}
+
+	/**
+	 * Computes the redundant edges and removes them from the given graph.
+	 *
+	 * @return the number of edges removed.
+	 */
+	int apply(Graph graph) {
+		findComponents();
+		condense();
+		reduce();
+
+		int count = 0;
+
+		for (int i = 0; i < edges.length; i++) {
+			if ((edgeArcs[i] >= 0) && redundant[edgeArcs[i]]) {
+				graph.removeEdge(edges[i]);
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Computes the strongly connected components with (an iterative version
+	 * of) Tarjan's algorithm.
+	 */
+	private void findComponents() {
+		final int[] index = new int[nodeCount];
+		final int[] low = new int[nodeCount];
+		final int[] positions = new int[nodeCount];
+		final boolean[] onStack = new boolean[nodeCount];
+		final int[] stack = new int[nodeCount];
+		final int[] calls = new int[nodeCount];
+
+		Arrays.fill(index, -1);
+
+		int counter = 0, stackSize = 0;
+
+		for (int start = 0; start < nodeCount; start++) {
+			if (index[start] >= 0) {
+				continue;
+			}
+
+			int depth = 0;
+
+			calls[depth++] = start;
+			index[start] = low[start] = counter++;
+			positions[start] = offsets[start];
+			stack[stackSize++] = start;
+			onStack[start] = true;
+
+			while (depth > 0) {
+				final int v = calls[depth - 1];
+
+				if (positions[v] < offsets[v + 1]) {
+					final int w = targets[positions[v]++];
+
+					if (index[w] < 0) {
+						calls[depth++] = w;
+						index[w] = low[w] = counter++;
+						positions[w] = offsets[w];
+						stack[stackSize++] = w;
+						onStack[w] = true;
+					} else if (onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+				} else {
+					depth--;
+
+					if (depth > 0) {
+						final int u = calls[depth - 1];
+
+						low[u] = Math.min(low[u], low[v]);
+					}
+					if (low[v] == index[v]) {
+						// v is the root of a component, pop it
+						int w;
+
+						do {
+							w = stack[--stackSize];
+							onStack[w] = false;
+							components[w] = componentCount;
+						} while (w != v);
+
+						componentCount++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the arcs between the components.
+	 */
+	private void condense() {
+		// sort the nodes per component
+		final int[] memberOffsets = new int[componentCount + 1];
+
+		for (int i = 0; i < nodeCount; i++) {
+			memberOffsets[components[i] + 1]++;
+		}
+		for (int c = 0; c < componentCount; c++) {
+			memberOffsets[c + 1] += memberOffsets[c];
+		}
+
+		final int[] members = new int[nodeCount];
+		final int[] positions = Arrays.copyOf(memberOffsets, componentCount);
+
+		for (int i = 0; i < nodeCount; i++) {
+			members[positions[components[i]]++] = i;
+		}
+
+		// the arc from the current component to each component
+		final int[] arcs = new int[componentCount];
+		final int[] marks = new int[componentCount];
+
+		Arrays.fill(marks, -1);
+
+		this.arcOffsets = new int[componentCount + 1];
+		this.arcTargets = new int[Math.max(1, edges.length)];
+		this.edgeArcs = new int[edges.length];
+
+		int arcCount = 0;
+
+		for (int c = 0; c < componentCount; c++) {
+			for (int k = memberOffsets[c]; k < memberOffsets[c + 1]; k++) {
+				final int node = members[k];
+
+				for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+					final int d = components[targets[e]];
+
+					if (d == c) {
+						edgeArcs[e] = -1;
+					} else {
+						if (marks[d] != c) {
+							marks[d] = c;
+							arcs[d] = arcCount;
+							arcTargets[arcCount++] = d;
+						}
+
+						edgeArcs[e] = arcs[d];
+					}
+				}
+			}
+
+			arcOffsets[c + 1] = arcCount;
+		}
+
+		this.redundant = new boolean[arcCount];
+	}
+
+	/**
+	 * Computes the redundant arcs layer by layer.
+	 */
+	private void reduce() {
+		// the layer of each component and the number of predecessors left
+		final int[] layers = new int[componentCount];
+		final int[] predecessors = new int[componentCount];
+		int layerCount = 0;
+
+		for (int c = 0; c < componentCount; c++) {
+			for (int a = arcOffsets[c]; a < arcOffsets[c + 1]; a++) {
+				layers[c] = Math.max(layers[c], layers[arcTargets[a]] + 1);
+				predecessors[arcTargets[a]]++;
+			}
+
+			layerCount = Math.max(layerCount, layers[c] + 1);
+		}
+
+		// sort the components per layer
+		final int[] layerOffsets = new int[layerCount + 1];
+
+		for (int c = 0; c < componentCount; c++) {
+			layerOffsets[layers[c] + 1]++;
+		}
+		for (int l = 0; l < layerCount; l++) {
+			layerOffsets[l + 1] += layerOffsets[l];
+		}
+
+		final int[] sorted = new int[componentCount];
+		final int[] positions = Arrays.copyOf(layerOffsets, layerCount);
+
+		for (int c = 0; c < componentCount; c++) {
+			sorted[positions[layers[c]]++] = c;
+		}
+
+		this.reachable = new long[componentCount][];
+
+		for (int l = 0; l < layerCount; l++) {
+			final LayerTask task = new LayerTask(sorted, layerOffsets[l], layerOffsets[l + 1], predecessors);
+
+			if ((pool == null) || (layerOffsets[l + 1] - layerOffsets[l] <= PARALLEL_THRESHOLD)) {
+				task.compute();
+			} else {
+				pool.invoke(task);
+			}
+
+			// release the bit sets no longer needed
+			for (int k = layerOffsets[l]; k < layerOffsets[l + 1]; k++) {
+				final int c = sorted[k];
+
+				for (int a = arcOffsets[c]; a < arcOffsets[c + 1]; a++) {
+					if (--predecessors[arcTargets[a]] == 0) {
+						reachable[arcTargets[a]] = null;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the components reachable from the given component and the
+	 * redundant arcs leaving it.
+	 */
+	private void reduce(int c, boolean keep) {
+		final long[] bits = new long[(c + 63) >>> 6];
+
+		// the components reachable through a successor
+		for (int a = arcOffsets[c]; a < arcOffsets[c + 1]; a++) {
+			final long[] successor = reachable[arcTargets[a]];
+
+			if (successor != null) {
+				for (int w = 0; w < successor.length; w++) {
+					bits[w] |= successor[w];
+				}
+			}
+		}
+
+		for (int a = arcOffsets[c]; a < arcOffsets[c + 1]; a++) {
+			final int d = arcTargets[a];
+
+			redundant[a] = (bits[d >>> 6] & (1L << d)) != 0;
+		}
+
+		if (keep) {
+			for (int a = arcOffsets[c]; a < arcOffsets[c + 1]; a++) {
+				final int d = arcTargets[a];
+
+				bits[d >>> 6] |= 1L << d;
+			}
+
+			reachable[c] = bits;
+		}
+	}
+
+	/**
+	 * Task processing a range of the components of a layer.
+	 */
+	private final class LayerTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] sorted;
+
+		private final int from, to;
+
+		private final int[] predecessors;
+
+		LayerTask(int[] sorted, int from, int to, int[] predecessors) {
+			this.sorted = sorted;
+			this.from = from;
+			this.to = to;
+			this.predecessors = predecessors;
+		}
+
+		@Override
+		protected void compute() {
+			if ((to - from > PARALLEL_THRESHOLD) && (getPool() != null)) {
+				final int middle = (from + to) >>> 1;
+
+				invokeAll(new LayerTask(sorted, from, middle, predecessors), new LayerTask(sorted, middle, to,
+						predecessors));
+
+				return;
+			}
+
+			for (int k = from; k < to; k++) {
+				// no need to store the bit set of a component without predecessor
+				reduce(sorted[k], predecessors[sorted[k]] > 0);
+			}
+		}
+	}
+}
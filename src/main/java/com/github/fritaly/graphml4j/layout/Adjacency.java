@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout;
+
+/**
+ * Adjacency lists of a graph whose vertices are identified by an index,
+ * stored in a compressed sparse row (CSR) structure: the neighbors of vertex
+ * v are stored in {@link #neighbors} between {@link #offsets}[v] (inclusive)
+ * and {@link #offsets}[v + 1] (exclusive), in the order of the arcs.
+ *
+ * @author francois_ritaly
+ */
+final class Adjacency {
+
+	final int[] offsets;
+
+	final int[] neighbors;
+
+	/**
+	 * The index of the arc leading to each neighbor.
+	 */
+	final int[] arcs;
+
+	/**
+	 * Creates the adjacency lists of the given arcs.
+	 *
+	 * @param vertexCount
+	 *            the number of vertices.
+	 * @param from
+	 *            the vertex each arc leaves.
+	 * @param to
+	 *            the vertex each arc enters.
+	 * @param arcCount
+	 *            the number of arcs.
+	 */
+	Adjacency(int vertexCount, int[] from, int[] to, int arcCount) {
+		this.offsets = new int[vertexCount + 1];
+		this.neighbors = new int[arcCount];
+		this.arcs = new int[arcCount];
+
+		for (int i = 0; i < arcCount; i++) {
+			offsets[from[i] + 1]++;
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+
+		// fill the lists with a cursor per vertex
+		final int[] cursors = offsets.clone();
+
+		for (int i = 0; i < arcCount; i++) {
+			final int index = cursors[from[i]]++;
+
+			neighbors[index] = to[i];
+			arcs[index] = i;
+		}
+	}
+
+	int degree(int vertex) {
+		return offsets[vertex + 1] - offsets[vertex];
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout;
+
+/**
+ * <p>
+ * A spatial index of rectangles (identified by an index) based on a uniform
+ * grid. Each rectangle is registered in the cells it overlaps and the cells
+ * are hashed into buckets stored in a compressed sparse row structure. A
+ * bucket can mix several cells hence the candidates are always checked.
+ * </p>
+ * <p>
+ * The index is immutable once built and can be queried by several threads at
+ * the same time.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+final class GridIndex {
+
+	private final float[] minXs, minYs, maxXs, maxYs;
+
+	private final float cellSize;
+
+	private final int bucketMask;
+
+	private final Adjacency buckets;
+
+	GridIndex(float[] minXs, float[] minYs, float[] maxXs, float[] maxYs, int count, float cellSize) {
+		this.minXs = minXs;
+		this.minYs = minYs;
+		this.maxXs = maxXs;
+		this.maxYs = maxYs;
+		this.cellSize = cellSize;
+
+		int entryCount = 0;
+
+		for (int i = 0; i < count; i++) {
+			entryCount += (cell(maxXs[i]) - cell(minXs[i]) + 1) * (cell(maxYs[i]) - cell(minYs[i]) + 1);
+		}
+
+		this.bucketMask = Integer.highestOneBit(Math.max(16, entryCount * 2 - 1)) * 2 - 1;
+
+		final int[] bucketOfEntry = new int[entryCount];
+		final int[] rectangleOfEntry = new int[entryCount];
+		int entry = 0;
+
+		for (int i = 0; i < count; i++) {
+			for (int column = cell(minXs[i]); column <= cell(maxXs[i]); column++) {
+				for (int row = cell(minYs[i]); row <= cell(maxYs[i]); row++) {
+					bucketOfEntry[entry] = bucket(column, row);
+					rectangleOfEntry[entry++] = i;
+				}
+			}
+		}
+
+		this.buckets = new Adjacency(bucketMask + 1, bucketOfEntry, rectangleOfEntry, entryCount);
+	}
+
+	private int cell(float coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+
+	private int bucket(int column, int row) {
+		final int hash = (column * 0x9E3779B9) ^ (row * 0x85EBCA6B);
+
+		return (hash ^ (hash >>> 16)) & bucketMask;
+	}
+
+	/**
+	 * Counts the rectangles intersecting the given area (the rectangles
+	 * overlapping several cells can be counted several times).
+	 *
+	 * @param excluded1
+	 *            the index of a rectangle to ignore (or -1).
+	 * @param excluded2
+	 *            the index of another rectangle to ignore (or -1).
+	 */
+	int count(float minX, float minY, float maxX, float maxY, int excluded1, int excluded2) {
+		int result = 0;
+
+		for (int column = cell(minX); column <= cell(maxX); column++) {
+			for (int row = cell(minY); row <= cell(maxY); row++) {
+				final int bucket = bucket(column, row);
+
+				for (int i = buckets.offsets[bucket]; i < buckets.offsets[bucket + 1]; i++) {
+					final int rectangle = buckets.neighbors[i];
+
+					if ((rectangle != excluded1) && (rectangle != excluded2) && (minXs[rectangle] < maxX)
+							&& (maxXs[rectangle] > minX) && (minYs[rectangle] < maxY) && (maxYs[rectangle] > minY)) {
+						result++;
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+}
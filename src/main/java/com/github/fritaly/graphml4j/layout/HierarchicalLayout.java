@@ -0,0 +1,495 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.fritaly.graphml4j.datastructure.Graph;
+import com.github.fritaly.graphml4j.datastructure.Node;
+
+/**
+ * <p>
+ * A hierarchical (layered) layout based on the Sugiyama framework. The nodes
+ * are arranged in horizontal layers so that most edges point downwards:
+ * </p>
+ * <ol>
+ * <li>Cycle removal: the edges closing a cycle (found with a depth first
+ * search) are reversed.</li>
+ * <li>Layering: each node is assigned to the layer following the one of its
+ * deepest predecessor (longest path layering). The edges spanning several
+ * layers are split with dummy nodes.</li>
+ * <li>Crossing minimization: the layers are reordered with the barycenter
+ * heuristic, sweeping downwards then upwards. The barycenters of a layer are
+ * computed in parallel with a {@link ForkJoinPool}.</li>
+ * <li>Coordinate assignment: each node is moved towards the average position
+ * of its neighbors while keeping the nodes of a layer apart.</li>
+ * </ol>
+ * <p>
+ * Only the leaf nodes are laid out. A group is positioned at the top left
+ * corner of the bounding box of its child nodes and the edges connected to a
+ * group are ignored. The layout is deterministic whatever the parallelism.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public class HierarchicalLayout implements Layout {
+
+	/**
+	 * The number of vertices below which the barycenters are computed by the
+	 * current thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 4096;
+
+	private float layerSpacing = 80.0f;
+
+	private float nodeSpacing = 60.0f;
+
+	private float groupPadding = 20.0f;
+
+	private int sweeps = 8;
+
+	private ForkJoinPool pool;
+
+	public HierarchicalLayout() {
+	}
+
+	public float getLayerSpacing() {
+		return layerSpacing;
+	}
+
+	/**
+	 * Sets the vertical distance between 2 layers.
+	 */
+	public void setLayerSpacing(float layerSpacing) {
+		Validate.isTrue(layerSpacing > 0, String.format("The given layer spacing (%f) must be positive", layerSpacing));
+
+		this.layerSpacing = layerSpacing;
+	}
+
+	public float getNodeSpacing() {
+		return nodeSpacing;
+	}
+
+	/**
+	 * Sets the minimal horizontal distance between 2 nodes of a layer.
+	 */
+	public void setNodeSpacing(float nodeSpacing) {
+		Validate.isTrue(nodeSpacing > 0, String.format("The given node spacing (%f) must be positive", nodeSpacing));
+
+		this.nodeSpacing = nodeSpacing;
+	}
+
+	public float getGroupPadding() {
+		return groupPadding;
+	}
+
+	/**
+	 * Sets the distance between a group and its child nodes.
+	 */
+	public void setGroupPadding(float groupPadding) {
+		Validate.isTrue(groupPadding >= 0, String.format("The given group padding (%f) can't be negative", groupPadding));
+
+		this.groupPadding = groupPadding;
+	}
+
+	public int getSweeps() {
+		return sweeps;
+	}
+
+	/**
+	 * Sets the number of (downward and upward) sweeps reducing the crossings.
+	 */
+	public void setSweeps(int sweeps) {
+		Validate.isTrue(sweeps >= 0, String.format("The given number of sweeps (%d) can't be negative", sweeps));
+
+		this.sweeps = sweeps;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Sets the pool used for computing the barycenters. Set to null (the
+	 * default) to use the common pool.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void apply(Graph graph) {
+		Validate.notNull(graph, "The given graph is null");
+
+		final LeafGraph leafGraph = new LeafGraph(graph);
+		final Node[] nodes = leafGraph.nodes;
+		final int n = leafGraph.nodeCount;
+		final int m = leafGraph.edgeCount;
+
+		if (n == 0) {
+			return;
+		}
+
+		final int[] sources = leafGraph.sources;
+		final int[] targets = leafGraph.targets;
+
+		removeCycles(n, sources, targets, m);
+
+		final int[] layers = assignLayers(n, sources, targets, m);
+
+		// --- Split the long edges with dummy vertices --- //
+		int vertexCount = n;
+		int segmentCount = 0;
+
+		for (int i = 0; i < m; i++) {
+			final int span = layers[targets[i]] - layers[sources[i]];
+
+			vertexCount += span - 1;
+			segmentCount += span;
+		}
+
+		final int[] vertexLayers = Arrays.copyOf(layers, vertexCount);
+		final int[] uppers = new int[segmentCount];
+		final int[] lowers = new int[segmentCount];
+		int dummy = n;
+		int segment = 0;
+
+		for (int i = 0; i < m; i++) {
+			int upper = sources[i];
+
+			for (int layer = layers[sources[i]] + 1; layer < layers[targets[i]]; layer++) {
+				vertexLayers[dummy] = layer;
+
+				uppers[segment] = upper;
+				lowers[segment++] = dummy;
+
+				upper = dummy++;
+			}
+
+			uppers[segment] = upper;
+			lowers[segment++] = targets[i];
+		}
+
+		final Adjacency down = new Adjacency(vertexCount, uppers, lowers, segmentCount);
+		final Adjacency up = new Adjacency(vertexCount, lowers, uppers, segmentCount);
+
+		// --- Crossing minimization --- //
+		int layerCount = 0;
+
+		for (int v = 0; v < vertexCount; v++) {
+			layerCount = Math.max(layerCount, vertexLayers[v] + 1);
+		}
+
+		// the vertices of each layer, initially in index order
+		final Adjacency order = new Adjacency(layerCount, vertexLayers, identity(vertexCount), vertexCount);
+		final int[] positions = new int[vertexCount];
+
+		for (int layer = 0; layer < layerCount; layer++) {
+			for (int i = order.offsets[layer]; i < order.offsets[layer + 1]; i++) {
+				positions[order.neighbors[i]] = i - order.offsets[layer];
+			}
+		}
+
+		final ForkJoinPool pool = (this.pool != null) ? this.pool : ForkJoinPool.commonPool();
+		final long[] keys = new long[vertexCount];
+
+		for (int sweep = 0; sweep < sweeps; sweep++) {
+			for (int layer = 1; layer < layerCount; layer++) {
+				reorder(pool, order, layer, up, positions, keys);
+			}
+			for (int layer = layerCount - 2; layer >= 0; layer--) {
+				reorder(pool, order, layer, down, positions, keys);
+			}
+		}
+
+		// --- Coordinate assignment --- //
+		final float[] xs = new float[vertexCount];
+
+		for (int v = 0; v < vertexCount; v++) {
+			xs[v] = positions[v] * nodeSpacing;
+		}
+
+		final float[] desired = new float[vertexCount];
+		final float[] lefts = new float[vertexCount];
+
+		for (int pass = 0; pass < 4; pass++) {
+			for (int layer = 1; layer < layerCount; layer++) {
+				straighten(order, layer, up, xs, desired, lefts);
+			}
+			for (int layer = layerCount - 2; layer >= 0; layer--) {
+				straighten(order, layer, down, xs, desired, lefts);
+			}
+		}
+
+		float minX = Float.MAX_VALUE;
+
+		for (int v = 0; v < n; v++) {
+			minX = Math.min(minX, xs[v]);
+		}
+
+		for (int v = 0; v < n; v++) {
+			nodes[v].setX(xs[v] - minX);
+			nodes[v].setY(vertexLayers[v] * layerSpacing);
+		}
+
+		LeafGraph.placeGroups(graph, groupPadding);
+	}
+
+	private static int[] identity(int count) {
+		final int[] result = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			result[i] = i;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Reverses the arcs closing a cycle so that the graph becomes acyclic.
+	 */
+	static void removeCycles(int n, int[] sources, int[] targets, int m) {
+		final Adjacency adjacency = new Adjacency(n, sources, targets, m);
+
+		// 0: not visited, 1: on the stack, 2: done
+		final byte[] states = new byte[n];
+		final int[] cursors = adjacency.offsets.clone();
+		final int[] stack = new int[n];
+		final boolean[] reversed = new boolean[m];
+
+		for (int root = 0; root < n; root++) {
+			if (states[root] != 0) {
+				continue;
+			}
+
+			int depth = 0;
+
+			stack[0] = root;
+			states[root] = 1;
+
+			while (depth >= 0) {
+				final int v = stack[depth];
+
+				if (cursors[v] < adjacency.offsets[v + 1]) {
+					final int index = cursors[v]++;
+					final int w = adjacency.neighbors[index];
+
+					if (states[w] == 0) {
+						states[w] = 1;
+						stack[++depth] = w;
+					} else if (states[w] == 1) {
+						// w is an ancestor of v, this arc closes a cycle
+						reversed[adjacency.arcs[index]] = true;
+					}
+				} else {
+					states[v] = 2;
+					depth--;
+				}
+			}
+		}
+
+		for (int i = 0; i < m; i++) {
+			if (reversed[i]) {
+				final int source = sources[i];
+
+				sources[i] = targets[i];
+				targets[i] = source;
+			}
+		}
+	}
+
+	/**
+	 * Assigns each vertex of the given acyclic graph to a layer (longest path
+	 * from a source) and returns the layers.
+	 */
+	static int[] assignLayers(int n, int[] sources, int[] targets, int m) {
+		final Adjacency adjacency = new Adjacency(n, sources, targets, m);
+		final int[] inDegrees = new int[n];
+		final int[] layers = new int[n];
+		final int[] queue = new int[n];
+		int head = 0, tail = 0;
+
+		for (int i = 0; i < m; i++) {
+			inDegrees[targets[i]]++;
+		}
+		for (int v = 0; v < n; v++) {
+			if (inDegrees[v] == 0) {
+				queue[tail++] = v;
+			}
+		}
+
+		while (head < tail) {
+			final int v = queue[head++];
+
+			for (int i = adjacency.offsets[v]; i < adjacency.offsets[v + 1]; i++) {
+				final int w = adjacency.neighbors[i];
+
+				layers[w] = Math.max(layers[w], layers[v] + 1);
+
+				if (--inDegrees[w] == 0) {
+					queue[tail++] = w;
+				}
+			}
+		}
+
+		return layers;
+	}
+
+	/**
+	 * Sorts the vertices of the given layer by the barycenter of their
+	 * neighbors in the adjacent layer.
+	 */
+	private static void reorder(ForkJoinPool pool, Adjacency order, int layer, Adjacency neighbors, int[] positions,
+			long[] keys) {
+
+		final int from = order.offsets[layer];
+		final int to = order.offsets[layer + 1];
+
+		if (to - from < 2) {
+			return;
+		}
+
+		final BarycenterTask task = new BarycenterTask(order.neighbors, from, to, neighbors, positions, keys);
+
+		if (to - from < PARALLEL_THRESHOLD) {
+			task.compute();
+		} else {
+			pool.invoke(task);
+		}
+
+		// the keys sort the vertices by barycenter then by position
+		Arrays.sort(keys, from, to);
+
+		final int[] vertices = Arrays.copyOfRange(order.neighbors, from, to);
+
+		for (int i = from; i < to; i++) {
+			final int vertex = vertices[(int) keys[i]];
+
+			order.neighbors[i] = vertex;
+			positions[vertex] = i - from;
+		}
+	}
+
+	/**
+	 * Computes the sort key of each vertex of a layer: the barycenter of the
+	 * positions of its neighbors (or its own position if it has none) in the
+	 * high bits and its position in the low bits.
+	 */
+	private static final class BarycenterTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] vertices;
+
+		private final int from, to;
+
+		private final Adjacency neighbors;
+
+		private final int[] positions;
+
+		private final long[] keys;
+
+		BarycenterTask(int[] vertices, int from, int to, Adjacency neighbors, int[] positions, long[] keys) {
+			this.vertices = vertices;
+			this.from = from;
+			this.to = to;
+			this.neighbors = neighbors;
+			this.positions = positions;
+			this.keys = keys;
+		}
+
+		@Override
+		protected void compute() {
+			if ((to - from > PARALLEL_THRESHOLD) && (getPool() != null)) {
+				final int middle = (from + to) >>> 1;
+
+				invokeAll(new BarycenterTask(vertices, from, middle, neighbors, positions, keys),
+						new BarycenterTask(vertices, middle, to, neighbors, positions, keys));
+
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				final int vertex = vertices[i];
+				final int position = positions[vertex];
+				final int degree = neighbors.degree(vertex);
+				final float barycenter;
+
+				if (degree == 0) {
+					barycenter = position;
+				} else {
+					long sum = 0;
+
+					for (int j = neighbors.offsets[vertex]; j < neighbors.offsets[vertex + 1]; j++) {
+						sum += positions[neighbors.neighbors[j]];
+					}
+
+					barycenter = (float) sum / degree;
+				}
+
+				// the barycenter is positive hence its bits sort like the value
+				keys[i] = ((long) Float.floatToIntBits(barycenter) << 32) | position;
+			}
+		}
+	}
+
+	/**
+	 * Moves the vertices of the given layer towards the average position of
+	 * their neighbors in the adjacent layer while keeping their order and the
+	 * node spacing.
+	 */
+	private void straighten(Adjacency order, int layer, Adjacency neighbors, float[] xs, float[] desired, float[] lefts) {
+		final int from = order.offsets[layer];
+		final int to = order.offsets[layer + 1];
+
+		for (int i = from; i < to; i++) {
+			final int vertex = order.neighbors[i];
+			final int degree = neighbors.degree(vertex);
+
+			if (degree == 0) {
+				desired[i] = xs[vertex];
+			} else {
+				float sum = 0;
+
+				for (int j = neighbors.offsets[vertex]; j < neighbors.offsets[vertex + 1]; j++) {
+					sum += xs[neighbors.neighbors[j]];
+				}
+
+				desired[i] = sum / degree;
+			}
+		}
+
+		// place the vertices as close as possible to their desired position,
+		// once pushed from the left and once from the right, and take the
+		// average (which preserves the spacing)
+		for (int i = from; i < to; i++) {
+			lefts[i] = (i == from) ? desired[i] : Math.max(desired[i], lefts[i - 1] + nodeSpacing);
+		}
+
+		float right = Float.MAX_VALUE;
+
+		for (int i = to - 1; i >= from; i--) {
+			right = (i == to - 1) ? desired[i] : Math.min(desired[i], right - nodeSpacing);
+
+			xs[order.neighbors[i]] = (lefts[i] + right) / 2;
+		}
+	}
+}
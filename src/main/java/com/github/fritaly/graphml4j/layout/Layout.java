@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout;
+
+import com.github.fritaly.graphml4j.datastructure.Graph;
+
+/**
+ * A layout computes the coordinates of the nodes of a graph. The coordinates
+ * are stored in the nodes (see
+ * {@link com.github.fritaly.graphml4j.datastructure.Node#setX(float)}) and
+ * written when exporting the graph.
+ *
+ * @author francois_ritaly
+ */
+public interface Layout {
+
+	/**
+	 * Computes and sets the coordinates of the nodes of the given graph.
+	 *
+	 * @param graph
+	 *            the graph to lay out. Can't be null.
+	 */
+	void apply(Graph graph);
+}
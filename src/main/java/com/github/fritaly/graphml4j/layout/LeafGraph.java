@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.github.fritaly.graphml4j.datastructure.Edge;
+import com.github.fritaly.graphml4j.datastructure.Graph;
+import com.github.fritaly.graphml4j.datastructure.Node;
+
+/**
+ * The leaf nodes of a {@link Graph} (identified by an index) and the edges
+ * between them. The loops and the edges connected to a group are ignored.
+ *
+ * @author francois_ritaly
+ */
+final class LeafGraph {
+
+	/**
+	 * The leaf nodes. Only the first {@link #nodeCount} entries are used.
+	 */
+	final Node[] nodes;
+
+	final int nodeCount;
+
+	final int[] sources;
+
+	final int[] targets;
+
+	final int edgeCount;
+
+	LeafGraph(Graph graph) {
+		final Map<Node, Integer> indices = new IdentityHashMap<Node, Integer>();
+
+		this.nodes = new Node[graph.getNodeCount()];
+
+		int n = 0;
+
+		for (Node node : graph.getNodesView()) {
+			if (!node.isGroup()) {
+				indices.put(node, n);
+				nodes[n++] = node;
+			}
+		}
+
+		this.nodeCount = n;
+		this.sources = new int[graph.getEdgeCount()];
+		this.targets = new int[graph.getEdgeCount()];
+
+		int m = 0;
+
+		for (Edge edge : graph.getEdgesView()) {
+			final Integer source = indices.get(edge.getSource());
+			final Integer target = indices.get(edge.getTarget());
+
+			if ((source != null) && (target != null) && (source.intValue() != target.intValue())) {
+				sources[m] = source;
+				targets[m] = target;
+				m++;
+			}
+		}
+
+		this.edgeCount = m;
+	}
+
+	/**
+	 * Positions the groups of the given graph at the top left corner of the
+	 * bounding box of their child nodes. Must be called once the leaf nodes
+	 * have been positioned.
+	 */
+	static void placeGroups(Graph graph, float padding) {
+		for (Node node : graph.getNodesView()) {
+			if (node.isGroup() && !node.hasParent()) {
+				placeGroup(node, padding);
+			}
+		}
+	}
+
+	private static void placeGroup(Node group, float padding) {
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+
+		for (Node child : group.getChildrenView()) {
+			if (child.isGroup()) {
+				placeGroup(child, padding);
+			}
+
+			minX = Math.min(minX, child.getX());
+			minY = Math.min(minY, child.getY());
+		}
+
+		group.setX(minX - padding);
+		group.setY(minY - padding);
+	}
+}
@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.fritaly.graphml4j.datastructure.Graph;
+
+/**
+ * <p>
+ * A force-directed (organic) layout based on the Fruchterman-Reingold
+ * algorithm: the nodes repel each other while the edges pull their nodes
+ * together (the edges are considered undirected). The nodes move a bit at
+ * each iteration, less and less as the layout cools down.
+ * </p>
+ * <p>
+ * The repulsion is approximated with a Barnes-Hut quadtree hence an iteration
+ * costs O(n log n) instead of O(n^2). The forces are computed in parallel with
+ * a {@link ForkJoinPool}. The layout is deterministic whatever the
+ * parallelism unless it's interrupted by the time budget.
+ * </p>
+ * <p>
+ * Only the leaf nodes are laid out. A group is positioned at the top left
+ * corner of the bounding box of its child nodes and the edges connected to a
+ * group are ignored.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public class OrganicLayout implements Layout {
+
+	/**
+	 * The number of nodes below which the forces are computed by the current
+	 * thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1024;
+
+	private float edgeLength = 80.0f;
+
+	private int iterations = 100;
+
+	private long timeBudget;
+
+	private double theta = 0.8;
+
+	private float groupPadding = 20.0f;
+
+	private long seed;
+
+	private ForkJoinPool pool;
+
+	public OrganicLayout() {
+	}
+
+	public float getEdgeLength() {
+		return edgeLength;
+	}
+
+	/**
+	 * Sets the ideal length of an edge, that is, the distance at which the
+	 * repulsion and the attraction between 2 connected nodes balance.
+	 */
+	public void setEdgeLength(float edgeLength) {
+		Validate.isTrue(edgeLength > 0, String.format("The given edge length (%f) must be positive", edgeLength));
+
+		this.edgeLength = edgeLength;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	public void setIterations(int iterations) {
+		Validate.isTrue(iterations > 0, String.format("The given number of iterations (%d) must be positive", iterations));
+
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Returns the maximum time (in milliseconds) spent by the layout or 0 if
+	 * there's no limit.
+	 */
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Sets the maximum time (in milliseconds) spent by the layout. The layout
+	 * stops after the current iteration when the time is over. Set to 0 (the
+	 * default) to run all the iterations.
+	 */
+	public void setTimeBudget(long timeBudget) {
+		Validate.isTrue(timeBudget >= 0, String.format("The given time budget (%d) can't be negative", timeBudget));
+
+		this.timeBudget = timeBudget;
+	}
+
+	public double getTheta() {
+		return theta;
+	}
+
+	/**
+	 * Sets the Barnes-Hut approximation threshold: a group of nodes is
+	 * approximated by its center of mass when its size divided by its
+	 * distance is below theta. 0 computes the exact repulsion.
+	 */
+	public void setTheta(double theta) {
+		Validate.isTrue(theta >= 0, String.format("The given theta (%f) can't be negative", theta));
+
+		this.theta = theta;
+	}
+
+	public float getGroupPadding() {
+		return groupPadding;
+	}
+
+	/**
+	 * Sets the distance between a group and its child nodes.
+	 */
+	public void setGroupPadding(float groupPadding) {
+		Validate.isTrue(groupPadding >= 0, String.format("The given group padding (%f) can't be negative", groupPadding));
+
+		this.groupPadding = groupPadding;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Sets the seed of the (random) initial positions of the nodes.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Sets the pool used for computing the forces. Set to null (the default)
+	 * to use the common pool.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void apply(Graph graph) {
+		Validate.notNull(graph, "The given graph is null");
+
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudget);
+		final LeafGraph leafGraph = new LeafGraph(graph);
+		final int n = leafGraph.nodeCount;
+		final int m = leafGraph.edgeCount;
+
+		if (n == 0) {
+			return;
+		}
+
+		// the edges are undirected: store them in both directions
+		final int[] from = new int[2 * m];
+		final int[] to = new int[2 * m];
+
+		System.arraycopy(leafGraph.sources, 0, from, 0, m);
+		System.arraycopy(leafGraph.targets, 0, from, m, m);
+		System.arraycopy(leafGraph.targets, 0, to, 0, m);
+		System.arraycopy(leafGraph.sources, 0, to, m, m);
+
+		final Adjacency neighbors = new Adjacency(n, from, to, 2 * m);
+
+		// spread the nodes randomly over a square
+		final double side = Math.sqrt(n) * edgeLength;
+		final Random random = new Random(seed);
+		final double[] xs = new double[n];
+		final double[] ys = new double[n];
+
+		for (int i = 0; i < n; i++) {
+			xs[i] = random.nextDouble() * side;
+			ys[i] = random.nextDouble() * side;
+		}
+
+		final ForkJoinPool pool = (this.pool != null) ? this.pool : ForkJoinPool.commonPool();
+		final QuadTree tree = new QuadTree();
+		final double[] dxs = new double[n];
+		final double[] dys = new double[n];
+		final double initialTemperature = Math.max(side / 10, edgeLength);
+
+		for (int iteration = 0; iteration < iterations; iteration++) {
+			if ((timeBudget > 0) && (System.nanoTime() - deadline > 0)) {
+				break;
+			}
+
+			tree.build(xs, ys, n);
+
+			final ForceTask task = new ForceTask(0, n, xs, ys, tree, neighbors, dxs, dys);
+
+			if (n < PARALLEL_THRESHOLD) {
+				task.compute();
+			} else {
+				pool.invoke(task);
+			}
+
+			// move the nodes (by the temperature at most)
+			final double temperature = initialTemperature * (iterations - iteration) / iterations;
+
+			for (int i = 0; i < n; i++) {
+				final double length = Math.sqrt(dxs[i] * dxs[i] + dys[i] * dys[i]);
+
+				if (length > 0) {
+					final double ratio = Math.min(length, temperature) / length;
+
+					xs[i] += dxs[i] * ratio;
+					ys[i] += dys[i] * ratio;
+				}
+			}
+		}
+
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+
+		for (int i = 0; i < n; i++) {
+			minX = Math.min(minX, xs[i]);
+			minY = Math.min(minY, ys[i]);
+		}
+
+		for (int i = 0; i < n; i++) {
+			leafGraph.nodes[i].setX((float) (xs[i] - minX));
+			leafGraph.nodes[i].setY((float) (ys[i] - minY));
+		}
+
+		LeafGraph.placeGroups(graph, groupPadding);
+	}
+
+	/**
+	 * Computes the displacement of a range of nodes: the repulsion of all the
+	 * other nodes (strength k^2 / distance) plus the attraction of the
+	 * neighbors (distance^2 / k).
+	 */
+	private final class ForceTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+
+		private final double[] xs, ys;
+
+		private final QuadTree tree;
+
+		private final Adjacency neighbors;
+
+		private final double[] dxs, dys;
+
+		ForceTask(int from, int to, double[] xs, double[] ys, QuadTree tree, Adjacency neighbors, double[] dxs,
+				double[] dys) {
+
+			this.from = from;
+			this.to = to;
+			this.xs = xs;
+			this.ys = ys;
+			this.tree = tree;
+			this.neighbors = neighbors;
+			this.dxs = dxs;
+			this.dys = dys;
+		}
+
+		@Override
+		protected void compute() {
+			if ((to - from > PARALLEL_THRESHOLD) && (getPool() != null)) {
+				final int middle = (from + to) >>> 1;
+
+				invokeAll(new ForceTask(from, middle, xs, ys, tree, neighbors, dxs, dys),
+						new ForceTask(middle, to, xs, ys, tree, neighbors, dxs, dys));
+
+				return;
+			}
+
+			final double k = edgeLength;
+			final int[] stack = new int[3 * QuadTree.MAX_DEPTH + 4];
+			final double[] force = new double[2];
+
+			for (int i = from; i < to; i++) {
+				final double x = xs[i], y = ys[i];
+
+				tree.repulsion(i, x, y, k * k, theta, stack, force);
+
+				double fx = force[0], fy = force[1];
+
+				for (int j = neighbors.offsets[i]; j < neighbors.offsets[i + 1]; j++) {
+					final int neighbor = neighbors.neighbors[j];
+					final double dx = xs[neighbor] - x;
+					final double dy = ys[neighbor] - y;
+
+					// distance^2 / k along the unit vector
+					final double factor = Math.sqrt(dx * dx + dy * dy) / k;
+
+					fx += dx * factor;
+					fy += dy * factor;
+				}
+
+				dxs[i] = fx;
+				dys[i] = fy;
+			}
+		}
+	}
+}
@@ -0,0 +1,405 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.commons.lang.Validate;
+
+import com.github.fritaly.graphml4j.EdgePath;
+import com.github.fritaly.graphml4j.datastructure.Edge;
+import com.github.fritaly.graphml4j.datastructure.Graph;
+import com.github.fritaly.graphml4j.datastructure.Node;
+
+/**
+ * <p>
+ * Computes orthogonal routes (made of horizontal and vertical segments) for
+ * the edges of a laid out graph and stores them in the edges (see
+ * {@link Edge#getPath()}) so that they're written with the graph.
+ * </p>
+ * <p>
+ * For each edge, the router tries the routes with the fewest bends first:
+ * straight, then L-shaped, then Z-shaped with the middle segment in the
+ * middle of the gap between the nodes or shifted sideways. The first routes
+ * which don't cross any other node (located with a spatial index) win, the
+ * shortest one being chosen. When all of them cross nodes, the route crossing
+ * the fewest is chosen. The edges are routed in parallel with a
+ * {@link ForkJoinPool} (the result doesn't depend on the parallelism).
+ * </p>
+ * <p>
+ * All the leaf nodes are assumed to have the same size. The edges connected
+ * to a group and the loops aren't routed.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public class OrthogonalEdgeRouter {
+
+	/**
+	 * The number of edges below which the edges are routed by the current
+	 * thread.
+	 */
+	private static final int PARALLEL_THRESHOLD = 256;
+
+	/**
+	 * The number of times the middle segment of a route is shifted (on each
+	 * side) to avoid a node.
+	 */
+	private static final int SHIFTS = 8;
+
+	private static final float EPSILON = 0.01f;
+
+	private float nodeWidth = 40.0f;
+
+	private float nodeHeight = 40.0f;
+
+	private float margin = 10.0f;
+
+	private ForkJoinPool pool;
+
+	public OrthogonalEdgeRouter() {
+	}
+
+	public float getNodeWidth() {
+		return nodeWidth;
+	}
+
+	public float getNodeHeight() {
+		return nodeHeight;
+	}
+
+	/**
+	 * Sets the size of the (leaf) nodes. Must match the size of the node
+	 * style.
+	 */
+	public void setNodeSize(float width, float height) {
+		Validate.isTrue(width > 0, String.format("The given width (%f) must be positive", width));
+		Validate.isTrue(height > 0, String.format("The given height (%f) must be positive", height));
+
+		this.nodeWidth = width;
+		this.nodeHeight = height;
+	}
+
+	public float getMargin() {
+		return margin;
+	}
+
+	/**
+	 * Sets the minimal distance between a route and the nodes it avoids.
+	 */
+	public void setMargin(float margin) {
+		Validate.isTrue(margin >= 0, String.format("The given margin (%f) can't be negative", margin));
+
+		this.margin = margin;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Sets the pool used for routing the edges. Set to null (the default) to
+	 * use the common pool.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Computes the routes of the edges of the given graph.
+	 *
+	 * @param graph
+	 *            a graph whose nodes have been laid out. Can't be null.
+	 */
+	public void route(Graph graph) {
+		Validate.notNull(graph, "The given graph is null");
+
+		final Map<Node, Integer> indices = new IdentityHashMap<Node, Integer>();
+		final List<Node> nodes = new ArrayList<Node>();
+
+		for (Node node : graph.getNodesView()) {
+			if (!node.isGroup()) {
+				indices.put(node, nodes.size());
+				nodes.add(node);
+			}
+		}
+
+		final int n = nodes.size();
+		final float[] minXs = new float[n], minYs = new float[n], maxXs = new float[n], maxYs = new float[n];
+
+		for (int i = 0; i < n; i++) {
+			minXs[i] = nodes.get(i).getX();
+			minYs[i] = nodes.get(i).getY();
+			maxXs[i] = minXs[i] + nodeWidth;
+			maxYs[i] = minYs[i] + nodeHeight;
+		}
+
+		final GridIndex index = new GridIndex(minXs, minYs, maxXs, maxYs, n,
+				2 * Math.max(nodeWidth, nodeHeight) + 2 * margin);
+
+		final Edge[] edges = new Edge[graph.getEdgeCount()];
+		final int[] sources = new int[edges.length];
+		final int[] targets = new int[edges.length];
+		int m = 0;
+
+		for (Edge edge : graph.getEdgesView()) {
+			final Integer source = indices.get(edge.getSource());
+			final Integer target = indices.get(edge.getTarget());
+
+			if ((source != null) && (target != null) && (source.intValue() != target.intValue())) {
+				edges[m] = edge;
+				sources[m] = source;
+				targets[m] = target;
+				m++;
+			}
+		}
+
+		final RouteTask task = new RouteTask(0, m, edges, sources, targets, minXs, minYs, index);
+
+		if (m < PARALLEL_THRESHOLD) {
+			task.compute();
+		} else {
+			((pool != null) ? pool : ForkJoinPool.commonPool()).invoke(task);
+		}
+	}
+
+	/**
+	 * A candidate route: the (absolute) coordinates of the source port, of the
+	 * bend points and of the target port.
+	 */
+	private static final class Route {
+
+		final float[] points;
+
+		final int size;
+
+		Route(float... points) {
+			this.points = points;
+			this.size = points.length / 2;
+		}
+
+		float length() {
+			float result = 0;
+
+			for (int i = 1; i < size; i++) {
+				result += Math.abs(points[2 * i] - points[2 * i - 2]) + Math.abs(points[2 * i + 1] - points[2 * i - 1]);
+			}
+
+			return result;
+		}
+	}
+
+	private final class RouteTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+
+		private final Edge[] edges;
+
+		private final int[] sources, targets;
+
+		private final float[] xs, ys;
+
+		private final GridIndex index;
+
+		RouteTask(int from, int to, Edge[] edges, int[] sources, int[] targets, float[] xs, float[] ys, GridIndex index) {
+			this.from = from;
+			this.to = to;
+			this.edges = edges;
+			this.sources = sources;
+			this.targets = targets;
+			this.xs = xs;
+			this.ys = ys;
+			this.index = index;
+		}
+
+		@Override
+		protected void compute() {
+			if ((to - from > PARALLEL_THRESHOLD) && (getPool() != null)) {
+				final int middle = (from + to) >>> 1;
+
+				invokeAll(new RouteTask(from, middle, edges, sources, targets, xs, ys, index),
+						new RouteTask(middle, to, edges, sources, targets, xs, ys, index));
+
+				return;
+			}
+
+			final List<Route> candidates = new ArrayList<Route>();
+
+			for (int i = from; i < to; i++) {
+				edges[i].setPath(route(sources[i], targets[i], candidates));
+			}
+		}
+
+		private EdgePath route(int source, int target, List<Route> candidates) {
+			final float hw = nodeWidth / 2, hh = nodeHeight / 2;
+			final float x1 = xs[source] + hw, y1 = ys[source] + hh;
+			final float x2 = xs[target] + hw, y2 = ys[target] + hh;
+
+			Route best = null;
+			int bestCrossings = Integer.MAX_VALUE;
+
+			// try the routes by increasing number of bends
+			for (int bends = 0; bends <= 3; bends++) {
+				candidates.clear();
+
+				if (bends == 0) {
+					if (Math.abs(x1 - x2) < EPSILON) {
+						final float sign = Math.signum(y2 - y1);
+
+						candidates.add(new Route(x1, y1 + sign * hh, x2, y2 - sign * hh));
+					} else if (Math.abs(y1 - y2) < EPSILON) {
+						final float sign = Math.signum(x2 - x1);
+
+						candidates.add(new Route(x1 + sign * hw, y1, x2 - sign * hw, y2));
+					}
+				} else if (bends == 1) {
+					if ((Math.abs(x2 - x1) > hw) && (Math.abs(y2 - y1) > hh)) {
+						final float sx = Math.signum(x2 - x1), sy = Math.signum(y2 - y1);
+
+						// horizontally then vertically
+						candidates.add(new Route(x1 + sx * hw, y1, x2, y1, x2, y2 - sy * hh));
+
+						// vertically then horizontally
+						candidates.add(new Route(x1, y1 + sy * hh, x1, y2, x2 - sx * hw, y2));
+					}
+				} else if (bends == 2) {
+					addZRoutes(candidates, x1, y1, x2, y2, 0);
+				} else {
+					for (int shift = 1; shift <= SHIFTS; shift++) {
+						addZRoutes(candidates, x1, y1, x2, y2, shift);
+						addZRoutes(candidates, x1, y1, x2, y2, -shift);
+					}
+				}
+
+				boolean found = false;
+
+				for (Route candidate : candidates) {
+					final int crossings = crossings(candidate, source, target);
+
+					if ((crossings < bestCrossings)
+							|| ((crossings == bestCrossings) && (crossings == 0) && (candidate.length() < best.length()))) {
+
+						best = candidate;
+						bestCrossings = crossings;
+					}
+
+					found |= (crossings == 0);
+				}
+
+				if (found) {
+					break;
+				}
+			}
+
+			if (best == null) {
+				// the nodes overlap
+				return EdgePath.STRAIGHT;
+			}
+
+			final float[] bendPoints = new float[2 * (best.size - 2)];
+
+			System.arraycopy(best.points, 2, bendPoints, 0, bendPoints.length);
+
+			return new EdgePath(best.points[0] - x1, best.points[1] - y1, best.points[2 * best.size - 2] - x2,
+					best.points[2 * best.size - 1] - y2, bendPoints);
+		}
+
+		/**
+		 * Adds the Z-shaped routes (vertical-horizontal-vertical and
+		 * horizontal-vertical-horizontal) whose middle segment is in the gap
+		 * between the nodes (shifted by the given number of steps) or, if the
+		 * nodes overlap, beyond them.
+		 */
+		private void addZRoutes(List<Route> candidates, float x1, float y1, float x2, float y2, int shift) {
+			final float hw = nodeWidth / 2, hh = nodeHeight / 2;
+			final float step = Math.max(margin, 1.0f) * 2;
+
+			// vertical-horizontal-vertical (the middle segment is horizontal)
+			if (Math.abs(y2 - y1) > 2 * hh) {
+				final float sy = Math.signum(y2 - y1);
+
+				addVHV(candidates, x1, y1, x2, y2, (y1 + y2) / 2 + shift * step, sy, sy);
+			} else {
+				// go round the nodes from below or from above
+				addVHV(candidates, x1, y1, x2, y2, Math.max(y1, y2) + hh + step * (1 + Math.abs(shift)), 1, -1);
+				addVHV(candidates, x1, y1, x2, y2, Math.min(y1, y2) - hh - step * (1 + Math.abs(shift)), -1, 1);
+			}
+
+			// horizontal-vertical-horizontal (the middle segment is vertical)
+			if (Math.abs(x2 - x1) > 2 * hw) {
+				final float sx = Math.signum(x2 - x1);
+
+				addHVH(candidates, x1, y1, x2, y2, (x1 + x2) / 2 + shift * step, sx, sx);
+			} else {
+				addHVH(candidates, x1, y1, x2, y2, Math.max(x1, x2) + hw + step * (1 + Math.abs(shift)), 1, -1);
+				addHVH(candidates, x1, y1, x2, y2, Math.min(x1, x2) - hw - step * (1 + Math.abs(shift)), -1, 1);
+			}
+		}
+
+		/**
+		 * Adds the route leaving the source vertically (in the given
+		 * direction), following the horizontal channel and entering the target
+		 * vertically (in the given direction) if the channel is outside of
+		 * both nodes.
+		 */
+		private void addVHV(List<Route> candidates, float x1, float y1, float x2, float y2, float channel,
+				float sourceDirection, float targetDirection) {
+
+			final float hh = nodeHeight / 2;
+
+			if (((channel - y1) * sourceDirection > hh) && ((y2 - channel) * targetDirection > hh)) {
+				candidates.add(new Route(x1, y1 + sourceDirection * hh, x1, channel, x2, channel, x2, y2 - targetDirection
+						* hh));
+			}
+		}
+
+		private void addHVH(List<Route> candidates, float x1, float y1, float x2, float y2, float channel,
+				float sourceDirection, float targetDirection) {
+
+			final float hw = nodeWidth / 2;
+
+			if (((channel - x1) * sourceDirection > hw) && ((x2 - channel) * targetDirection > hw)) {
+				candidates.add(new Route(x1 + sourceDirection * hw, y1, channel, y1, channel, y2, x2 - targetDirection
+						* hw, y2));
+			}
+		}
+
+		/**
+		 * Counts the nodes (other than the given ones) crossed by the route.
+		 */
+		private int crossings(Route route, int source, int target) {
+			int result = 0;
+
+			for (int i = 1; i < route.size; i++) {
+				final float ax = route.points[2 * i - 2], ay = route.points[2 * i - 1];
+				final float bx = route.points[2 * i], by = route.points[2 * i + 1];
+
+				result += index.count(Math.min(ax, bx) - margin, Math.min(ay, by) - margin, Math.max(ax, bx) + margin,
+						Math.max(ay, by) + margin, source, target);
+			}
+
+			return result;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A quadtree storing points (identified by an index) and the center of mass
+ * of each cell, used to approximate the repulsion between n points in
+ * O(n log n) (Barnes-Hut). The cells are stored in parallel arrays and the
+ * tree can be rebuilt without allocating.
+ * </p>
+ * <p>
+ * The tree is built by a single thread and can then be queried by several
+ * threads at the same time.
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+final class QuadTree {
+
+	/**
+	 * The depth beyond which the cells aren't split (the points being almost
+	 * identical). Such a cell can store several points.
+	 */
+	static final int MAX_DEPTH = 48;
+
+	private static final int EMPTY = -1;
+
+	/**
+	 * A cell storing several points.
+	 */
+	private static final int SEVERAL = -2;
+
+	private int cellCount;
+
+	// --- Cells --- //
+
+	/**
+	 * The top left corner and the size of each cell.
+	 */
+	private double[] minXs, minYs, sizes;
+
+	/**
+	 * The sum of the coordinates of the points of each cell.
+	 */
+	private double[] sumXs, sumYs;
+
+	/**
+	 * The number of points of each cell.
+	 */
+	private int[] masses;
+
+	/**
+	 * The index of the first of the 4 children of each cell or -1 for a leaf
+	 * cell.
+	 */
+	private int[] children;
+
+	/**
+	 * The point stored in each leaf cell or {@link #EMPTY} or
+	 * {@link #SEVERAL}.
+	 */
+	private int[] points;
+
+	QuadTree() {
+		allocate(64);
+	}
+
+	private void allocate(int capacity) {
+		minXs = (minXs == null) ? new double[capacity] : Arrays.copyOf(minXs, capacity);
+		minYs = (minYs == null) ? new double[capacity] : Arrays.copyOf(minYs, capacity);
+		sizes = (sizes == null) ? new double[capacity] : Arrays.copyOf(sizes, capacity);
+		sumXs = (sumXs == null) ? new double[capacity] : Arrays.copyOf(sumXs, capacity);
+		sumYs = (sumYs == null) ? new double[capacity] : Arrays.copyOf(sumYs, capacity);
+		masses = (masses == null) ? new int[capacity] : Arrays.copyOf(masses, capacity);
+		children = (children == null) ? new int[capacity] : Arrays.copyOf(children, capacity);
+		points = (points == null) ? new int[capacity] : Arrays.copyOf(points, capacity);
+	}
+
+	private int newCell(double minX, double minY, double size) {
+		if (cellCount == minXs.length) {
+			allocate(cellCount * 2);
+		}
+
+		final int cell = cellCount++;
+
+		minXs[cell] = minX;
+		minYs[cell] = minY;
+		sizes[cell] = size;
+		sumXs[cell] = 0;
+		sumYs[cell] = 0;
+		masses[cell] = 0;
+		children[cell] = EMPTY;
+		points[cell] = EMPTY;
+
+		return cell;
+	}
+
+	/**
+	 * Rebuilds the tree with the given points.
+	 */
+	void build(double[] xs, double[] ys, int count) {
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+
+		for (int i = 0; i < count; i++) {
+			minX = Math.min(minX, xs[i]);
+			minY = Math.min(minY, ys[i]);
+			maxX = Math.max(maxX, xs[i]);
+			maxY = Math.max(maxY, ys[i]);
+		}
+
+		this.cellCount = 0;
+
+		newCell(minX, minY, Math.max(Math.max(maxX - minX, maxY - minY), 1.0) * 1.0001);
+
+		for (int i = 0; i < count; i++) {
+			insert(i, xs, ys);
+		}
+	}
+
+	private void insert(int point, double[] xs, double[] ys) {
+		final double x = xs[point], y = ys[point];
+		int cell = 0;
+
+		for (int depth = 0; ; depth++) {
+			sumXs[cell] += x;
+			sumYs[cell] += y;
+			masses[cell]++;
+
+			if (children[cell] != EMPTY) {
+				cell = children[cell] + quadrant(cell, x, y);
+				continue;
+			}
+			if (points[cell] == EMPTY) {
+				points[cell] = point;
+				return;
+			}
+			if ((points[cell] == SEVERAL) || (depth == MAX_DEPTH)) {
+				points[cell] = SEVERAL;
+				return;
+			}
+
+			// split the cell and move its point to the matching child
+			final int previous = points[cell];
+			final double half = sizes[cell] / 2;
+			final int first = newCell(minXs[cell], minYs[cell], half);
+
+			newCell(minXs[cell] + half, minYs[cell], half);
+			newCell(minXs[cell], minYs[cell] + half, half);
+			newCell(minXs[cell] + half, minYs[cell] + half, half);
+
+			children[cell] = first;
+			points[cell] = EMPTY;
+
+			final int child = first + quadrant(cell, xs[previous], ys[previous]);
+
+			sumXs[child] = xs[previous];
+			sumYs[child] = ys[previous];
+			masses[child] = 1;
+			points[child] = previous;
+
+			cell = first + quadrant(cell, x, y);
+		}
+	}
+
+	private int quadrant(int cell, double x, double y) {
+		final double half = sizes[cell] / 2;
+
+		return ((x >= minXs[cell] + half) ? 1 : 0) + ((y >= minYs[cell] + half) ? 2 : 0);
+	}
+
+	/**
+	 * Computes the repulsion exerted on the given point by all the others,
+	 * each one pushing with a force strength / distance (the cells far
+	 * enough being approximated by their center of mass).
+	 *
+	 * @param theta
+	 *            the ratio size / distance below which a cell is approximated.
+	 * @param stack
+	 *            a work array of size 3 * {@link #MAX_DEPTH} + 4 at least.
+	 * @param force
+	 *            the array where to store the force (x and y).
+	 */
+	void repulsion(int point, double x, double y, double strength, double theta, int[] stack, double[] force) {
+		double fx = 0, fy = 0;
+		int top = 0;
+
+		stack[top++] = 0;
+
+		while (top > 0) {
+			final int cell = stack[--top];
+			final int mass = masses[cell];
+
+			if ((mass == 0) || (points[cell] == point)) {
+				continue;
+			}
+
+			final double dx = x - sumXs[cell] / mass;
+			final double dy = y - sumYs[cell] / mass;
+			final double distanceSquared = dx * dx + dy * dy;
+
+			if ((children[cell] == EMPTY) || (sizes[cell] * sizes[cell] < theta * theta * distanceSquared)) {
+				if (distanceSquared > 1e-12) {
+					// strength * mass / distance along the unit vector
+					final double factor = strength * mass / distanceSquared;
+
+					fx += dx * factor;
+					fy += dy * factor;
+				} else {
+					// points at the same position (including a cell storing
+					// this point and others): push apart in a direction
+					// depending on the point
+					fx += strength * Math.cos(point);
+					fy += strength * Math.sin(point);
+				}
+			} else {
+				final int first = children[cell];
+
+				stack[top++] = first;
+				stack[top++] = first + 1;
+				stack[top++] = first + 2;
+				stack[top++] = first + 3;
+			}
+		}
+
+		force[0] = fx;
+		force[1] = fy;
+	}
+}
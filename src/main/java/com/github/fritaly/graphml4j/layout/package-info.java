@@ -0,0 +1,5 @@
+/**
+ * This package provides layouts computing the coordinates of the nodes of a
+ * {@link com.github.fritaly.graphml4j.datastructure.Graph}.
+ */
+package com.github.fritaly.graphml4j.layout;
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.samples;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import com.github.fritaly.graphml4j.GraphMLWriter;
+import com.github.fritaly.graphml4j.ParallelGZIPOutputStream;
+
+/**
+ * <p>
+ * This sample generates a large graph into a ".graphmlz" file (the GZIP
+ * compressed GraphML format supported by yEd) and compares the time taken when
+ * compressing with a {@link GZIPOutputStream} (single thread) and with a
+ * {@link ParallelGZIPOutputStream}.
+ * </p>
+ * <p>
+ * Instructions:
+ * <ul>
+ * <li>Execute this sample with an output directory and (optionally) the
+ * number of nodes to generate (1,000,000 by default)</li>
+ * <li>Open one of the generated files in yEd</li>
+ * </ul>
+ * </p>
+ *
+ * @author francois_ritaly
+ */
+public class CompressedGraph {
+
+	private static void writeGraph(OutputStream stream, int nodeCount) throws Exception {
+		final GraphMLWriter graphWriter = new GraphMLWriter(stream);
+
+		try {
+			graphWriter.graph();
+
+			final String[] nodeIds = new String[nodeCount];
+
+			for (int i = 0; i < nodeCount; i++) {
+				nodeIds[i] = graphWriter.node("Node #" + i);
+			}
+
+			// Use the same seed so that both files are identical once decompressed
+			final Random random = new Random(nodeCount);
+
+			for (int i = 0; i < nodeCount; i++) {
+				graphWriter.edge(nodeIds[i], nodeIds[random.nextInt(nodeCount)]);
+			}
+
+			graphWriter.closeGraph();
+		} finally {
+			// Closing the writer closes the (compressed) stream
+			graphWriter.close();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if ((args.length < 1) || (args.length > 2)) {
+			System.out.println(String.format("%s <output-directory> [<node-count>]",
+					CompressedGraph.class.getSimpleName()));
+			System.exit(1);
+		}
+
+		final File directory = new File(args[0]);
+		final int nodeCount = (args.length == 2) ? Integer.parseInt(args[1]) : 1000000;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalStateException("Unable to create directory " + directory.getAbsolutePath());
+		}
+
+		final File file1 = new File(directory, "graph-gzip.graphmlz");
+		final File file2 = new File(directory, "graph-parallel-gzip.graphmlz");
+
+		// Run twice to warm up the JVM
+		for (int run = 1; run <= 2; run++) {
+			System.out.println(String.format("Run #%d (%d nodes) ...", run, nodeCount));
+
+			long start = System.nanoTime();
+
+			writeGraph(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file1)), 64 * 1024),
+					nodeCount);
+
+			System.out.println(String.format("GZIPOutputStream: %d ms, %d bytes",
+					(System.nanoTime() - start) / 1000000, file1.length()));
+
+			start = System.nanoTime();
+
+			writeGraph(new ParallelGZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file2))), nodeCount);
+
+			System.out.println(String.format("ParallelGZIPOutputStream (%d threads): %d ms, %d bytes",
+					Runtime.getRuntime().availableProcessors(), (System.nanoTime() - start) / 1000000,
+					file2.length()));
+		}
+
+		System.out.println("Done");
+	}
+}
@@ -21,9 +21,7 @@ import java.io.FileWriter;
 import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.io.Reader;
-import java.util.Map;
 import java.util.Stack;
-import java.util.TreeMap;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -127,9 +125,6 @@ public class GradleDependencies {
 			// Open the graph
 			graphWriter.graph();
 
-			// Map storing the node identifiers per label
-			final Map<String, String> nodeIdsByLabel = new TreeMap<String, String>();
-
 			while ((line = lineReader.readLine()) != null) {
 				// Determine the depth of the current dependency inside the
 				// graph. The depth can be inferred from the indentation used by
@@ -155,14 +150,15 @@ public class GradleDependencies {
 				// version) tuple
 				final String label = computeLabel(line);
 
+				// The label identifies the dependency, use it as the node id
+				final String nodeId = label;
+
 				// Has this dependency already been added to the graph ?
-				if (!nodeIdsByLabel.containsKey(label)) {
+				if (!graphWriter.hasNode(nodeId)) {
 					// No, add the node
-					nodeIdsByLabel.put(label, graphWriter.node(label));
+					graphWriter.node(nodeId, label);
 				}
 
-				final String nodeId = nodeIdsByLabel.get(label);
-
 				parentIds.push(nodeId);
 
 				if (parentIds.size() > 1) {
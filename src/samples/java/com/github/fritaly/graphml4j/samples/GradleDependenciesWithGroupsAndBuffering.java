@@ -187,6 +187,9 @@ public class GradleDependenciesWithGroupsAndBuffering {
 				}
 			}
 
+			// The dependencies implied by other dependencies clutter the graph
+			graph.removeTransitiveEdges();
+
 			// Create the groups after creating the nodes & edges
 			for (Node node : graph.getNodes()) {
 				final Artifact artifact = (Artifact) node.getData();
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j
+
+import static org.junit.Assert.*
+
+import java.awt.Color
+import java.util.concurrent.CountDownLatch
+
+import org.junit.Test
+
+public class AsyncGraphMLWriterTest {
+
+	private static void writeGraph(writer) {
+		writer.graph()
+
+		def n1 = writer.node("N1 <&>")
+		def n2 = writer.node("N2", 1.5f, 2.5f)
+
+		def nodeStyle = new NodeStyle()
+		nodeStyle.setFillColor(Color.RED)
+		writer.setNodeStyle(nodeStyle)
+
+		// Changing the style once set has no effect
+		nodeStyle.setFillColor(Color.BLUE)
+
+		def group = writer.group("G1", true)
+		def n3 = writer.node("N3")
+
+		writer.group("G2", false, 10.0f, 20.0f)
+
+		def n4 = writer.node("N4")
+
+		writer.closeGroup()
+		writer.closeGroup()
+
+		writer.setEdgeStyle(EdgeStyle.builder().color(Color.GREEN).build())
+
+		for (int i = 0; i < 100; i++) {
+			writer.edge(n1, n2)
+			writer.edge(n3, n4)
+			writer.edge(n4, group)
+		}
+
+		writer.closeGraph()
+		writer.close()
+	}
+
+	@Test
+	public void "the async writer should generate the same document"() throws Exception {
+		def expected = new ByteArrayOutputStream()
+
+		writeGraph(new GraphMLWriter(expected))
+
+		[1, 2, 16, AsyncGraphMLWriter.DEFAULT_CAPACITY].each { capacity ->
+			def actual = new ByteArrayOutputStream()
+
+			writeGraph(new AsyncGraphMLWriter(new GraphMLWriter(actual), capacity, AsyncGraphMLWriter.Overflow.BLOCK))
+
+			assertEquals("Capacity: ${capacity}", expected.toString("UTF-8"), actual.toString("UTF-8"))
+		}
+	}
+
+	@Test
+	public void "the ids should be returned synchronously"() throws Exception {
+		def writer = new AsyncGraphMLWriter(new GraphMLWriter(new ByteArrayOutputStream()))
+
+		writer.graph()
+
+		assertEquals("n0", writer.node("N1"))
+		assertEquals("n1", writer.group("G1", true))
+		assertEquals("n1::n2", writer.node("N2"))
+		writer.closeGroup()
+		assertEquals("e0", writer.edge("n0", "n1::n2"))
+
+		writer.closeGraph()
+		writer.close()
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void "creating an edge to an unknown node should fail synchronously"() throws Exception {
+		def writer = new AsyncGraphMLWriter(new GraphMLWriter(new ByteArrayOutputStream()))
+
+		writer.graph()
+		writer.edge(writer.node("N1"), "n1")
+	}
+
+	@Test
+	public void "the errors should be reported to the caller"() throws Exception {
+		def stream = new OutputStream() {
+			@Override
+			void write(int b) throws IOException {
+				throw new IOException("Disk full")
+			}
+
+			@Override
+			void write(byte[] b, int off, int len) throws IOException {
+				throw new IOException("Disk full")
+			}
+		}
+
+		def writer = new AsyncGraphMLWriter(new GraphMLWriter(stream))
+
+		try {
+			writer.graph()
+
+			// Write enough nodes for the output buffer to be flushed
+			for (int i = 0; i < 1000; i++) {
+				writer.node("Node #${i}".toString())
+			}
+
+			writer.closeGraph()
+
+			fail("The error should have been reported")
+		} catch (GraphMLException e) {
+			// Expected
+		}
+
+		try {
+			writer.close()
+
+			fail("The error should have been reported")
+		} catch (GraphMLException e) {
+			// Expected
+		}
+
+		// The background thread must have stopped anyway
+		assertFalse(writer.@consumer.isAlive())
+	}
+
+	@Test
+	public void "a full buffer should fail with the FAIL overflow"() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1)
+
+		def stream = new OutputStream() {
+			@Override
+			void write(int b) throws IOException {
+				latch.await()
+			}
+
+			@Override
+			void write(byte[] b, int off, int len) throws IOException {
+				latch.await()
+			}
+		}
+
+		def writer = new AsyncGraphMLWriter(new GraphMLWriter(stream), 4, AsyncGraphMLWriter.Overflow.FAIL)
+
+		writer.graph()
+
+		try {
+			// The background thread blocks once the output buffer is full
+			for (int i = 0; i < 100000; i++) {
+				writer.node("Node #${i}".toString())
+			}
+
+			fail("The buffer should be full")
+		} catch (GraphMLException e) {
+			assertEquals("The command buffer is full", e.getMessage())
+		}
+
+		// Unblock the background thread a bit later
+		Thread.start {
+			Thread.sleep(100)
+			latch.countDown()
+		}
+
+		// Closing the graph waits for room while the buffer is still full
+		writer.closeGraph()
+		writer.close()
+
+		assertFalse(writer.@consumer.isAlive())
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void "the delegate writer must be in its initial state"() throws Exception {
+		def graphWriter = new GraphMLWriter(new ByteArrayOutputStream())
+		graphWriter.graph()
+
+		new AsyncGraphMLWriter(graphWriter)
+	}
+}
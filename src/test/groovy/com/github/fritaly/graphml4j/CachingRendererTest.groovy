@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j
+
+import static org.junit.Assert.*
+
+import java.awt.Color
+
+import org.junit.Test
+
+import com.github.fritaly.graphml4j.datastructure.Graph
+
+public class CachingRendererTest {
+
+	/**
+	 * Renderer coloring the nodes according to the class of their data and
+	 * counting the styles computed.
+	 */
+	private static class CountingRenderer extends DefaultRenderer {
+
+		int nodeStyleCount, edgeStyleCount
+
+		@Override
+		NodeStyle getNodeStyle(com.github.fritaly.graphml4j.datastructure.Node node) {
+			nodeStyleCount++
+
+			def style = new NodeStyle()
+			style.setFillColor((node.getData() instanceof Integer) ? Color.RED : Color.BLUE)
+
+			return style
+		}
+
+		@Override
+		EdgeStyle getEdgeStyle(com.github.fritaly.graphml4j.datastructure.Edge edge) {
+			edgeStyleCount++
+
+			return EdgeStyle.builder().color(Color.GREEN).build()
+		}
+	}
+
+	private static Graph createGraph(int nodeCount) {
+		def graph = new Graph()
+		def previous = null
+
+		for (int i = 0; i < nodeCount; i++) {
+			def node = graph.addNode(((i % 2) == 0) ? Integer.valueOf(i) : "Node #${i}".toString())
+
+			if (previous != null) {
+				graph.addEdge(null, previous, node)
+			}
+
+			previous = node
+		}
+
+		return graph
+	}
+
+	private static String export(Graph graph, Renderer renderer) {
+		def stream = new ByteArrayOutputStream()
+
+		graph.toGraphML(stream, renderer)
+
+		return stream.toString("UTF-8")
+	}
+
+	@Test
+	public void "the styles should be cached by key"() {
+		def graph = createGraph(100)
+		def delegate = new CountingRenderer()
+		def renderer = new CachingRenderer(delegate, CachingRenderer.DATA_CLASS, CachingRenderer.DATA_CLASS,
+				CachingRenderer.DEFAULT_CAPACITY)
+
+		assertEquals(export(graph, new CountingRenderer()), export(graph, renderer))
+
+		// One node style per data class, the edges have no data
+		assertEquals(2, delegate.nodeStyleCount)
+		assertEquals(99, delegate.edgeStyleCount)
+
+		def stats = renderer.getStats()
+
+		assertEquals(98, stats.getHitCount())
+		assertEquals(2, stats.getMissCount())
+		assertEquals(0, stats.getEvictionCount())
+		assertEquals(0.98d, stats.getHitRate(), 0.0001d)
+
+		// The cached styles are shared hence immutable
+		def style = renderer.getNodeStyle(graph.getNodes().get(0))
+
+		assertTrue(style instanceof ImmutableNodeStyle)
+		assertEquals(Color.RED, style.getFillColor())
+
+		renderer.clear()
+
+		assertEquals(0, renderer.getStats().getHitCount())
+		assertEquals(0.0d, renderer.getStats().getHitRate(), 0.0d)
+	}
+
+	@Test
+	public void "the cache should be reused across exports"() {
+		// The graph is bigger than the default capacity of a bounded cache
+		def graph = createGraph(2000)
+		def delegate = new CountingRenderer()
+		def renderer = new CachingRenderer(delegate)
+
+		def expected = export(graph, renderer)
+
+		assertEquals(2000, delegate.nodeStyleCount)
+		assertEquals(1999, delegate.edgeStyleCount)
+
+		for (int i = 0; i < 2; i++) {
+			assertEquals(expected, export(graph, renderer))
+		}
+
+		assertEquals(2000, delegate.nodeStyleCount)
+		assertEquals(1999, delegate.edgeStyleCount)
+
+		def stats = renderer.getStats()
+
+		assertEquals(2 * 3999, stats.getHitCount())
+		assertEquals(3999, stats.getMissCount())
+		assertEquals(0, stats.getEvictionCount())
+	}
+
+	@Test
+	public void "the least recently used styles should be evicted"() {
+		def graph = createGraph(100)
+		def delegate = new CountingRenderer()
+
+		// The data classes alternate hence a single entry is always evicted
+		// before being used again
+		def renderer = new CachingRenderer(delegate, CachingRenderer.DATA_CLASS, CachingRenderer.DATA_CLASS, 1)
+
+		export(graph, renderer)
+
+		assertEquals(100, delegate.nodeStyleCount)
+		assertEquals(0, renderer.getStats().getHitCount())
+		assertEquals(100, renderer.getStats().getMissCount())
+		assertEquals(99, renderer.getStats().getEvictionCount())
+
+		// Both fit with 2 entries
+		renderer = new CachingRenderer(delegate, CachingRenderer.DATA_CLASS, CachingRenderer.DATA_CLASS, 2)
+
+		export(graph, renderer)
+
+		assertEquals(98, renderer.getStats().getHitCount())
+		assertEquals(0, renderer.getStats().getEvictionCount())
+	}
+}
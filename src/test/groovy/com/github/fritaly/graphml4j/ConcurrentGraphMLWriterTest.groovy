@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j
+
+import static org.junit.Assert.*
+
+import java.awt.Color
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import org.junit.Test
+
+public class ConcurrentGraphMLWriterTest {
+
+	private static void writeGraph(writer) {
+		def n1 = writer.node("N1 <&>")
+		def n2 = writer.node("N2", 1.5f, 2.5f)
+
+		def nodeStyle = new NodeStyle()
+		nodeStyle.setFillColor(Color.RED)
+		writer.setNodeStyle(nodeStyle)
+
+		def group = writer.group("G1", true)
+		def n3 = writer.node("N3")
+
+		writer.group("G2", false, 10.0f, 20.0f)
+
+		def n4 = writer.node("N4")
+
+		writer.closeGroup()
+		writer.closeGroup()
+
+		for (int i = 0; i < 100; i++) {
+			writer.edge(n1, n2)
+			writer.edge(n3, n4)
+			writer.edge(n4, group)
+		}
+	}
+
+	@Test
+	public void "a single thread should generate the same document as GraphMLWriter"() throws Exception {
+		def expected = new ByteArrayOutputStream()
+		def graphWriter = new GraphMLWriter(expected)
+
+		graphWriter.graph()
+		writeGraph(graphWriter)
+		graphWriter.closeGraph()
+		graphWriter.close()
+
+		[true, false].each { indent ->
+			[1, 100, ConcurrentGraphMLWriter.DEFAULT_BUFFER_SIZE].each { bufferSize ->
+				def actual = new ByteArrayOutputStream()
+				def writer = new ConcurrentGraphMLWriter(actual, indent, bufferSize)
+
+				writer.graph()
+				writeGraph(writer)
+				writer.closeGraph()
+				writer.close()
+
+				if (indent) {
+					assertEquals("Buffer size: ${bufferSize}", expected.toString("UTF-8"), actual.toString("UTF-8"))
+				} else {
+					// The generated XML should be well-formed
+					new XmlSlurper().parseText(actual.toString("UTF-8"))
+				}
+			}
+		}
+	}
+
+	@Test
+	public void "several threads should generate a valid document"() throws Exception {
+		def stream = new ByteArrayOutputStream()
+		def writer = new ConcurrentGraphMLWriter(stream, true, 4096)
+		def nodeIds = new ConcurrentLinkedQueue<String>()
+
+		writer.graph()
+
+		def threads = (0..<8).collect { t ->
+			Thread.start {
+				for (int i = 0; i < 200; i++) {
+					def nodeId = writer.node("T${t}-N${i}".toString())
+
+					// Link to a node possibly created by another thread
+					def other = nodeIds.peek()
+
+					if (other != null) {
+						writer.edge(nodeId, other)
+					}
+
+					nodeIds.add(nodeId)
+
+					if (i % 50 == 0) {
+						def groupId = writer.group("T${t}-G${i}".toString(), true)
+
+						writer.edge(writer.node("T${t}-G${i}-N".toString()), groupId)
+						writer.closeGroup()
+					}
+				}
+			}
+		}
+
+		threads*.join()
+
+		writer.closeGraph()
+		writer.close()
+
+		def root = new XmlSlurper().parseText(stream.toString("UTF-8"))
+
+		def ids = root.graph.'**'.findAll { it.name() == 'node' }.collect { it.@id.text() }
+
+		// 200 nodes + 4 groups with 1 node per thread
+		assertEquals(8 * 208, ids.size())
+		assertEquals(ids.size(), ids.toSet().size())
+
+		// The nodes inside a group have the group's id as a prefix
+		root.graph.node.findAll { it.graph.size() > 0 }.each { group ->
+			group.graph.node.each {
+				assertTrue(it.@id.text().startsWith(group.@id.text() + "::"))
+			}
+		}
+
+		def edges = root.graph.'**'.findAll { it.name() == 'edge' }
+
+		// The first nodes created have no other node to link to
+		assertTrue("Edges: ${edges.size()}", edges.size() >= 8 * 199 + 8 * 4)
+		assertTrue("Edges: ${edges.size()}", edges.size() < 8 * 200 + 8 * 4)
+
+		// The edges reference existing nodes
+		edges.each {
+			assertTrue(ids.contains(it.@source.text()))
+			assertTrue(ids.contains(it.@target.text()))
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void "creating a node before opening the graph should fail"() throws Exception {
+		new ConcurrentGraphMLWriter(new ByteArrayOutputStream()).node("N1")
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void "closing the graph inside a group should fail"() throws Exception {
+		def writer = new ConcurrentGraphMLWriter(new ByteArrayOutputStream())
+
+		writer.graph()
+		writer.group("G1", true)
+		writer.closeGraph()
+	}
+}
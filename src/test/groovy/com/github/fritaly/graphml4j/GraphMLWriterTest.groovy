@@ -88,6 +88,105 @@ public class GraphMLWriterTest {
 		assertState(State.CLOSED, graphWriter.getState())
 	}
 
+	@Test
+	public void "edges can link nodes inside groups"() throws Exception {
+		graphWriter.graph()
+
+		final String node1 = graphWriter.node("node1")
+		final String group = graphWriter.group("group", true)
+		final String node2 = graphWriter.node("node2")
+		graphWriter.closeGroup()
+
+		assertEquals("n1::n2", node2)
+
+		graphWriter.edge(node1, node2)
+		graphWriter.edge(node2, group)
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void "creating an edge to an unknown node should fail"() throws Exception {
+		graphWriter.graph()
+
+		final String node1 = graphWriter.node("node1")
+		graphWriter.group("group", true)
+		graphWriter.node("node2")
+		graphWriter.closeGroup()
+
+		graphWriter.edge(node1, "n2") // <-- Error, the node id is "n1::n2"
+
+		fail()
+	}
+
+	@Test
+	public void "the node ids can be supplied by the caller"() throws Exception {
+		graphWriter.graph()
+
+		assertEquals("org.apache:commons", graphWriter.node("org.apache:commons", "Commons"))
+		assertEquals("apache", graphWriter.group("apache", "Apache", true))
+		assertEquals("n7", graphWriter.node("n7", "N7"))
+
+		// The generated ids derive from the id of the enclosing group
+		final String node = graphWriter.node("Generated")
+		assertEquals("apache::n0", node)
+
+		graphWriter.closeGroup()
+
+		assertEquals("n1", graphWriter.node("N1"))
+		assertTrue(graphWriter.hasNode("n7"))
+		assertFalse(graphWriter.hasNode("n2"))
+
+		graphWriter.edge("org.apache:commons", "n7")
+		graphWriter.edge(node, "apache")
+		graphWriter.edge("n1", node)
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void "creating 2 nodes with the same id should fail"() throws Exception {
+		graphWriter.graph()
+		graphWriter.node("N1")
+
+		graphWriter.group("n0", "G1", true) // <-- Error, the id was generated
+	}
+
+	@Test
+	public void "the generated ids should skip the ids already supplied"() throws Exception {
+		graphWriter.graph()
+		graphWriter.node("n1", "N1")
+		graphWriter.node("n2", "N2")
+
+		assertEquals("n0", graphWriter.node("N0"))
+		assertEquals("n3", graphWriter.node("N3")) // "n1" and "n2" are already used
+
+		graphWriter.group("g", "G", true)
+
+		graphWriter.node("g::n5", "N5")
+
+		assertEquals("g::n4", graphWriter.node("N4"))
+		assertEquals("g::n6", graphWriter.node("N6"))
+
+		graphWriter.closeGroup()
+		graphWriter.closeGraph()
+	}
+
+	@Test
+	public void "the ids supplied by a fragment should be skipped by the other fragments"() throws Exception {
+		def writer = new ParallelGraphMLWriter(new ByteArrayOutputStream())
+
+		writer.graph()
+
+		def fragment1 = writer.fragment(0, 0)
+		def fragment2 = writer.fragment(0, 0)
+
+		fragment1.getWriter().node("n0", "N0")
+
+		assertEquals("n1", fragment2.getWriter().node("N1"))
+
+		writer.append(fragment1)
+		writer.append(fragment2)
+		writer.closeGraph()
+		writer.close()
+	}
+
 	@Test(expected = IllegalStateException.class)
 	public void "opening the graph twice should fail"() throws Exception {
 		graphWriter.graph()
@@ -234,4 +333,327 @@ public class GraphMLWriterTest {
 		// The generated XML should be well-formed
 		def root = new XmlSlurper().parseText(text)
 	}
-}
\ No newline at end of file
+
+	private static void writeSampleGraph(GraphMLWriter writer) {
+		writer.graph()
+
+		def n1 = writer.node("N1 <&> \"quoted\" 'single'")
+		def n2 = writer.node("N\u00e9\u20ac\ud83d\ude00\n2", 1.25f, -3.0f)
+
+		writer.group("G1 & G2", true)
+
+		def n3 = writer.node("N3")
+
+		writer.group("G2", false, 10.0f, 20.0f)
+
+		def n4 = writer.node("")
+
+		writer.closeGroup()
+		writer.closeGroup()
+
+		writer.edge(n1, n2)
+		writer.edge(n2, n3)
+		writer.edge(n3, n4)
+
+		writer.closeGraph()
+		writer.close()
+	}
+
+	@Test
+	public void "the stream and writer backends should generate the same document"() throws Exception {
+		writeSampleGraph(graphWriter)
+
+		def stream = new ByteArrayOutputStream()
+
+		writeSampleGraph(new GraphMLWriter(stream))
+
+		assertEquals(stringWriter.toString(), new String(stream.toByteArray(), "UTF-8"))
+	}
+
+	@Test
+	public void "the channel backend should generate the same document"() throws Exception {
+		writeSampleGraph(graphWriter)
+
+		def stream = new ByteArrayOutputStream()
+
+		writeSampleGraph(new GraphMLWriter(java.nio.channels.Channels.newChannel(stream)))
+
+		assertEquals(stringWriter.toString(), new String(stream.toByteArray(), "UTF-8"))
+	}
+
+	@Test
+	public void "the compressed stream should contain the same document"() throws Exception {
+		writeSampleGraph(graphWriter)
+
+		def stream = new ByteArrayOutputStream()
+
+		writeSampleGraph(new GraphMLWriter(new ParallelGZIPOutputStream(stream, 2)))
+
+		def input = new java.util.zip.GZIPInputStream(new ByteArrayInputStream(stream.toByteArray()))
+
+		assertEquals(stringWriter.toString(), new String(input.bytes, "UTF-8"))
+	}
+
+	@Test
+	public void "huge coordinates crossing the buffer boundary should be written"() throws Exception {
+		// The formatted value is too long to be written in place
+		def attribute = " x=\"${Utils.format(3.0e38f, 1)}\""
+
+		// Shift the coordinates over the end of the (8 KB) buffer
+		for (int length = 5000; length < 8200; length++) {
+			def stream = new ByteArrayOutputStream()
+			def writer = new GraphMLWriter(stream)
+
+			writer.graph()
+			writer.node("x" * length)
+			writer.node("a", 3.0e38f, 3.0e38f)
+			writer.closeGraph()
+			writer.close()
+
+			assertTrue("Length: ${length}", stream.toString("UTF-8").contains(attribute))
+		}
+	}
+
+	@Test
+	public void "building a graph without indentation should succeed"() throws Exception {
+		def stream = new ByteArrayOutputStream()
+
+		writeSampleGraph(new GraphMLWriter(stream, false))
+
+		String text = new String(stream.toByteArray(), "UTF-8")
+
+		// The output shouldn't contain any line feed (except the one in the label)
+		assertEquals(1, text.count("\n"))
+
+		// The generated XML should be well-formed
+		def root = new XmlSlurper().parseText(text)
+
+		assertEquals("N\u00e9\u20ac\ud83d\ude00\n2", root.graph.node[1].data."ShapeNode".NodeLabel.text())
+	}
+
+	@Test
+	public void "switching between styles should reuse their snapshots and templates"() throws Exception {
+		def stream = new ByteArrayOutputStream()
+		def writer = new GraphMLWriter(stream)
+
+		def red = new NodeStyle()
+		red.setFillColor(java.awt.Color.RED)
+
+		writer.graph()
+		writer.setNodeStyle(red)
+		writer.node("N1")
+
+		def snapshot = writer.@nodeStyle
+		def template = writer.nodeEntry.template
+
+		// Changing the style once set has no effect
+		red.setFillColor(java.awt.Color.BLUE)
+		assertEquals(java.awt.Color.RED, writer.getNodeStyle().getFillColor())
+
+		red.setFillColor(java.awt.Color.RED)
+
+		for (int i = 0; i < 100; i++) {
+			writer.setNodeStyle(new NodeStyle())
+			writer.node("Default ${i}".toString())
+			writer.setNodeStyle(red)
+			writer.node("Red ${i}".toString())
+		}
+
+		// The snapshot and the template of the red style have been reused
+		assertSame(snapshot, writer.@nodeStyle)
+		assertSame(template, writer.nodeEntry.template)
+		assertEquals(2, writer.nodePalette.size())
+
+		writer.closeGraph()
+		writer.close()
+
+		def expected = new StringWriter()
+		def reference = new GraphMLWriter(expected)
+
+		reference.graph()
+		reference.setNodeStyle(red)
+		reference.node("N1")
+
+		for (int i = 0; i < 100; i++) {
+			reference.setNodeStyle(new NodeStyle())
+			reference.node("Default ${i}".toString())
+			reference.setNodeStyle(red)
+			reference.node("Red ${i}".toString())
+		}
+
+		reference.closeGraph()
+		reference.close()
+
+		assertEquals(expected.toString(), stream.toString("UTF-8"))
+	}
+
+	@Test
+	public void "a style modified once set should be applied when set again"() throws Exception {
+		def stream = new ByteArrayOutputStream()
+		def writer = new GraphMLWriter(stream)
+
+		def style = new NodeStyle()
+		style.setFillColor(java.awt.Color.RED)
+
+		writer.graph()
+		writer.setNodeStyle(style)
+		writer.node("N1")
+
+		def red = writer.@nodeStyle
+
+		style.setFillColor(java.awt.Color.BLUE)
+		writer.setNodeStyle(style)
+		writer.node("N2")
+
+		// The snapshot of the red style (and its template) is left untouched
+		assertEquals(java.awt.Color.RED, red.getFillColor())
+		assertEquals(java.awt.Color.BLUE, writer.getNodeStyle().getFillColor())
+
+		// The default, red and blue styles
+		assertEquals(3, writer.nodePalette.size())
+
+		writer.closeGraph()
+		writer.close()
+
+		def root = new XmlSlurper().parseText(stream.toString("UTF-8"))
+
+		assertEquals("#FF0000", root.graph.node[0].data."ShapeNode".Fill.@color.text())
+		assertEquals("#0000FF", root.graph.node[1].data."ShapeNode".Fill.@color.text())
+	}
+
+	@Test
+	public void "the palette should evict the styles least recently used"() throws Exception {
+		def palette = new StylePalette<ImmutableNodeStyle>(2)
+
+		def styles = (1..3).collect { width ->
+			def builder = ImmutableNodeStyle.builder()
+			builder.setWidth(width as float)
+			builder.build()
+		}
+
+		palette.add(styles[0])
+		palette.add(styles[1])
+		palette.get(styles[0])
+		palette.add(styles[2])
+
+		assertEquals(2, palette.size())
+		assertNotNull(palette.get(ImmutableNodeStyle.of(new NodeStyle(styles[0]))))
+		assertNull(palette.get(styles[1]))
+		assertNotNull(palette.get(styles[2]))
+	}
+
+	private static void writeGraphWithStyles(GraphMLWriter writer) {
+		writer.graph()
+
+		def n1 = writer.node("N1")
+
+		// Change the node style
+		def nodeStyle = writer.getNodeStyle()
+		nodeStyle.setWidth(250.0f)
+		nodeStyle.setFillColor(java.awt.Color.RED)
+
+		writer.setNodeStyle(nodeStyle)
+
+		def n2 = writer.node("N2")
+
+		// Change the group styles
+		def groupStyles = writer.getGroupStyles()
+		groupStyles.setInsets(5.0f)
+		groupStyles.setBackgroundColor(java.awt.Color.YELLOW)
+
+		writer.setGroupStyles(groupStyles)
+
+		writer.group("G1", false)
+
+		// Restore the default node style
+		writer.setNodeStyle(new NodeStyle())
+
+		def n3 = writer.node("N3")
+
+		writer.closeGroup()
+
+		writer.edge(n1, n2)
+
+		// Change the edge style
+		writer.setEdgeStyle(EdgeStyle.DEFAULT.withColor(java.awt.Color.BLUE).withSmoothed(true))
+
+		writer.edge(n2, n3)
+
+		writer.closeGraph()
+		writer.close()
+	}
+
+	@Test
+	public void "changing the styles should generate the same document with both backends"() throws Exception {
+		writeGraphWithStyles(graphWriter)
+
+		def stream = new ByteArrayOutputStream()
+
+		writeGraphWithStyles(new GraphMLWriter(stream))
+
+		String text = stringWriter.toString()
+
+		assertEquals(text, new String(stream.toByteArray(), "UTF-8"))
+
+		// The new styles should have been applied
+		assertTrue(text.contains('width="250.0"'))
+		assertTrue(text.contains('color="#0000FF"'))
+		assertTrue(text.contains('bottomF="5.0"'))
+	}
+
+	/**
+	 * Resolves the graphics data of the given edge like a GraphML reader does:
+	 * the edge's own data if present, the default value of the key otherwise.
+	 */
+	private static def resolveEdgeGraphics(def root, def edge) {
+		def data = edge.data.find { it.@key == "d10" }
+
+		if (data.size() > 0) {
+			return data
+		}
+
+		return root.key.find { it.@id == "d10" }."default"
+	}
+
+	@Test
+	public void "the edges with the default style should be resolved from the key default"() throws Exception {
+		graphWriter.setKeyDefaultsEnabled(true)
+		graphWriter.setEdgeStyle(EdgeStyle.DEFAULT.withColor(java.awt.Color.RED))
+		graphWriter.graph()
+
+		def n1 = graphWriter.node("N1")
+		def n2 = graphWriter.node("N2")
+
+		graphWriter.edge(n1, n2)
+
+		graphWriter.setEdgeStyle(EdgeStyle.DEFAULT)
+		graphWriter.edge(n2, n1)
+
+		graphWriter.setEdgeStyle(EdgeStyle.DEFAULT.withColor(java.awt.Color.RED))
+		graphWriter.edge(n1, n1)
+
+		graphWriter.closeGraph()
+		graphWriter.close()
+
+		def root = new XmlSlurper().parseText(stringWriter.toString())
+
+		def edges = root.graph.edge.list()
+
+		assertEquals(3, edges.size())
+
+		// Only the edge with a non-default style embeds its graphics data
+		assertEquals([0, 1, 0], edges.collect { it.data.size() })
+
+		def colors = edges.collect { resolveEdgeGraphics(root, it).PolyLineEdge.LineStyle.@color.text() }
+
+		assertEquals(["#FF0000", "#000000", "#FF0000"], colors)
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void "enabling the key defaults after opening the graph should fail"() throws Exception {
+		graphWriter.graph()
+		graphWriter.setKeyDefaultsEnabled(true) // <-- Error
+
+		fail()
+	}
+}
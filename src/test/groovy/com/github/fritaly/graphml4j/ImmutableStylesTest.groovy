@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j
+
+import static org.junit.Assert.*
+
+import java.awt.Color
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Modifier
+
+import org.junit.Test
+
+public class ImmutableStylesTest {
+
+	private static void assertSettersUnsupported(Object style) {
+		def setters = style.getClass().getMethods().findAll {
+			it.getName().startsWith("set") && !Modifier.isStatic(it.getModifiers())
+		}
+
+		assertFalse(setters.isEmpty())
+
+		// A setter added later to the mutable class must be overridden too
+		setters.each { setter ->
+			assertEquals(setter.toString(), style.getClass(), setter.getDeclaringClass())
+		}
+
+		setters.each { setter ->
+			def arguments = setter.getParameterTypes().collect { type ->
+				if (type == Boolean.TYPE) {
+					return Boolean.FALSE
+				}
+				if (type == Float.TYPE) {
+					return Float.valueOf(0.0f)
+				}
+				if (type == Integer.TYPE) {
+					return Integer.valueOf(0)
+				}
+
+				return null
+			}
+
+			try {
+				setter.invoke(style, arguments as Object[])
+
+				fail("${setter.getName()} should fail")
+			} catch (InvocationTargetException e) {
+				assertTrue(setter.getName(), e.getCause() instanceof UnsupportedOperationException)
+			}
+		}
+	}
+
+	@Test
+	public void "equal node styles should be interned"() {
+		def mutable = new NodeStyle()
+		mutable.setFillColor(Color.RED)
+
+		def builder = ImmutableNodeStyle.builder()
+		builder.setFillColor(Color.RED)
+
+		def style = builder.build()
+
+		assertSame(style, ImmutableNodeStyle.of(mutable))
+		assertSame(style, ImmutableNodeStyle.of(style))
+		assertSame(ImmutableNodeStyle.DEFAULT, ImmutableNodeStyle.of(new NodeStyle()))
+		assertNotSame(style, ImmutableNodeStyle.DEFAULT)
+
+		// The immutable styles are compared by value, the mutable ones by identity
+		assertEquals(style, ImmutableNodeStyle.of(new NodeStyle(mutable)))
+		assertFalse(style.equals(ImmutableNodeStyle.DEFAULT))
+		assertFalse(style.equals(mutable))
+		assertFalse(mutable.equals(style))
+		assertFalse(mutable.equals(new NodeStyle(mutable)))
+
+		// The builder can be reused
+		builder.setFillColor(Color.BLUE)
+
+		assertEquals(Color.BLUE, builder.build().getFillColor())
+		assertEquals(Color.RED, style.getFillColor())
+	}
+
+	@Test
+	public void "equal group styles should be interned"() {
+		def mutable = new GroupStyles()
+		mutable.setInsets(5.0f)
+
+		def builder = ImmutableGroupStyles.builder(mutable)
+		def styles = builder.build()
+
+		assertSame(styles, ImmutableGroupStyles.of(mutable))
+		assertSame(ImmutableGroupStyles.DEFAULT, ImmutableGroupStyles.of(new GroupStyles()))
+		assertFalse(styles.equals(mutable))
+		assertFalse(mutable.equals(new GroupStyles(mutable)))
+		assertEquals(5.0f, styles.getOpenStyle().getInsets(), 0.0f)
+
+		// The insets of the closed style are compared too
+		def closed = new GroupStyles(mutable)
+		def closedStyle = closed.getClosedStyle()
+		closedStyle.setInsets(10.0f)
+		closed.setClosedStyle(closedStyle)
+
+		assertNotSame(styles, ImmutableGroupStyles.of(closed))
+		assertFalse(styles.equals(ImmutableGroupStyles.of(closed)))
+	}
+
+	@Test
+	public void "the styles interned concurrently should be the same instance"() {
+		def pool = java.util.concurrent.Executors.newFixedThreadPool(4)
+
+		try {
+			def tasks = (0..<1000).collect { i ->
+				{ ->
+					def style = new NodeStyle()
+					style.setWidth((float) (i % 10 + 1))
+
+					ImmutableNodeStyle.of(style)
+				} as java.util.concurrent.Callable
+			}
+
+			def results = pool.invokeAll(tasks)*.get()
+
+			results.each { style ->
+				assertSame(style, results[(int) style.getWidth() - 1])
+			}
+		} finally {
+			pool.shutdown()
+		}
+	}
+
+	@Test
+	public void "the default renderer should return mutable styles"() {
+		def renderer = new DefaultRenderer()
+		def style = renderer.getNodeStyle(null)
+
+		style.setFillColor(Color.RED)
+
+		assertSame(ImmutableNodeStyle.DEFAULT, ImmutableNodeStyle.of(renderer.getNodeStyle(null)))
+
+		renderer.getGroupStyles(null).setInsets(5.0f)
+
+		assertSame(ImmutableGroupStyles.DEFAULT, ImmutableGroupStyles.of(renderer.getGroupStyles(null)))
+	}
+
+	@Test
+	public void "the immutable styles can't be modified"() {
+		assertSettersUnsupported(ImmutableNodeStyle.DEFAULT)
+		assertSettersUnsupported(ImmutableGroupStyles.DEFAULT)
+
+		// The mutable copies can
+		def copy = new NodeStyle(ImmutableNodeStyle.DEFAULT)
+		copy.setFillColor(Color.RED)
+
+		assertEquals(Color.RED, copy.getFillColor())
+	}
+
+	@Test
+	public void "the writer should use the immutable styles without copying them"() {
+		def stream = new ByteArrayOutputStream()
+		def writer = new GraphMLWriter(stream)
+
+		def builder = ImmutableNodeStyle.builder()
+		builder.setFillColor(Color.RED)
+
+		def red = builder.build()
+
+		writer.graph()
+
+		for (int i = 0; i < 10; i++) {
+			writer.setNodeStyle(red)
+			writer.node("Red ${i}".toString())
+
+			assertSame(red, writer.@nodeStyle)
+
+			writer.setNodeStyle(ImmutableNodeStyle.DEFAULT)
+			writer.node("Default ${i}".toString())
+
+			assertSame(ImmutableNodeStyle.DEFAULT, writer.@nodeStyle)
+		}
+
+		writer.closeGraph()
+		writer.close()
+
+		def xml = stream.toString("UTF-8")
+
+		assertTrue(xml.contains("#FF0000"))
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+public class NodeIdRegistryTest {
+
+	@Test
+	public void containsNodesAndGroups() {
+		final NodeIdRegistry registry = new NodeIdRegistry()
+
+		registry.addNode(0)      // n0
+		registry.openGroup(1)    // n1
+		registry.addNode(2)      // n1::n2
+		registry.openGroup(3)    // n1::n3
+		registry.addNode(4)      // n1::n3::n4
+		registry.closeGroup()
+		registry.addNode(5)      // n1::n5
+		registry.closeGroup()
+		registry.addNode(6)      // n6
+		registry.openGroup(8)    // n8 (sequence 7 was skipped)
+		registry.addNode(9)      // n8::n9
+
+		["n0", "n1", "n1::n2", "n1::n3", "n1::n3::n4", "n1::n5", "n6", "n8", "n8::n9"].each {
+			assertTrue(it, registry.contains(it))
+		}
+
+		[null, "", "n", "n7", "n10", "n2", "n4", "n1::n4", "n3::n4", "n1::n3::n5", "n1::n6", "n01", "x0", "n1:n2",
+			"n1:::n2", "::n0", "n1::", "n8::n1::n2", "n99999999999"].each {
+			assertFalse(String.valueOf(it), registry.contains(it))
+		}
+
+		assertEquals(3, registry.getGroupCount())
+	}
+
+	@Test
+	public void containsOtherIds() {
+		final NodeIdRegistry registry = new NodeIdRegistry()
+
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(registry.add("node-${i}".toString()))
+		}
+
+		assertFalse(registry.add("node-12"))
+
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(registry.contains("node-${i}".toString()))
+		}
+
+		assertFalse(registry.contains("node-1000"))
+		assertFalse(registry.contains("n0"))
+	}
+
+	@Test
+	public void containsSuppliedSequences() {
+		final NodeIdRegistry registry = new NodeIdRegistry()
+
+		registry.openGroup(0)    // n0
+		registry.addNode(1)      // n0::n1
+
+		// The supplied ids "n<seq>" can be registered in any order
+		[100000, 7, 3, 64, 1].each {
+			assertTrue(registry.add("n${it}".toString()))
+		}
+
+		assertFalse(registry.add("n7"))
+		assertFalse(registry.add("n0"))
+		assertTrue(registry.add("n07"))
+
+		["n0", "n0::n1", "n1", "n3", "n7", "n64", "n100000", "n07"].each {
+			assertTrue(it, registry.contains(it))
+		}
+		["n2", "n8", "n63", "n99999", "n100001", "n1::n7"].each {
+			assertFalse(it, registry.contains(it))
+		}
+
+		// Only "n07" was stored as a string
+		assertEquals(1, registry.@otherIdCount)
+	}
+
+	@Test
+	public void containsLargeSuppliedSequences() {
+		final NodeIdRegistry registry = new NodeIdRegistry()
+
+		[Integer.MAX_VALUE, 0, Integer.MAX_VALUE - 64, 1 << 30].each {
+			assertTrue(registry.add("n${it}".toString()))
+		}
+
+		assertFalse(registry.add("n${Integer.MAX_VALUE}".toString()))
+		assertTrue(registry.contains("n${1 << 30}".toString()))
+		assertFalse(registry.contains("n${Integer.MAX_VALUE - 1}".toString()))
+		assertFalse(registry.contains("n${(1 << 30) + 1}".toString()))
+
+		// The bit sets are only allocated for the segments used (instead of
+		// 256 MB for the whole range)
+		assertEquals(3, registry.@suppliedSegments.count { it != null })
+		assertEquals(0, registry.@otherIdCount)
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void addNode_SequenceNotIncreasing() {
+		final NodeIdRegistry registry = new NodeIdRegistry()
+
+		registry.addNode(5)
+		registry.addNode(5)
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void closeGroup_NoGroupOpen() {
+		new NodeIdRegistry().closeGroup()
+	}
+}
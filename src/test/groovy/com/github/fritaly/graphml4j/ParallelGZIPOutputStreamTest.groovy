@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j
+
+import static org.junit.Assert.*
+
+import java.util.zip.CRC32
+import java.util.zip.GZIPInputStream
+
+import org.junit.Test
+
+public class ParallelGZIPOutputStreamTest {
+
+	private static final int BLOCK_SIZE = 32 * 1024
+
+	private static byte[] sampleData(int length) {
+		final Random random = new Random(length)
+		final byte[] data = new byte[length]
+
+		for (int i = 0; i < length; i++) {
+			// Mix compressible and random data
+			data[i] = (i.intdiv(1000) % 2 == 0) ? (byte) (97 + (i % 7)) : (byte) random.nextInt()
+		}
+
+		return data
+	}
+
+	private static byte[] compress(byte[] data, int chunkSize) {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream()
+		final ParallelGZIPOutputStream gzip = new ParallelGZIPOutputStream(stream, 3, BLOCK_SIZE)
+
+		for (int offset = 0; offset < data.length; offset += chunkSize) {
+			gzip.write(data, offset, Math.min(chunkSize, data.length - offset))
+		}
+
+		gzip.close()
+
+		return stream.toByteArray()
+	}
+
+	private static byte[] decompress(byte[] data) {
+		return new GZIPInputStream(new ByteArrayInputStream(data)).bytes
+	}
+
+	@Test
+	public void "the compressed data should be a valid gzip stream"() throws Exception {
+		[0, 1, BLOCK_SIZE - 1, BLOCK_SIZE, BLOCK_SIZE + 1, 10 * BLOCK_SIZE + 123].each { length ->
+			final byte[] data = sampleData(length)
+
+			assertArrayEquals("Length: ${length}", data, decompress(compress(data, 1000)))
+			assertArrayEquals("Length: ${length}", data, decompress(compress(data, 3 * BLOCK_SIZE)))
+		}
+	}
+
+	@Test
+	public void "the compression should benefit from the previous block"() throws Exception {
+		// The same random pattern repeated: without the previous block as a
+		// dictionary, the beginning of each block would be incompressible
+		final Random random = new Random(0)
+		final byte[] pattern = new byte[BLOCK_SIZE / 2]
+		random.nextBytes(pattern)
+
+		final byte[] data = new byte[8 * BLOCK_SIZE]
+
+		for (int i = 0; i < 16; i++) {
+			System.arraycopy(pattern, 0, data, i * pattern.length, pattern.length)
+		}
+
+		final byte[] compressed = compress(data, 4096)
+
+		assertArrayEquals(data, decompress(compressed))
+		assertTrue("Size: ${compressed.length}", compressed.length < BLOCK_SIZE)
+	}
+
+	@Test
+	public void "writing single bytes should succeed"() throws Exception {
+		final byte[] data = sampleData(BLOCK_SIZE * 2 + 5)
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream()
+		final ParallelGZIPOutputStream gzip = new ParallelGZIPOutputStream(stream, 2, BLOCK_SIZE)
+
+		data.each { gzip.write(it) }
+
+		gzip.flush()
+		gzip.close()
+		gzip.close() // Closing twice is allowed
+
+		assertArrayEquals(data, decompress(stream.toByteArray()))
+	}
+
+	@Test
+	public void "the deflaters should be ended when the output fails"() throws Exception {
+		// Only the header fits
+		def stream = new OutputStream() {
+			int count
+
+			@Override
+			void write(int b) throws IOException {
+				if (++count > 10) {
+					throw new IOException("Disk full")
+				}
+			}
+
+			@Override
+			void write(byte[] b, int off, int len) throws IOException {
+				for (int i = 0; i < len; i++) {
+					write(b[off + i])
+				}
+			}
+		}
+
+		final ParallelGZIPOutputStream gzip = new ParallelGZIPOutputStream(stream, 2, BLOCK_SIZE)
+
+		try {
+			try {
+				gzip.write(sampleData(4 * BLOCK_SIZE + 1))
+			} finally {
+				gzip.close()
+			}
+
+			fail("The error should have been reported")
+		} catch (IOException e) {
+			// Expected
+		}
+
+		// Several blocks were pending or being filled
+		assertTrue(gzip.@allocatedBlocks.size() > 1)
+
+		gzip.@allocatedBlocks.each { block ->
+			try {
+				block.deflater.getAdler()
+
+				fail("The deflater should have been ended")
+			} catch (RuntimeException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void "writing into a closed stream should fail"() throws Exception {
+		final ParallelGZIPOutputStream gzip = new ParallelGZIPOutputStream(new ByteArrayOutputStream(), 1)
+		gzip.close()
+		gzip.write(1)
+	}
+
+	@Test
+	public void "combining checksums should give the checksum of the concatenation"() throws Exception {
+		final byte[] data = sampleData(100000)
+
+		[0, 1, 5000, 99999, 100000].each { split ->
+			final CRC32 crc1 = new CRC32()
+			crc1.update(data, 0, split)
+
+			final CRC32 crc2 = new CRC32()
+			crc2.update(data, split, data.length - split)
+
+			final CRC32 expected = new CRC32()
+			expected.update(data)
+
+			assertEquals(expected.getValue(), ParallelGZIPOutputStream.crc32Combine(crc1.getValue(), crc2.getValue(),
+					data.length - split))
+		}
+	}
+}
@@ -19,6 +19,7 @@ package com.github.fritaly.graphml4j
 import static org.junit.Assert.*
 
 import java.awt.Color
+import java.util.Random
 
 import org.junit.Test
 
@@ -69,4 +70,36 @@ public class UtilsTest {
 		assertEquals(0x80, color.getBlue())
 		assertEquals(0xC0, color.getAlpha())
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void encodeColor_Cached() {
+		assertEquals("#204080", Utils.encode(new Color(32, 64, 128)))
+		assertEquals("#204080C0", Utils.encode(new Color(32, 64, 128, 192)))
+		assertEquals("#204080", Utils.encode(new Color(32, 64, 128)))
+	}
+
+	@Test
+	public void formatFloat() {
+		assertEquals("0.0", Utils.format(0.0f, 1))
+		assertEquals("-0.0", Utils.format(Float.intBitsToFloat(Integer.MIN_VALUE), 1))
+		assertEquals("30.0", Utils.format(30.0f, 1))
+		assertEquals("15", Utils.format(15.0f, 0))
+		assertEquals("-2.5", Utils.format(-2.5f, 1))
+		assertEquals("0.3", Utils.format(0.25f, 1))
+		assertEquals("NaN", Utils.format(Float.NaN, 1))
+		assertEquals("Infinity", Utils.format(Float.POSITIVE_INFINITY, 1))
+	}
+
+	@Test
+	public void formatFloat_SameAsFormatter() {
+		final Random random = new Random(1234)
+
+		for (int i = 0; i < 100000; i++) {
+			final float value = (random.nextFloat() - 0.5f) * Math.pow(10, random.nextInt(12))
+
+			for (int digits = 0; digits < 3; digits++) {
+				assertEquals(String.format(Locale.ROOT, "%.${digits}f", value), Utils.format(value, digits))
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.datastructure
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+public class CompactGraphTest {
+
+	@Test
+	public void "the compact graph should generate the same document as a graph"() {
+		def graph = new Graph()
+		def builder = CompactGraph.builder(0, 0)
+
+		// Nodes and groups (including nested groups)
+		def g1 = graph.addNode("G1")
+		def n1 = graph.addNode("N1")
+		def g2 = graph.addNode("G2")
+		def n2 = graph.addNode("N2")
+		def n3 = graph.addNode("N3")
+		def n4 = graph.addNode("N4")
+
+		g2.setParent(g1)
+		n2.setParent(g2)
+		n3.setParent(g1)
+
+		def c1 = builder.addNode("G1")
+		def c2 = builder.addNode("N1")
+		def c3 = builder.addNode("G2", c1)
+		def c4 = builder.addNode("N2", c3)
+		def c5 = builder.addNode("N3", c1)
+		def c6 = builder.addNode("N4")
+
+		// The compact graph writes the edges by source node
+		graph.addEdge(null, n1, n2)
+		graph.addEdge(null, n1, n4)
+		graph.addEdge(null, n2, g2)
+		graph.addEdge(null, n3, n1)
+		graph.addEdge(null, n4, n4)
+
+		builder.addEdge(c5, c2)
+		builder.addEdge(c2, c4)
+		builder.addEdge(c6, c6)
+		builder.addEdge(c4, c3)
+		builder.addEdge(c2, c6)
+
+		def compactGraph = builder.build()
+
+		assertEquals(6, compactGraph.getNodeCount())
+		assertEquals(5, compactGraph.getEdgeCount())
+		assertEquals(c1, compactGraph.getParent(c3))
+		assertEquals(-1, compactGraph.getParent(c1))
+		assertEquals(2, compactGraph.getChildCount(c1))
+		assertEquals(c3, compactGraph.getChild(c1, 0))
+		assertTrue(compactGraph.isGroup(c3))
+		assertFalse(compactGraph.isGroup(c2))
+		assertEquals(2, compactGraph.getOutDegree(c2))
+		assertEquals(c4, compactGraph.getTarget(c2, 0))
+		assertEquals(c6, compactGraph.getTarget(c2, 1))
+
+		def expected = new StringWriter()
+		graph.toGraphML(expected)
+
+		def actual = new StringWriter()
+		compactGraph.toGraphML(actual)
+
+		assertEquals(expected.toString(), actual.toString())
+
+		def stream = new ByteArrayOutputStream()
+		compactGraph.toGraphML(stream)
+
+		assertEquals(expected.toString(), stream.toString("UTF-8"))
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void "an edge should reference existing nodes"() {
+		def builder = CompactGraph.builder()
+
+		builder.addEdge(builder.addNode("N1"), 1)
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void "a parent should be added before its children"() {
+		CompactGraph.builder().addNode("N1", 0)
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void "a builder can only be built once"() {
+		def builder = CompactGraph.builder()
+
+		builder.build()
+		builder.build()
+	}
+
+	private static long usedMemory() {
+		def runtime = Runtime.getRuntime()
+
+		for (int i = 0; i < 5; i++) {
+			System.gc()
+			Thread.sleep(20)
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory()
+	}
+
+	@Test(timeout = 60000L)
+	public void "an edge should take less than 40 bytes"() {
+		def nodeCount = 100000
+		def edgeCount = 2000000
+		def label = "Node"
+
+		def before = usedMemory()
+
+		// Don't size the builder to include the growth of its arrays
+		def builder = CompactGraph.builder()
+
+		for (int i = 0; i < nodeCount; i++) {
+			builder.addNode(label)
+		}
+
+		def random = new Random(0)
+
+		for (int i = 0; i < edgeCount; i++) {
+			builder.addEdge(random.nextInt(nodeCount), random.nextInt(nodeCount))
+		}
+
+		def graph = builder.build()
+
+		def perEdge = (usedMemory() - before).intdiv(edgeCount)
+
+		assertTrue("${perEdge} bytes per edge".toString(), perEdge < 40)
+		assertEquals(edgeCount, graph.getEdgeCount())
+
+		// Streams the graph without retaining the document
+		def counter = new OutputStream() {
+			long count
+
+			@Override
+			void write(int b) {
+				count++
+			}
+
+			@Override
+			void write(byte[] b, int off, int len) {
+				count += len
+			}
+		}
+
+		graph.toGraphML(counter)
+
+		assertTrue(counter.count > edgeCount * 100L)
+	}
+}
@@ -0,0 +1,525 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.datastructure
+
+import static org.junit.Assert.*
+
+import java.awt.Color
+import java.util.concurrent.ForkJoinPool
+
+import org.junit.Test
+
+import com.github.fritaly.graphml4j.DefaultRenderer
+import com.github.fritaly.graphml4j.EdgePath
+import com.github.fritaly.graphml4j.EdgeStyle
+import com.github.fritaly.graphml4j.GroupStyles
+import com.github.fritaly.graphml4j.NodeStyle
+import com.github.fritaly.graphml4j.Renderer
+
+public class GraphTest {
+
+	@Test
+	public void "a node belongs to the graph which created it"() {
+		def graph1 = new Graph()
+		def graph2 = new Graph()
+
+		def node1 = graph1.addNode("N1")
+		def node2 = graph2.addNode("N2")
+
+		assertTrue(graph1.hasNode(node1))
+		assertFalse(graph1.hasNode(node2))
+		assertFalse(graph1.hasNode(null))
+
+		// Both nodes have the same id but belong to different graphs
+		assertEquals(node1.getId(), node2.getId())
+		assertFalse(graph2.hasNode(node1))
+
+		graph1.removeNode(node1)
+
+		assertFalse(graph1.hasNode(node1))
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void "adding an edge to a node of another graph should fail"() {
+		def graph1 = new Graph()
+		def graph2 = new Graph()
+
+		graph1.addEdge("E1", graph1.addNode("N1"), graph2.addNode("N2"))
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void "adding an edge to a removed node should fail"() {
+		def graph = new Graph()
+		def node1 = graph.addNode("N1")
+		def node2 = graph.addNode("N2")
+
+		graph.removeNode(node2)
+		graph.addEdge("E1", node1, node2)
+	}
+
+	@Test(timeout = 60000L)
+	public void "adding edges should take a linear time"() {
+		def graph = new Graph()
+		def nodes = new Node[200000]
+
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = graph.addNode(null)
+		}
+
+		// With a linear membership check, this would take hours
+		final Random random = new Random(0)
+
+		for (int i = 0; i < 1000000; i++) {
+			graph.addEdge(null, nodes[random.nextInt(nodes.length)], nodes[random.nextInt(nodes.length)])
+		}
+
+		assertEquals(1000000, graph.getEdgeCount())
+	}
+
+	@Test
+	public void "the nodes and edges should be found by data"() {
+		[true, false].each { indexData ->
+			def graph = new Graph(indexData)
+
+			def node1 = graph.addNode("N1")
+			def node2 = graph.addNode("N2")
+			def node3 = graph.addNode(null)
+
+			def edge1 = graph.addEdge("E1", node1, node2)
+			def edge2 = graph.addEdge("E1", node2, node3)
+			def edge3 = graph.addEdge(null, node1, node3)
+
+			assertSame(node1, graph.getNodeByData("N1"))
+			assertSame(node2, graph.getNodeByData(new String("N2")))
+			assertSame(node3, graph.getNodeByData(null))
+			assertNull(graph.getNodeByData("N4"))
+
+			assertSame(edge1, graph.getEdgeByData("E1"))
+			assertEquals([edge1, edge2], graph.getEdgesByData("E1"))
+			assertEquals([edge3], graph.getEdgesByData(null))
+			assertEquals([], graph.getEdgesByData("E2"))
+
+			// Removing a node removes its edges from the index
+			graph.removeNode(node2)
+
+			assertNull(graph.getNodeByData("N2"))
+			assertNull(graph.getEdgeByData("E1"))
+			assertEquals([], graph.getEdgesByData("E1"))
+
+			graph.removeEdge(edge3)
+
+			assertNull(graph.getEdgeByData(null))
+			assertSame(node3, graph.getNodeByData(null))
+		}
+	}
+
+	@Test
+	public void "the first node added should be returned for duplicate data"() {
+		def graph = new Graph()
+
+		def node1 = graph.addNode("N")
+		def node2 = graph.addNode("N")
+
+		assertSame(node1, graph.getNodeByData("N"))
+
+		graph.removeNode(node1)
+
+		assertSame(node2, graph.getNodeByData("N"))
+
+		// Removing a node of another graph with the same id is a no-op
+		def other = new Graph()
+		other.addNode("N")
+		other.addNode("N")
+
+		graph.removeNode(other.getNodeByData("N"))
+
+		assertSame(node2, graph.getNodeByData("N"))
+	}
+
+	@Test
+	public void "data with a mutable hash code should be found when not indexed"() {
+		def graph = new Graph(false)
+		def data = ["A"]
+
+		def node = graph.addNode(data)
+
+		// Mutating the data changes its hash code
+		data << "B"
+
+		assertFalse(graph.isDataIndexed())
+		assertSame(node, graph.getNodeByData(["A", "B"]))
+	}
+
+	@Test
+	public void "the incoming and outgoing edges should be tracked"() {
+		def graph = new Graph()
+
+		def node1 = graph.addNode("N1")
+		def node2 = graph.addNode("N2")
+		def node3 = graph.addNode("N3")
+
+		def edge1 = graph.addEdge("E1", node1, node2)
+		def edge2 = graph.addEdge("E2", node1, node2)
+		def edge3 = graph.addEdge("E3", node2, node3)
+		def edge4 = graph.addEdge("E4", node3, node3)
+
+		assertEquals([edge1, edge2], node1.getOutgoingEdges())
+		assertEquals([], node1.getIncomingEdges())
+		assertEquals([edge3], node2.getOutgoingEdges())
+		assertEquals([edge1, edge2], node2.getIncomingEdges())
+		assertEquals([edge4], node3.getOutgoingEdges())
+		assertEquals([edge3, edge4], node3.getIncomingEdges())
+
+		assertEquals([edge1, edge2], graph.getEdgesBetween(node1, node2))
+		assertEquals([], graph.getEdgesBetween(node2, node1))
+		assertEquals([edge4], graph.getEdgesBetween(node3, node3))
+
+		graph.removeEdge(edge1)
+
+		assertEquals([edge2], node1.getOutgoingEdges())
+		assertEquals([edge2], node2.getIncomingEdges())
+
+		// Removing a node removes its edges (including the loops)
+		graph.removeNode(node3)
+
+		assertEquals([], node2.getOutgoingEdges())
+		assertEquals([edge2], graph.getEdges())
+		assertEquals(2, graph.getNodeCount())
+		assertEquals(0, node3.getOutDegree())
+		assertEquals(0, node3.getInDegree())
+	}
+
+	@Test
+	public void "a removed node should no longer be rendered"() {
+		def graph = new Graph()
+
+		def group = graph.addNode("G")
+		def node1 = graph.addNode("N1")
+		def node2 = graph.addNode("N2")
+
+		node1.setParent(group)
+
+		graph.removeNode(node1)
+		graph.removeNode(node2)
+
+		assertFalse(group.isGroup())
+
+		def writer = new StringWriter()
+		graph.toGraphML(writer)
+
+		assertFalse(writer.toString().contains("N1"))
+		assertFalse(writer.toString().contains("N2"))
+	}
+
+	@Test(timeout = 60000L)
+	public void "removing nodes should take a time proportional to their degree"() {
+		def graph = new Graph()
+		def nodes = new Node[500000]
+
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = graph.addNode(null)
+		}
+
+		final Random random = new Random(0)
+
+		for (int i = 0; i < 1000000; i++) {
+			graph.addEdge(null, nodes[random.nextInt(nodes.length)], nodes[random.nextInt(nodes.length)])
+		}
+
+		// With a scan of all the edges per removal, this would take hours
+		for (int i = 0; i < nodes.length; i += 2) {
+			graph.removeNode(nodes[i])
+		}
+
+		assertEquals(250000, graph.getNodeCount())
+
+		for (Edge edge : graph.getEdges()) {
+			assertTrue(graph.hasNode(edge.getSource()))
+			assertTrue(graph.hasNode(edge.getTarget()))
+		}
+	}
+
+	@Test
+	public void "the views should reflect the changes of the graph"() {
+		def graph = new Graph()
+
+		def nodes = graph.getNodesView()
+		def edges = graph.getEdgesView()
+
+		def node1 = graph.addNode("N1")
+		def node2 = graph.addNode("N2")
+		def edge = graph.addEdge("E1", node1, node2)
+
+		node2.setParent(node1)
+
+		assertSame(nodes, graph.getNodesView())
+		assertEquals([node1, node2], new ArrayList(nodes))
+		assertEquals([edge], new ArrayList(edges))
+		assertEquals([node2], new ArrayList(node1.getChildrenView()))
+		assertSame(node1.getChildrenView(), node1.getChildrenView())
+
+		graph.removeNode(node2)
+
+		assertEquals([node1], new ArrayList(nodes))
+		assertTrue(edges.isEmpty())
+		assertTrue(node1.getChildrenView().isEmpty())
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void "the views should be unmodifiable"() {
+		def graph = new Graph()
+		def node = graph.addNode("N1")
+
+		graph.getNodesView().remove(node)
+	}
+
+	@Test
+	public void "the nodes and edges should be iterated without copy"() {
+		def graph = new Graph()
+		def nodes = new Node[1000]
+
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = graph.addNode(Integer.valueOf(i))
+		}
+		for (int i = 1; i < nodes.length; i++) {
+			graph.addEdge(null, nodes[i - 1], nodes[i])
+		}
+
+		def visited = []
+		graph.forEachNode({ node -> visited << node } as java.util.function.Consumer)
+
+		assertEquals(Arrays.asList(nodes), visited)
+
+		def count = 0
+		graph.forEachEdge({ edge -> count++ } as java.util.function.Consumer)
+
+		assertEquals(999, count)
+
+		// The streams can be processed in parallel
+		assertEquals(999L * 500L, graph.nodeStream().parallel().mapToLong({ node -> (long) node.getData() } as java.util.function.ToLongFunction).sum())
+		assertEquals(999L, graph.edgeStream().parallel().count())
+		assertNotNull(graph.nodeSpliterator().trySplit())
+	}
+
+	@Test
+	public void "the children should be kept in insertion order"() {
+		def graph = new Graph()
+		def group = graph.addNode("G")
+		def children = []
+
+		for (int i = 0; i < 12; i++) {
+			def child = graph.addNode("C${i}".toString())
+			group.addChild(child)
+			children << child
+		}
+
+		// The ids "n10" and "n11" sort before "n2" but the insertion order prevails
+		assertEquals(children, group.getChildren())
+		assertEquals(children, new ArrayList(group.getChildrenView()))
+		assertSame(group, children[0].getParent())
+
+		// Remove most of the children to trigger a compaction
+		for (int i = 0; i < 10; i++) {
+			graph.removeNode(children[i])
+		}
+
+		assertEquals(children[10..11], group.getChildren())
+		assertEquals(2, group.getChildCount())
+
+		def child = graph.addNode("C12")
+		child.setParent(group)
+
+		assertEquals([children[10], children[11], child], new ArrayList(group.getChildrenView()))
+
+		group.sortChildren({ a, b -> b.getData().compareTo(a.getData()) } as Comparator)
+
+		assertEquals([child, children[11], children[10]], group.getChildren())
+
+		// Moving a child to the root of the graph
+		child.detach()
+
+		assertEquals([children[11], children[10]], group.getChildren())
+
+		children[10].detach()
+		children[11].detach()
+
+		assertFalse(group.isGroup())
+		assertEquals([], group.getChildren())
+	}
+
+	private static long usedMemory() {
+		def runtime = Runtime.getRuntime()
+
+		for (int i = 0; i < 5; i++) {
+			System.gc()
+			Thread.sleep(20)
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory()
+	}
+
+	@Test
+	public void "a leaf node shouldn't allocate a child container"() {
+		def graph = new Graph()
+		def count = 200000
+		def nodes = new Node[count]
+
+		def before = usedMemory()
+
+		for (int i = 0; i < count; i++) {
+			nodes[i] = new Node(graph, "n", null)
+		}
+
+		def perNode = (usedMemory() - before).intdiv(count)
+
+		// The child container previously allocated by every node (an empty
+		// TreeSet and its TreeMap)
+		def sets = new Object[count]
+
+		before = usedMemory()
+
+		for (int i = 0; i < count; i++) {
+			sets[i] = new TreeSet()
+		}
+
+		def perSet = (usedMemory() - before).intdiv(count)
+
+		// The sizes depend on the JVM (72 bytes per leaf node and 64 bytes per
+		// empty TreeSet with compressed oops), hence the generous bound
+		assertTrue("Leaf node: ${perNode} bytes".toString(), perNode <= 160)
+
+		// A leaf node should take at least 30% less than the former node
+		// with its empty child container
+		assertTrue("Leaf node: ${perNode} bytes, empty TreeSet: ${perSet} bytes".toString(),
+				perSet >= (perNode + perSet) * 0.3d)
+		assertEquals(count, nodes.length)
+		assertEquals(count, sets.length)
+	}
+
+	@Test
+	public void "the parallel export should generate the same document"() {
+		def graph = new Graph(false)
+		def nodes = []
+		def random = new Random(3)
+
+		// Top-level nodes interleaved with (nested) groups of various sizes
+		for (int i = 0; i < 60; i++) {
+			for (int j = 0; j < random.nextInt(300); j++) {
+				nodes << graph.addNode("N${nodes.size()}".toString())
+			}
+
+			def group = graph.addNode("G${i}".toString())
+
+			for (int j = 0; j < random.nextInt(500); j++) {
+				def node = graph.addNode("N${nodes.size()}".toString())
+
+				if ((j % 7) == 3) {
+					// Nest some nodes one level deeper
+					def subGroup = graph.addNode("G${i}.${j}".toString())
+
+					subGroup.setParent(group)
+					node.setParent(subGroup)
+				} else {
+					node.setParent(group)
+				}
+
+				nodes << node
+			}
+		}
+		for (int i = 0; i < 30000; i++) {
+			def edge = graph.addEdge("E${i}".toString(), nodes[random.nextInt(nodes.size())], nodes[random.nextInt(nodes.size())])
+
+			if ((i % 10) == 0) {
+				edge.setPath(new EdgePath(0.0f, 20.0f, 0.0f, -20.0f, i as float, 15.0f))
+			}
+		}
+
+		def renderer = [
+			getNodeLabel: { node -> "<${node.getData()}>".toString() },
+			getNodeStyle: { node ->
+				def style = new NodeStyle()
+				style.setFillColor((node.getData().hashCode() % 2 == 0) ? Color.RED : Color.BLUE)
+				style
+			},
+			getEdgeStyle: { edge -> EdgeStyle.builder().color(edge.getData().endsWith("0") ? Color.GREEN : Color.BLACK).build() },
+			getGroupStyles: { node -> new GroupStyles() },
+			isGroupOpen: { node -> node.getChildCount() % 2 == 0 }
+		] as Renderer
+
+		[null, renderer].each { currentRenderer ->
+			def expected = new ByteArrayOutputStream()
+
+			graph.toGraphML(expected, currentRenderer)
+
+			[1, 4].each { parallelism ->
+				def actual = new ByteArrayOutputStream()
+				def pool = new ForkJoinPool(parallelism)
+
+				try {
+					graph.toGraphML(actual, currentRenderer, pool)
+				} finally {
+					pool.shutdown()
+				}
+
+				assertArrayEquals(expected.toByteArray(), actual.toByteArray())
+			}
+		}
+	}
+
+	@Test
+	public void "the stream should be closed when the export fails"() {
+		def graph = new Graph()
+		graph.addNode("N1")
+
+		def renderer = new DefaultRenderer() {
+			@Override
+			NodeStyle getNodeStyle(Node node) {
+				throw new IllegalStateException("Rendering failed")
+			}
+		}
+
+		[null, 2].each { parallelism ->
+			def closed = false
+
+			def stream = new ByteArrayOutputStream() {
+				@Override
+				void close() throws IOException {
+					closed = true
+				}
+			}
+
+			def pool = (parallelism != null) ? new ForkJoinPool(parallelism) : null
+
+			try {
+				if (pool != null) {
+					graph.toGraphML(stream, renderer, pool)
+				} else {
+					graph.toGraphML(stream, renderer)
+				}
+
+				fail("The error should have been propagated")
+			} catch (IllegalStateException e) {
+				// The fork/join pool rethrows a copy whose message wraps the original one
+				assertTrue(e.getMessage().endsWith("Rendering failed"))
+			} finally {
+				pool?.shutdown()
+			}
+
+			assertTrue(closed)
+		}
+	}
+}
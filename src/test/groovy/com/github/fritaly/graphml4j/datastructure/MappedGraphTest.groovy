@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.datastructure
+
+import static org.junit.Assert.*
+
+import java.nio.file.Files
+
+import org.junit.Test
+
+import com.github.fritaly.graphml4j.DefaultRenderer
+
+public class MappedGraphTest {
+
+	private static void populate(graph, mappedGraph) {
+		def g1 = graph.addNode("G1")
+		def n1 = graph.addNode("N1 é€")
+		def g2 = graph.addNode("G2")
+		g2.setParent(g1)
+		def n2 = graph.addNode("N2")
+		n2.setParent(g2)
+		def n3 = graph.addNode("N3")
+		n3.setParent(g1)
+		def n4 = graph.addNode("N4")
+
+		graph.addEdge(null, n3, n1)
+		graph.addEdge(null, n1, n2)
+		graph.addEdge(null, n4, n4)
+		graph.addEdge(null, n2, g2)
+
+		def c1 = mappedGraph.addNode("G1")
+		def c2 = mappedGraph.addNode("N1 é€")
+		def c3 = mappedGraph.addNode("G2", c1)
+		def c4 = mappedGraph.addNode("N2", c3)
+		def c5 = mappedGraph.addNode("N3", c1)
+		def c6 = mappedGraph.addNode("N4")
+
+		mappedGraph.addEdge(c5, c2)
+		mappedGraph.addEdge(c2, c4)
+		mappedGraph.addEdge(c6, c6)
+		mappedGraph.addEdge(c4, c3)
+	}
+
+	@Test
+	public void "the mapped graph should generate the same document as a graph"() {
+		def directory = Files.createTempDirectory("graphml4j").toFile()
+
+		[new MappedGraph(), new MappedGraph(directory)].each { mappedGraph ->
+			def graph = new Graph()
+
+			populate(graph, mappedGraph)
+
+			assertEquals(6, mappedGraph.getNodeCount())
+			assertEquals(4, mappedGraph.getEdgeCount())
+			assertEquals("N1 é€", mappedGraph.getLabel(1))
+			assertEquals(0, mappedGraph.getParent(2))
+			assertEquals(-1, mappedGraph.getParent(0))
+			assertTrue(mappedGraph.isGroup(2))
+			assertFalse(mappedGraph.isGroup(3))
+			assertEquals(1, mappedGraph.getSource(1))
+			assertEquals(3, mappedGraph.getTarget(1))
+
+			[null, new DefaultRenderer()].each { renderer ->
+				def expected = new StringWriter()
+				graph.toGraphML(expected, renderer)
+
+				def actual = new StringWriter()
+				mappedGraph.toGraphML(actual, renderer)
+
+				assertEquals(expected.toString(), actual.toString())
+			}
+
+			mappedGraph.close()
+		}
+
+		// The files are deleted when the graph is closed
+		assertEquals(0, directory.listFiles().length)
+
+		directory.delete()
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void "a closed graph can't be used"() {
+		def graph = new MappedGraph()
+
+		graph.addNode("N1")
+		graph.close()
+		graph.getLabel(0)
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void "an edge should reference existing nodes"() {
+		def graph = new MappedGraph()
+
+		try {
+			graph.addEdge(graph.addNode("N1"), 1)
+		} finally {
+			graph.close()
+		}
+	}
+
+	@Test
+	public void "the writer should be closed when the export fails"() {
+		def graph = new MappedGraph()
+		def closed = false
+
+		def writer = new StringWriter() {
+			@Override
+			void close() throws IOException {
+				closed = true
+			}
+		}
+
+		def renderer = new DefaultRenderer() {
+			@Override
+			com.github.fritaly.graphml4j.NodeStyle getNodeStyle(Node node) {
+				throw new IllegalStateException("Rendering failed")
+			}
+		}
+
+		try {
+			graph.addNode("N1")
+			graph.toGraphML(writer, renderer)
+
+			fail("The error should have been propagated")
+		} catch (IllegalStateException e) {
+			assertEquals("Rendering failed", e.getMessage())
+		} finally {
+			graph.close()
+		}
+
+		assertTrue(closed)
+	}
+
+	private static long usedMemory() {
+		def runtime = Runtime.getRuntime()
+
+		for (int i = 0; i < 5; i++) {
+			System.gc()
+			Thread.sleep(20)
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory()
+	}
+
+	@Test(timeout = 60000L)
+	public void "the heap usage shouldn't depend on the size of the graph"() {
+		def directory = Files.createTempDirectory("graphml4j").toFile()
+		def graph = new MappedGraph(directory)
+
+		try {
+			def before = usedMemory()
+
+			for (int i = 0; i < 500000; i++) {
+				graph.addNode("Node #" + i, (i % 10 == 0) ? -1 : i - (i % 10))
+			}
+			for (int i = 0; i < 1000000; i++) {
+				graph.addEdge(i % 500000, (i * 7) % 500000)
+			}
+
+			def used = usedMemory() - before
+
+			// A Graph would use hundreds of MB
+			assertTrue("${used} bytes used".toString(), used < 4 * 1024 * 1024)
+			assertEquals("Node #499999", graph.getLabel(499999))
+			assertEquals(499990, graph.getParent(499999))
+		} finally {
+			graph.close()
+			directory.delete()
+		}
+	}
+}
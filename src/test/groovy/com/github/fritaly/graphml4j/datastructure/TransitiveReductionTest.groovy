@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.datastructure
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ForkJoinPool
+
+import org.junit.Test
+
+public class TransitiveReductionTest {
+
+	/**
+	 * Returns the set of nodes reachable from the given node (computed with a
+	 * naive traversal).
+	 */
+	private static Set reachable(Node node) {
+		def result = new HashSet()
+		def queue = [node]
+
+		while (!queue.isEmpty()) {
+			def current = queue.remove(0)
+
+			current.getOutgoingEdges().each { edge ->
+				if (result.add(edge.getTarget())) {
+					queue << edge.getTarget()
+				}
+			}
+		}
+
+		return result
+	}
+
+	private static Graph createDag(int nodeCount, int edgeCount, long seed) {
+		def graph = new Graph(false)
+		def nodes = (0..<nodeCount).collect { graph.addNode("N${it}".toString()) }
+		def random = new Random(seed)
+
+		for (int i = 0; i < edgeCount; i++) {
+			def source = random.nextInt(nodeCount - 1)
+
+			graph.addEdge(null, nodes[source], nodes[source + 1 + random.nextInt(Math.min(20, nodeCount - source - 1))])
+		}
+
+		return graph
+	}
+
+	@Test
+	public void "the transitive edges should be removed"() {
+		def graph = new Graph()
+		def a = graph.addNode("A"), b = graph.addNode("B"), c = graph.addNode("C")
+
+		graph.addEdge("A->B", a, b)
+		graph.addEdge("B->C", b, c)
+		graph.addEdge("A->C", a, c)
+
+		assertEquals(1, graph.removeTransitiveEdges())
+		assertEquals(["A->B", "B->C"], graph.getEdges()*.getData())
+	}
+
+	@Test
+	public void "the cycles should be condensed"() {
+		def graph = new Graph()
+		def a = graph.addNode("A"), b = graph.addNode("B"), c = graph.addNode("C"), d = graph.addNode("D")
+
+		graph.addEdge("A->B", a, b)
+		graph.addEdge("B->A", b, a)
+		graph.addEdge("A->A", a, a)
+		graph.addEdge("A->C", a, c)
+		graph.addEdge("B->C", b, c)
+		graph.addEdge("C->D", c, d)
+		graph.addEdge("A->D", a, d)
+
+		// The edges inside the cycle and the 2 edges to C are kept
+		assertEquals(1, graph.removeTransitiveEdges(null))
+		assertEquals(["A->B", "B->A", "A->A", "A->C", "B->C", "C->D"], graph.getEdges()*.getData())
+	}
+
+	@Test
+	public void "the reachability should be preserved"() {
+		def graph = createDag(400, 3000, 1)
+		def expected = graph.getNodes().collectEntries { [it, reachable(it)] }
+
+		def pool = new ForkJoinPool(4)
+
+		try {
+			assertTrue(graph.removeTransitiveEdges(pool) > 0)
+		} finally {
+			pool.shutdown()
+		}
+
+		graph.getNodes().each { node ->
+			assertEquals(expected[node], reachable(node))
+		}
+
+		// No edge can be removed anymore (except the parallel ones which are kept)
+		graph.getEdges().each { edge ->
+			if (graph.getEdgesBetween(edge.getSource(), edge.getTarget()).size() > 1) {
+				return
+			}
+
+			graph.removeEdge(edge)
+
+			assertFalse(reachable(edge.getSource()).contains(edge.getTarget()))
+
+			graph.addEdge(edge.getData(), edge.getSource(), edge.getTarget())
+		}
+
+		assertEquals(0, graph.removeTransitiveEdges())
+	}
+
+	@Test
+	public void "the result should be independent of the parallelism"() {
+		def graph1 = createDag(20000, 100000, 2)
+		def graph2 = createDag(20000, 100000, 2)
+
+		def removed = graph1.removeTransitiveEdges(null)
+
+		def pool = new ForkJoinPool(4)
+
+		try {
+			assertEquals(removed, graph2.removeTransitiveEdges(pool))
+		} finally {
+			pool.shutdown()
+		}
+
+		assertEquals(graph1.getEdges()*.getId(), graph2.getEdges()*.getId())
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ForkJoinPool
+
+import org.junit.Test
+
+import com.github.fritaly.graphml4j.datastructure.Graph
+
+public class HierarchicalLayoutTest {
+
+	/**
+	 * Creates a random tree with the given number of nodes plus some random
+	 * edges between nodes close to each other.
+	 */
+	private static Graph createGraph(int nodeCount, int extraEdgeCount) {
+		def graph = new Graph(false)
+		def nodes = []
+		def random = new Random(nodeCount)
+
+		for (int i = 0; i < nodeCount; i++) {
+			nodes << graph.addNode("N${i}".toString())
+
+			if (i > 0) {
+				graph.addEdge(null, nodes[random.nextInt(i)], nodes[i])
+			}
+		}
+		for (int i = 0; i < extraEdgeCount; i++) {
+			def source = random.nextInt(nodeCount)
+
+			graph.addEdge(null, nodes[source], nodes[Math.min(nodeCount - 1, source + 1 + random.nextInt(10))])
+		}
+
+		return graph
+	}
+
+	@Test
+	public void "the edges of an acyclic graph should point downwards"() {
+		def graph = createGraph(500, 200)
+		def layout = new HierarchicalLayout()
+
+		layout.apply(graph)
+
+		graph.forEachEdge({ edge ->
+			assertTrue(edge.getSource().getY() < edge.getTarget().getY())
+		} as java.util.function.Consumer)
+
+		// The nodes of a layer don't overlap
+		def layers = graph.getNodes().groupBy { it.getY() }
+
+		layers.values().each { layer ->
+			def xs = layer*.getX().sort()
+
+			for (int i = 1; i < xs.size(); i++) {
+				assertTrue(xs[i] - xs[i - 1] >= layout.getNodeSpacing() - 0.01f)
+			}
+		}
+
+		assertEquals(0.0f, graph.getNodes()*.getX().min(), 0.0f)
+	}
+
+	@Test
+	public void "the cycles should be broken"() {
+		def graph = new Graph()
+		def n1 = graph.addNode("N1")
+		def n2 = graph.addNode("N2")
+		def n3 = graph.addNode("N3")
+
+		graph.addEdge(null, n1, n2)
+		graph.addEdge(null, n2, n3)
+		graph.addEdge(null, n3, n1)
+		graph.addEdge(null, n3, n3)
+
+		new HierarchicalLayout().apply(graph)
+
+		assertEquals(0.0f, n1.getY(), 0.0f)
+		assertEquals(80.0f, n2.getY(), 0.0f)
+		assertEquals(160.0f, n3.getY(), 0.0f)
+	}
+
+	@Test
+	public void "the crossings should be removed"() {
+		def graph = new Graph()
+		def a = graph.addNode("A")
+		def b = graph.addNode("B")
+		def c = graph.addNode("C")
+		def d = graph.addNode("D")
+
+		graph.addEdge(null, a, d)
+		graph.addEdge(null, b, c)
+
+		new HierarchicalLayout().apply(graph)
+
+		assertEquals(a.getX() < b.getX(), d.getX() < c.getX())
+
+		// The nodes are aligned with their neighbor
+		assertEquals(a.getX(), d.getX(), 0.01f)
+		assertEquals(b.getX(), c.getX(), 0.01f)
+	}
+
+	@Test
+	public void "the groups should enclose their child nodes"() {
+		def graph = new Graph()
+		def group = graph.addNode("G")
+		def n1 = graph.addNode("N1")
+		def n2 = graph.addNode("N2")
+		def n3 = graph.addNode("N3")
+
+		n1.setParent(group)
+		n2.setParent(group)
+
+		graph.addEdge(null, n1, n2)
+		graph.addEdge(null, n2, n3)
+		graph.addEdge(null, group, n3)
+
+		def layout = new HierarchicalLayout()
+		layout.apply(graph)
+
+		assertEquals(Math.min(n1.getX(), n2.getX()) - layout.getGroupPadding(), group.getX(), 0.01f)
+		assertEquals(n1.getY() - layout.getGroupPadding(), group.getY(), 0.01f)
+
+		// The coordinates are exported
+		def writer = new StringWriter()
+		graph.toGraphML(writer)
+
+		def document = new XmlSlurper().parseText(writer.toString())
+		def geometries = document.'**'.findAll { it.name() == 'Geometry' }
+
+		// A group has a geometry per state (open and closed)
+		assertEquals(5, geometries.size())
+		assertEquals(n3.getY(), Float.parseFloat(geometries.last().@y.text()), 0.01f)
+	}
+
+	@Test
+	public void "the layout shouldn't depend on the parallelism"() {
+		def layouts = [1, 4].collect { parallelism ->
+			// A wide graph so that the barycenters are computed in parallel
+			def graph = createGraph(20000, 5000)
+			def layout = new HierarchicalLayout()
+
+			layout.setPool(new ForkJoinPool(parallelism))
+			layout.apply(graph)
+			layout.getPool().shutdown()
+
+			graph.getNodes().collect { [it.getX(), it.getY()] }
+		}
+
+		assertEquals(layouts[0], layouts[1])
+	}
+
+	@Test(timeout = 60000L)
+	public void "a graph with 100k nodes should be laid out quickly"() {
+		def graph = createGraph(100000, 50000)
+
+		new HierarchicalLayout().apply(graph)
+
+		assertTrue(graph.getNodes()*.getY().max() > 0.0f)
+	}
+}
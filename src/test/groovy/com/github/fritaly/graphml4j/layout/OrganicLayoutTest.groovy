@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ForkJoinPool
+
+import org.junit.Test
+
+import com.github.fritaly.graphml4j.datastructure.Graph
+
+public class OrganicLayoutTest {
+
+	private static double distance(node1, node2) {
+		return Math.hypot(node1.getX() - node2.getX(), node1.getY() - node2.getY())
+	}
+
+	@Test
+	public void "2 connected nodes should be at the edge length"() {
+		def graph = new Graph()
+		def n1 = graph.addNode("N1")
+		def n2 = graph.addNode("N2")
+
+		graph.addEdge(null, n1, n2)
+
+		def layout = new OrganicLayout()
+		layout.apply(graph)
+
+		assertEquals(layout.getEdgeLength(), distance(n1, n2), layout.getEdgeLength() * 0.1)
+	}
+
+	@Test
+	public void "the clusters should be separated"() {
+		def graph = new Graph()
+		def clusters = [[], []]
+
+		clusters.each { cluster ->
+			for (int i = 0; i < 10; i++) {
+				cluster << graph.addNode("N${i}".toString())
+			}
+			for (int i = 0; i < 10; i++) {
+				for (int j = i + 1; j < 10; j++) {
+					graph.addEdge(null, cluster[i], cluster[j])
+				}
+			}
+		}
+
+		new OrganicLayout().apply(graph)
+
+		def inside = [], between = []
+
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 10; j++) {
+				if (i != j) {
+					inside << distance(clusters[0][i], clusters[0][j])
+				}
+				between << distance(clusters[0][i], clusters[1][j])
+			}
+		}
+
+		assertTrue(inside.max() < between.min())
+	}
+
+	@Test
+	public void "the quadtree should approximate the repulsion"() {
+		def random = new Random(0)
+		def count = 2000
+		double[] xs = new double[count]
+		double[] ys = new double[count]
+
+		for (int i = 0; i < count; i++) {
+			xs[i] = random.nextDouble() * 1000
+			ys[i] = random.nextDouble() * 1000
+		}
+
+		def tree = new QuadTree()
+		tree.build(xs, ys, count)
+
+		int[] stack = new int[3 * QuadTree.MAX_DEPTH + 4]
+		double[] force = new double[2]
+
+		for (int i = 0; i < count; i += 100) {
+			double fx = 0, fy = 0
+
+			for (int j = 0; j < count; j++) {
+				if (i != j) {
+					def dx = xs[i] - xs[j], dy = ys[i] - ys[j]
+					def d2 = dx * dx + dy * dy
+
+					fx += dx / d2
+					fy += dy / d2
+				}
+			}
+
+			// Exact with theta = 0
+			tree.repulsion(i, xs[i], ys[i], 1.0d, 0.0d, stack, force)
+
+			assertEquals(fx, force[0], Math.abs(fx) * 1e-9 + 1e-12)
+			assertEquals(fy, force[1], Math.abs(fy) * 1e-9 + 1e-12)
+
+			// Approximated with theta = 0.5
+			tree.repulsion(i, xs[i], ys[i], 1.0d, 0.5d, stack, force)
+
+			assertEquals(0.0d, Math.hypot(force[0] - fx, force[1] - fy) / Math.hypot(fx, fy), 0.05d)
+		}
+	}
+
+	private static Graph createGraph(int nodeCount) {
+		def graph = new Graph(false)
+		def nodes = []
+		def random = new Random(nodeCount)
+
+		for (int i = 0; i < nodeCount; i++) {
+			nodes << graph.addNode(null)
+
+			if (i > 0) {
+				graph.addEdge(null, nodes[random.nextInt(i)], nodes[i])
+			}
+		}
+
+		return graph
+	}
+
+	@Test
+	public void "the layout shouldn't depend on the parallelism"() {
+		def layouts = [1, 4].collect { parallelism ->
+			def graph = createGraph(5000)
+			def layout = new OrganicLayout()
+
+			layout.setIterations(10)
+			layout.setPool(new ForkJoinPool(parallelism))
+			layout.apply(graph)
+			layout.getPool().shutdown()
+
+			graph.getNodes().collect { [it.getX(), it.getY()] }
+		}
+
+		assertEquals(layouts[0], layouts[1])
+	}
+
+	@Test(timeout = 60000L)
+	public void "the layout should stop when the time budget is over"() {
+		def graph = createGraph(100000)
+		def layout = new OrganicLayout()
+
+		// Running all the iterations would take hours hence the layout only
+		// completes before the timeout if the time budget is honored
+		layout.setIterations(100000)
+		layout.setTimeBudget(500)
+		layout.apply(graph)
+
+		assertTrue(graph.getNodes()*.getX().max() > 0.0f)
+	}
+}
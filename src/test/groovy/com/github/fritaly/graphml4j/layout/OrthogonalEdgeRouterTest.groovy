@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fritaly.graphml4j.layout
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ForkJoinPool
+
+import org.junit.Test
+
+import com.github.fritaly.graphml4j.EdgePath
+import com.github.fritaly.graphml4j.datastructure.Graph
+
+public class OrthogonalEdgeRouterTest {
+
+	/**
+	 * Returns the absolute coordinates of the points of the given edge's route
+	 * (ports included) with nodes of size 40x40.
+	 */
+	private static List points(edge) {
+		def path = edge.getPath()
+		def source = edge.getSource(), target = edge.getTarget()
+		def result = [[source.getX() + 20 + path.getSourceX(), source.getY() + 20 + path.getSourceY()]]
+
+		for (int i = 0; i < path.getPointCount(); i++) {
+			result << [path.getPointX(i), path.getPointY(i)]
+		}
+
+		result << [target.getX() + 20 + path.getTargetX(), target.getY() + 20 + path.getTargetY()]
+
+		return result
+	}
+
+	private static void assertOrthogonal(edge) {
+		def points = points(edge)
+
+		for (int i = 1; i < points.size(); i++) {
+			assertTrue("Segment #${i} of ${edge}: ${points}".toString(),
+					(Math.abs(points[i][0] - points[i - 1][0]) < 0.01f)
+							|| (Math.abs(points[i][1] - points[i - 1][1]) < 0.01f))
+		}
+	}
+
+	private static void place(node, x, y) {
+		node.setX(x as float)
+		node.setY(y as float)
+	}
+
+	@Test
+	public void "aligned nodes should be connected with a straight line"() {
+		def graph = new Graph()
+		def n1 = graph.addNode("N1"), n2 = graph.addNode("N2")
+
+		place(n1, 0.0f, 0.0f)
+		place(n2, 200.0f, 0.0f)
+
+		def edge = graph.addEdge("E1", n1, n2)
+
+		new OrthogonalEdgeRouter().route(graph)
+
+		assertEquals(new EdgePath(20.0f, 0.0f, -20.0f, 0.0f), edge.getPath())
+	}
+
+	@Test
+	public void "the routes should go round the nodes"() {
+		def graph = new Graph()
+		def n1 = graph.addNode("N1"), n2 = graph.addNode("N2"), n3 = graph.addNode("N3")
+
+		place(n1, 0.0f, 0.0f)
+		place(n2, 100.0f, 0.0f)
+		place(n3, 200.0f, 0.0f)
+
+		def edge = graph.addEdge("E1", n1, n3)
+
+		new OrthogonalEdgeRouter().route(graph)
+
+		assertEquals(2, edge.getPath().getPointCount())
+		assertOrthogonal(edge)
+
+		// The horizontal segment doesn't cross N2
+		def points = points(edge)
+		def y = points[1][1]
+
+		assertTrue(y > 50.0f || y < -10.0f)
+	}
+
+	@Test
+	public void "the routes should be orthogonal and independent of the parallelism"() {
+		def graph = new Graph(false)
+		def nodes = []
+		def random = new Random(42)
+
+		for (int i = 0; i < 2000; i++) {
+			def node = graph.addNode("N${i}".toString())
+
+			place(node, (i % 50) * 100.0f, i.intdiv(50) * 100.0f)
+
+			nodes << node
+		}
+		for (int i = 0; i < 3000; i++) {
+			graph.addEdge(null, nodes[random.nextInt(nodes.size())], nodes[random.nextInt(nodes.size())])
+		}
+
+		def router = new OrthogonalEdgeRouter()
+
+		router.route(graph)
+
+		def expected = graph.getEdges()*.getPath()
+
+		graph.getEdges().each { edge ->
+			if (edge.getSource() != edge.getTarget()) {
+				assertOrthogonal(edge)
+			}
+		}
+
+		router.setPool(new ForkJoinPool(4))
+
+		try {
+			router.route(graph)
+		} finally {
+			router.getPool().shutdown()
+		}
+
+		assertEquals(expected, graph.getEdges()*.getPath())
+	}
+
+	@Test
+	public void "the bend points should be written"() {
+		def graph = new Graph()
+		def n1 = graph.addNode("N1"), n2 = graph.addNode("N2")
+
+		place(n1, 0.0f, 0.0f)
+		place(n2, 200.0f, 200.0f)
+
+		graph.addEdge("E1", n1, n2)
+
+		new OrthogonalEdgeRouter().route(graph)
+
+		def writer = new StringWriter()
+
+		graph.toGraphML(writer)
+
+		def xml = writer.toString()
+
+		assertTrue(xml, xml.contains("<y:Point x=\"220.0\" y=\"20.0\""))
+		assertTrue(xml, xml.contains("<y:Path sx=\"20.0\" sy=\"0.0\" tx=\"0.0\" ty=\"-20.0\""))
+	}
+}